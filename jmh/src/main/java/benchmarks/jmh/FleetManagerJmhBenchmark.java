@@ -0,0 +1,236 @@
+package benchmarks.jmh;
+
+import Exceptions.InvalidOperationException;
+import Management.FleetGenerator;
+import Management.FleetManager;
+import Vehicles.Truck;
+import Vehicles.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//JMH benchmarks of the FleetManager operations on synthetic fleets of 1k to 10M vehicles
+//Every benchmark and fleet size runs in its own fork. The allocation rate comes from the GC profiler:
+//  java -jar jmh/target/benchmarks.jar FleetManagerJmhBenchmark -prof gc
+//10M vehicles need the 6 GB heap the forks get, use -p size=1000,10000,100000 on a smaller machine.
+//The operations that change the fleet put it back into shape outside the measured time: a removed vehicle is
+//added again after every call, and addVehicle is measured in batches of ADDS calls (see Additions).
+//The GC profiler counts what the untimed fixtures allocate too, so the B/op of removeVehicle includes adding
+//the vehicle back and the B/op of a sort includes the sort by another key before it (about twice the sort).
+//benchmarks.FleetManagerBenchmark counts the operation alone
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class FleetManagerJmhBenchmark {
+
+    private static final long SEED = 42;
+    private static final int ADDS = 100;
+
+    //The generated fleet, the same for every benchmark of a size
+    @State(Scope.Benchmark)
+    public static class Fleet {
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        FleetGenerator.Profile profile;
+        FleetManager manager;
+        String[] ids;
+        Random random;
+        private PrintStream out;
+
+        @Setup(Level.Trial)
+        public void setUp() throws InvalidOperationException {
+            //addVehicle and removeVehicle print a line per call
+            out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Vehicle.setMoveLogging(false);
+            profile = new FleetGenerator.Profile();
+            profile.seed = SEED;
+            rebuild();
+            List<Vehicle> vehicles = manager.getVehicles();
+            ids = new String[vehicles.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = vehicles.get(i).getId();
+            }
+            random = new Random(SEED);
+        }
+
+        void rebuild() throws InvalidOperationException {
+            manager = newManager();
+        }
+
+        FleetManager newManager() throws InvalidOperationException {
+            FleetManager m = new FleetManager();
+            new FleetGenerator(size, profile).addTo(m);
+            return m;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.setOut(out);
+        }
+    }
+
+    //Vehicles that are not in the fleet yet, ADDS per call of the benchmark. Once the fleet has grown by 1%
+    //(at least ADDS) it is swapped for a spare copy of the generated fleet, so addVehicle always sees about the
+    //same size. The vehicles and the spares are made before the first iteration, the per-iteration fixture
+    //allocates nothing the GC profiler would count
+    @State(Scope.Benchmark)
+    public static class Additions {
+        private final ArrayDeque<FleetManager> spares = new ArrayDeque<>();
+        private int limit;
+        int added;
+        Vehicle[] vehicles;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Fleet fleet, BenchmarkParams params) throws InvalidOperationException {
+            long calls = (long) params.getWarmup().getCount() * params.getWarmup().getBatchSize()
+                    + (long) params.getMeasurement().getCount() * params.getMeasurement().getBatchSize();
+            limit = Math.max(ADDS, fleet.size / 100);
+            vehicles = new Vehicle[Math.toIntExact(calls * ADDS)];
+            FleetGenerator more = new FleetGenerator(Long.MAX_VALUE, fleet.profile);
+            for (int i = 0; i < vehicles.length; i++) {
+                vehicles[i] = more.vehicle(fleet.size + i);
+            }
+            for (long i = vehicles.length / limit; i > 0; i--) {
+                spares.add(fleet.newManager());
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void swapIfGrown(Fleet fleet) throws InvalidOperationException {
+            if (added < limit) {
+                return;
+            }
+            added = 0;
+            if (spares.isEmpty()) {
+                fleet.rebuild();
+            } else {
+                fleet.manager = spares.remove();
+            }
+        }
+    }
+
+    //The vehicle a removeVehicle call took out, it goes back in after the call
+    @State(Scope.Benchmark)
+    public static class Removal {
+        Vehicle removed;
+
+        @TearDown(Level.Invocation)
+        public void putBack(Fleet fleet) throws InvalidOperationException {
+            if (removed != null) {
+                fleet.manager.addVehicle(removed);
+                removed = null;
+            }
+        }
+    }
+
+    //Before every sort the fleet is put in an order that has nothing to do with the sort key, otherwise every
+    //call after the first would sort a list that is already sorted
+    @State(Scope.Benchmark)
+    public static class ModelOrder {
+        @Setup(Level.Invocation)
+        public void reorder(Fleet fleet) {
+            fleet.manager.sortFleetByModel();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SpeedOrder {
+        @Setup(Level.Invocation)
+        public void reorder(Fleet fleet) {
+            fleet.manager.sortFleetBySpeed();
+        }
+    }
+
+    //one batch of ADDS calls per invocation, the score is per call (the throughput is 1 / the time per call)
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(ADDS)
+    @Warmup(iterations = 50)
+    @Measurement(iterations = 100)
+    public FleetManager addVehicle(Fleet fleet, Additions additions) throws InvalidOperationException {
+        Vehicle[] vehicles = additions.vehicles;
+        int start = additions.next;
+        for (int i = start; i < start + ADDS; i++) {
+            fleet.manager.addVehicle(vehicles[i]);
+        }
+        additions.next = start + ADDS;
+        additions.added += ADDS;
+        return fleet.manager;
+    }
+
+    @Benchmark
+    public Vehicle removeVehicle(Fleet fleet, Removal removal) throws InvalidOperationException {
+        List<Vehicle> current = fleet.manager.getVehicles();
+        Vehicle v = current.get(fleet.random.nextInt(current.size()));
+        fleet.manager.removeVehicle(v.getId());
+        removal.removed = v;
+        return v;
+    }
+
+    @Benchmark
+    public Vehicle getVehicleById(Fleet fleet) throws Exception {
+        return fleet.manager.getVehicleById(fleet.ids[fleet.random.nextInt(fleet.ids.length)]);
+    }
+
+    @Benchmark
+    public List<Vehicle> searchByType(Fleet fleet) {
+        return fleet.manager.searchByType(Truck.class);
+    }
+
+    @Benchmark
+    public FleetManager sortFleetByEfficiency(Fleet fleet, ModelOrder order) {
+        fleet.manager.sortFleetByEfficiency();
+        return fleet.manager;
+    }
+
+    @Benchmark
+    public FleetManager sortFleetByModel(Fleet fleet, SpeedOrder order) {
+        fleet.manager.sortFleetByModel();
+        return fleet.manager;
+    }
+
+    @Benchmark
+    public FleetManager sortFleetBySpeed(Fleet fleet, ModelOrder order) {
+        fleet.manager.sortFleetBySpeed();
+        return fleet.manager;
+    }
+
+    @Benchmark
+    public double getTotalFuelConsumption(Fleet fleet) {
+        return fleet.manager.getTotalFuelConsumption(100);
+    }
+
+    @Benchmark
+    public String generateReport(Fleet fleet) {
+        return fleet.manager.generateReport();
+    }
+
+    @Benchmark
+    public List<Vehicle> getVehiclesNeedingMaintenance(Fleet fleet) {
+        return fleet.manager.getVehiclesNeedingMaintenance();
+    }
+}
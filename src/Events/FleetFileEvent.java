@@ -0,0 +1,32 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//How long saving or loading the fleet file took and how big it was, to match GC or CPU spikes to a big load
+@Name("fleet.FleetFile")
+@Label("Fleet File")
+@Category("Fleet")
+@Description("The fleet was saved to or loaded from a file")
+public class FleetFileEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("save or load")
+    public String operation;
+
+    @Label("File")
+    public String file;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,19 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fleet.FleetReport")
+@Label("Fleet Report")
+@Category("Fleet")
+@Description("A fleet report was generated")
+public class FleetReportEvent extends jdk.jfr.Event {
+
+    @Label("Vehicles")
+    public int vehicles;
+
+    @Label("Characters")
+    public int characters;
+}
@@ -0,0 +1,29 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//A move was refused because the tank did not have enough fuel for it (an InsufficientFuelException follows)
+@Name("fleet.InsufficientFuel")
+@Label("Insufficient Fuel")
+@Category({"Fleet", "Vehicle"})
+@Description("A vehicle could not move because it did not have enough fuel")
+public class InsufficientFuelEvent extends jdk.jfr.Event {
+
+    @Label("Vehicle")
+    public String vehicleId;
+
+    @Label("Type")
+    public String vehicleType;
+
+    @Label("Distance (km)")
+    public double distance;
+
+    @Label("Fuel Needed (L)")
+    public double fuelNeeded;
+
+    @Label("Fuel Available (L)")
+    public double fuelAvailable;
+}
@@ -0,0 +1,22 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fleet.Maintenance")
+@Label("Maintenance")
+@Category({"Fleet", "Vehicle"})
+@Description("Maintenance was performed on a vehicle")
+public class MaintenanceEvent extends jdk.jfr.Event {
+
+    @Label("Vehicle")
+    public String vehicleId;
+
+    @Label("Type")
+    public String vehicleType;
+
+    @Label("Mileage (km)")
+    public double mileage;
+}
@@ -0,0 +1,25 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fleet.Refuel")
+@Label("Refuel")
+@Category({"Fleet", "Vehicle"})
+@Description("Fuel was added to a vehicle")
+public class RefuelEvent extends jdk.jfr.Event {
+
+    @Label("Vehicle")
+    public String vehicleId;
+
+    @Label("Type")
+    public String vehicleType;
+
+    @Label("Amount (L)")
+    public double amount;
+
+    @Label("Fuel Level (L)")
+    public double fuelLevel;
+}
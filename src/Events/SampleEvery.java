@@ -0,0 +1,52 @@
+package Events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.SettingControl;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+//JFR setting for events that are too frequent to record every time (vehicle moves)
+//The value N keeps about one event in N, picked at random so no vehicle or thread is always skipped.
+//1 records every event. When several recordings ask for different values the one that records most wins
+@Label("Sample Every")
+@Description("Record about one event in this many, 1 records every event")
+public final class SampleEvery extends SettingControl {
+
+    static final String DEFAULT = "100";
+
+    private volatile int every = Integer.parseInt(DEFAULT);
+
+    @Override
+    public String combine(Set<String> values) {
+        int min = Integer.MAX_VALUE;
+        for (String value : values) {
+            min = Math.min(min, parse(value));
+        }
+        return min == Integer.MAX_VALUE ? DEFAULT : String.valueOf(min);
+    }
+
+    @Override
+    public void setValue(String value) {
+        every = parse(value);
+    }
+
+    @Override
+    public String getValue() {
+        return String.valueOf(every);
+    }
+
+    boolean sample() {
+        int n = every;
+        return n <= 1 || ThreadLocalRandom.current().nextInt(n) == 0;
+    }
+
+    private static int parse(String value) {
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return Integer.parseInt(DEFAULT);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+//One tick of the SimulationEngine, by default only ticks that take 1 ms or longer are recorded (the threshold setting)
+@Name("fleet.SimulationTick")
+@Label("Simulation Tick")
+@Category({"Fleet", "Simulation"})
+@Description("One tick of the simulation engine")
+@StackTrace(false)
+@Threshold("1 ms")
+public class SimulationTickEvent extends jdk.jfr.Event {
+
+    @Label("Tick")
+    public long tick;
+
+    @Label("Vehicles Stepped")
+    public int stepped;
+
+    @Label("Vehicles Parked")
+    public int parked;
+}
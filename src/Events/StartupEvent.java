@@ -0,0 +1,38 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+//How long the CLI took to become usable, committed once: when the menu is shown, or with a restore when the first
+//command that uses the fleet runs. The menu and restore times are measured from the start of the JVM
+@Name("fleet.Startup")
+@Label("CLI Startup")
+@Category("Fleet")
+@Description("Time to the menu of the CLI, and how long the fleet restored in the background blocked a command")
+@StackTrace(false)
+public class StartupEvent extends jdk.jfr.Event {
+
+    @Label("Restored From")
+    public String file;
+
+    @Label("Vehicles Restored")
+    public int vehicles;
+
+    @Label("Menu Shown")
+    @Timespan(Timespan.MILLISECONDS)
+    public long menuMillis;
+
+    @Label("Restore Finished")
+    @Description("-1 when there was no restore or it failed")
+    @Timespan(Timespan.MILLISECONDS)
+    public long restoreMillis;
+
+    @Label("Blocked By Restore")
+    @Description("How long the first command that uses the fleet waited for it to finish loading")
+    @Timespan(Timespan.MILLISECONDS)
+    public long blockedMillis;
+}
@@ -0,0 +1,37 @@
+package Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+
+//A vehicle drove some distance. Moves are the most frequent thing in a simulation, so only a sample of them
+//is recorded (the sampleEvery setting, one in 100 by default) and without a stack trace
+@Name("fleet.VehicleMove")
+@Label("Vehicle Move")
+@Category({"Fleet", "Vehicle"})
+@Description("A sample of the distances the vehicles drove")
+@StackTrace(false)
+public class VehicleMoveEvent extends jdk.jfr.Event {
+
+    @Label("Vehicle")
+    public String vehicleId;
+
+    @Label("Type")
+    public String vehicleType;
+
+    @Label("Distance (km)")
+    public double distance;
+
+    @Label("Mileage (km)")
+    public double mileage;
+
+    @SettingDefinition
+    @Name("sampleEvery")
+    @Label("Sample Every")
+    protected boolean sampleEvery(SampleEvery control) {
+        return control.sample();
+    }
+}
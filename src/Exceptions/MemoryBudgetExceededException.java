@@ -0,0 +1,21 @@
+package Exceptions;
+
+//thrown when the estimated heap footprint of a fleet would go over its memory budget
+public class MemoryBudgetExceededException extends InvalidOperationException {
+    private final long required;
+    private final long budget;
+
+    public MemoryBudgetExceededException(String message, long required, long budget) {
+        super(message);
+        this.required = required;
+        this.budget = budget;
+    }
+
+    public long getRequired() {
+        return required;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+}
@@ -0,0 +1,9 @@
+package Interfaces;
+
+import Vehicles.Vehicle;
+
+//a vehicle calls this on the thread that changed its fuel or efficiency, once until the listener calls
+//vehicle.rangeChangeHandled(), so it has to be cheap and it may not assume it is told about every change
+public interface VehicleStateListener {
+    void onRangeChanged(Vehicle vehicle);
+}
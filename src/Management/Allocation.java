@@ -0,0 +1,35 @@
+package Management;
+
+import java.lang.management.ManagementFactory;
+
+//Reads how many bytes the current thread has allocated so far, through the HotSpot extension of ThreadMXBean
+//The difference between two reads is what the code in between allocated. On a JVM without the extension
+//(or with allocation counting turned off) every read returns 0 and isSupported() is false
+public final class Allocation {
+
+    private static final com.sun.management.ThreadMXBean THREADS = find();
+
+    private Allocation() {
+    }
+
+    private static com.sun.management.ThreadMXBean find() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                return bean;
+            }
+        } catch (RuntimeException | LinkageError e) {
+            //not a HotSpot JVM
+        }
+        return null;
+    }
+
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    public static long currentThreadAllocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,324 @@
+package Management;
+
+import Vehicles.Vehicle;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+//This estimates how much heap a fleet keeps alive: the vehicles of every type with their id and model strings,
+//and the structures FleetManager keeps next to them (the fleet list, the id set, the distinct model set and
+//the range index). Object sizes are worked out from the fields of the classes and the object layout of the
+//running JVM (compressed references or not, object alignment), so the numbers follow -Xmx32g and friends.
+//It is an estimate, it does not see padding between fields of different classes or list capacity that is not used.
+//A model string that is the same object as the one in the distinct model set is counted once, with the set
+public class FleetFootprint {
+
+    //object layout of the running JVM
+    static final int REFERENCE;
+    static final int HEADER;
+    static final int ARRAY_HEADER;
+    static final int ALIGNMENT;
+
+    static {
+        boolean compressedOops = Boolean.parseBoolean(vmOption("UseCompressedOops", "true"));
+        boolean compressedClass = Boolean.parseBoolean(vmOption("UseCompressedClassPointers", "true"));
+        REFERENCE = compressedOops ? 4 : 8;
+        HEADER = compressedClass ? 12 : 16;
+        ARRAY_HEADER = HEADER + 4;
+        ALIGNMENT = Integer.parseInt(vmOption("ObjectAlignmentInBytes", "8"));
+    }
+
+    private static final ClassValue<Long> SHALLOW = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            long size = HEADER;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(f.getModifiers())) {
+                        size += fieldSize(f.getType());
+                    }
+                }
+            }
+            return align(size);
+        }
+    };
+
+    private static final long STRING = shallowSize(String.class);
+    private static final long HASH_NODE = shallowSize(nested("java.util.HashMap$Node"));
+    private static final long TREE_ENTRY = shallowSize(nested("java.util.TreeMap$Entry"));
+    private static final long RANGE_NODE = shallowSize(nested("Management.RangeIndex$Node"));
+    private static final long NODE_TABLE = shallowSize(nested("Management.RangeIndex$NodeTable"));
+
+    //what the indices hold for one vehicle on average: its slot in the fleet list, its entry in the id set
+    //(a HashMap node and the table slots, the table is 37% to 75% full), its range index node and the slots of the
+    //node table behind the range index (33% to 67% full)
+    static final long INDEX_BYTES_PER_VEHICLE = REFERENCE + HASH_NODE + 2L * REFERENCE + RANGE_NODE + 2L * REFERENCE;
+
+    //Vehicles of one type and what they take with their strings
+    public static class TypeFootprint {
+        public final String type;
+        public final long vehicles;
+        public final long bytes;
+
+        TypeFootprint(String type, long vehicles, long bytes) {
+            this.type = type;
+            this.vehicles = vehicles;
+            this.bytes = bytes;
+        }
+
+        public long getBytesPerVehicle() {
+            return vehicles > 0 ? bytes / vehicles : 0;
+        }
+    }
+
+    private final Map<String, TypeFootprint> types;
+    private final long vehicleBytes;
+    private final long fleetListBytes;
+    private final long idSetBytes;
+    private final long distinctModelBytes;
+    private final int distinctModels;
+    private final long rangeIndexBytes;
+    private final long budget;
+
+    private FleetFootprint(Map<String, TypeFootprint> types, long vehicleBytes, long fleetListBytes, long idSetBytes,
+                           long distinctModelBytes, int distinctModels, long rangeIndexBytes, long budget) {
+        this.types = types;
+        this.vehicleBytes = vehicleBytes;
+        this.fleetListBytes = fleetListBytes;
+        this.idSetBytes = idSetBytes;
+        this.distinctModelBytes = distinctModelBytes;
+        this.distinctModels = distinctModels;
+        this.rangeIndexBytes = rangeIndexBytes;
+        this.budget = budget;
+    }
+
+    //the whole estimate for a fleet and the structures FleetManager keeps for it
+    static FleetFootprint of(List<Vehicle> fleet, Iterable<String> models, int ids, int indexed, long budget) {
+        Map<String, String> canonical = new TreeMap<>();
+        long modelBytes = 0;
+        int modelCount = 0;
+        for (String m : models) {
+            canonical.put(m, m);
+            modelBytes += TREE_ENTRY + stringSize(m);
+            modelCount++;
+        }
+
+        Map<String, long[]> byType = new TreeMap<>();
+        long total = 0;
+        for (Vehicle v : fleet) {
+            long bytes = vehicleSize(v, canonical.get(v.getModel()) == v.getModel());
+            long[] t = byType.computeIfAbsent(v.getClass().getSimpleName(), k -> new long[2]);
+            t[0]++;
+            t[1] += bytes;
+            total += bytes;
+        }
+        Map<String, TypeFootprint> types = new TreeMap<>();
+        for (Map.Entry<String, long[]> e : byType.entrySet()) {
+            types.put(e.getKey(), new TypeFootprint(e.getKey(), e.getValue()[0], e.getValue()[1]));
+        }
+
+        long fleetList = shallowSize(ArrayList.class) + arraySize(fleet.size(), REFERENCE);
+        long idSet = shallowSize(HashSet.class) + shallowSize(HashMap.class) + arraySize(hashTableLength(ids), REFERENCE)
+                + (long) ids * HASH_NODE;
+        long modelSet = shallowSize(TreeSet.class) + shallowSize(TreeMap.class) + modelBytes;
+        long rangeIndex = shallowSize(RangeIndex.class) + NODE_TABLE
+                + arraySize(nodeTableLength(indexed), REFERENCE) + (long) indexed * RANGE_NODE;
+        return new FleetFootprint(Collections.unmodifiableMap(types), total, fleetList, idSet, modelSet, modelCount,
+                rangeIndex, budget);
+    }
+
+    //one vehicle with its id and model strings, the model is left out when it is shared with the distinct model set
+    static long vehicleSize(Vehicle v, boolean modelShared) {
+        return shallowSize(v.getClass()) + stringSize(v.getId()) + (modelShared ? 0 : stringSize(v.getModel()));
+    }
+
+    //a new model in the distinct model set
+    static long modelSize(String model) {
+        return TREE_ENTRY + stringSize(model);
+    }
+
+    static long shallowSize(Class<?> type) {
+        return SHALLOW.get(type);
+    }
+
+    //a String and its byte array, latin-1 strings take a byte per char and the others two
+    static long stringSize(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int bytesPerChar = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return STRING + align(ARRAY_HEADER + (long) s.length() * bytesPerChar);
+    }
+
+    //a HashMap table doubles when it gets more than 75% full
+    private static int hashTableLength(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        int length = 16;
+        while (length * 0.75 < size) {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    //the node table of the range index is at most 2/3 full
+    private static int nodeTableLength(int size) {
+        int length = 16;
+        while (length * 2 < size * 3) {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    private static long arraySize(long length, int elementSize) {
+        return align(ARRAY_HEADER + length * elementSize);
+    }
+
+    private static long fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        if (type == byte.class || type == boolean.class) return 1;
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static Class<?> nested(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Missing class " + name, e);
+        }
+    }
+
+    private static String vmOption(String name, String fallback) {
+        try {
+            return ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption(name).getValue();
+        } catch (RuntimeException e) {
+            //not a HotSpot JVM, assume the usual 64 bit layout
+            return fallback;
+        }
+    }
+
+    //"512m", "2g", "300000k", "1048576" or a share of the max heap like "80%", 0 means no budget
+    public static long parseBytes(String text) {
+        String t = text.trim().toLowerCase(Locale.ROOT);
+        if (t.endsWith("%")) {
+            double share = Double.parseDouble(t.substring(0, t.length() - 1)) / 100;
+            if (share <= 0 || share > 1) {
+                throw new IllegalArgumentException("A memory budget share has to be above 0% and at most 100%: " + text);
+            }
+            return (long) (Runtime.getRuntime().maxMemory() * share);
+        }
+        long unit = 1;
+        switch (t.isEmpty() ? ' ' : t.charAt(t.length() - 1)) {
+            case 'k': unit = 1L << 10; break;
+            case 'm': unit = 1L << 20; break;
+            case 'g': unit = 1L << 30; break;
+            default: break;
+        }
+        long value = Long.parseLong(unit == 1 ? t : t.substring(0, t.length() - 1));
+        if (value < 0) {
+            throw new IllegalArgumentException("A memory budget cannot be negative: " + text);
+        }
+        return value * unit;
+    }
+
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format(Locale.ROOT, "%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    public Map<String, TypeFootprint> getTypes() {
+        return types;
+    }
+
+    public long getVehicleBytes() {
+        return vehicleBytes;
+    }
+
+    public long getFleetListBytes() {
+        return fleetListBytes;
+    }
+
+    public long getIdSetBytes() {
+        return idSetBytes;
+    }
+
+    public long getDistinctModelBytes() {
+        return distinctModelBytes;
+    }
+
+    public long getRangeIndexBytes() {
+        return rangeIndexBytes;
+    }
+
+    public long getIndexBytes() {
+        return fleetListBytes + idSetBytes + distinctModelBytes + rangeIndexBytes;
+    }
+
+    public long getTotalBytes() {
+        return vehicleBytes + getIndexBytes();
+    }
+
+    //0 when there is no budget
+    public long getBudget() {
+        return budget;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Estimated heap footprint (%d byte references, %d byte headers, %d byte alignment)%n",
+                REFERENCE, HEADER, ALIGNMENT));
+        long vehicles = 0;
+        for (TypeFootprint t : types.values()) {
+            sb.append(String.format(Locale.ROOT, "  %-12s %10d vehicles %12s  %6d B/vehicle%n", t.type, t.vehicles,
+                    formatBytes(t.bytes), t.getBytesPerVehicle()));
+            vehicles += t.vehicles;
+        }
+        sb.append(String.format(Locale.ROOT, "  %-12s %10d vehicles %12s%n", "all types", vehicles, formatBytes(vehicleBytes)));
+        sb.append(String.format(Locale.ROOT, "  %-32s %12s%n", "fleet list", formatBytes(fleetListBytes)));
+        sb.append(String.format(Locale.ROOT, "  %-32s %12s%n", "id set", formatBytes(idSetBytes)));
+        sb.append(String.format(Locale.ROOT, "  %-32s %12s%n", "distinct models (" + distinctModels + ")",
+                formatBytes(distinctModelBytes)));
+        sb.append(String.format(Locale.ROOT, "  %-32s %12s%n", "range index", formatBytes(rangeIndexBytes)));
+        sb.append(String.format(Locale.ROOT, "  %-32s %12s%n", "total", formatBytes(getTotalBytes())));
+        if (budget > 0) {
+            sb.append(String.format(Locale.ROOT, "  %-32s %12s  (%.0f%% used)%n", "budget", formatBytes(budget),
+                    100.0 * getTotalBytes() / budget));
+        } else {
+            sb.append("  no memory budget (set one with -Dfleet.memory.budget=512m or =80%)\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,313 @@
+package Management;
+
+import Exceptions.InvalidOperationException;
+import Interfaces.CargoCarrier;
+import Interfaces.PassengerCarrier;
+import Vehicles.Airplane;
+import Vehicles.Bus;
+import Vehicles.Car;
+import Vehicles.CargoShip;
+import Vehicles.Truck;
+import Vehicles.Vehicle;
+import Vehicles.VehicleSpec;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+//This makes synthetic fleets of any size for load tests, benchmarks and the simulators
+//Vehicle number i only depends on the seed, i and the profile (it gets its own random generator seeded from both),
+//so the same seed always gives the same fleet, any vehicle can be made on its own and a fleet can be produced
+//one vehicle at a time straight into a FleetManager or a csv file without ever holding all of it in memory.
+//What the fleet looks like is set in a Profile: the type mix, how skewed the model popularity is (Zipf, a few
+//models are very common and there is a long tail of rare ones), fuel, cargo, passengers, mileage and maintenance
+public class FleetGenerator {
+
+    //order of the weights in a type mix
+    public static final String[] TYPES = {"car", "truck", "bus", "airplane", "ship"};
+
+    //What the generated fleet looks like, the defaults are a plausible mixed fleet
+    public static class Profile {
+        public long seed = 42;
+        //relative weights in the order of TYPES
+        public int[] typeMix = {40, 25, 15, 10, 10};
+        //models per type, the well known ones first and then "<Type> Model <n>"
+        public int modelsPerType = 25;
+        //Zipf exponent of the model popularity, 0 makes every model equally likely
+        public double modelSkew = 1.0;
+        //fuel as a share of the tank, uniform between the two
+        public double minFuel = 0.05;
+        public double maxFuel = 1.0;
+        //cargo as a share of the cargo capacity, uniform between the two
+        public double minLoad = 0.0;
+        public double maxLoad = 0.9;
+        //passengers as a share of the seats, uniform between the two
+        public double minOccupancy = 0.0;
+        public double maxOccupancy = 1.0;
+        //mileage is exponentially distributed with this mean
+        public double meanMileage = 40000;
+        //share of vehicles that are past their service interval
+        public double overdueShare = 0.2;
+        //share of vehicles that have maintenance scheduled by hand
+        public double scheduledShare = 0.02;
+        //share of cargo ships with a sail (they carry no fuel)
+        public double sailShare = 0.2;
+    }
+
+    private static final String[][] CATALOG = {
+            {"Honda City", "Maruti 800", "Tata Nexon", "Hyundai i20", "Maruti Swift", "Toyota Innova", "Kia Seltos",
+                    "Mahindra XUV700"},
+            {"Tata Prima", "Ashok Leyland 2518", "Volvo FH", "BharatBenz 3523", "Eicher Pro 6028"},
+            {"Volvo 9400", "Tata Starbus", "Ashok Leyland Viking", "Scania Touring"},
+            {"Airbus A320", "Boeing 737", "ATR 72", "Boeing 787", "Airbus A350"},
+            {"Maersk Triple E", "MSC Gulsun", "Ever Ace", "CMA CGM Jacques Saade"}
+    };
+    private static final String[] TYPE_NAMES = {"Car", "Truck", "Bus", "Airplane", "Cargo Ship"};
+    private static final String[] ID_PREFIXES = {"CAR", "TRK", "BUS", "AIR", "SHP"};
+    //spreads the per-vehicle seeds so the random sequences of neighbouring vehicles dont overlap
+    private static final long SEED_STRIDE = 0xD1B54A32D192ED03L;
+
+    private final long count;
+    private final Profile profile;
+    private final double[] typeCdf;
+    private final String[][] models;
+    private final double[][] modelCdf;
+
+    public FleetGenerator(long count, Profile profile) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Vehicle count cannot be negative.");
+        }
+        if (profile.modelsPerType < 1) {
+            throw new IllegalArgumentException("There has to be at least one model per type.");
+        }
+        this.count = count;
+        this.profile = profile;
+        this.typeCdf = cdf(checkMix(profile.typeMix));
+        this.models = new String[TYPES.length][profile.modelsPerType];
+        this.modelCdf = new double[TYPES.length][];
+        double[] zipf = new double[profile.modelsPerType];
+        for (int k = 0; k < zipf.length; k++) {
+            zipf[k] = 1.0 / Math.pow(k + 1, profile.modelSkew);
+        }
+        for (int t = 0; t < TYPES.length; t++) {
+            for (int k = 0; k < profile.modelsPerType; k++) {
+                models[t][k] = k < CATALOG[t].length ? CATALOG[t][k] : TYPE_NAMES[t] + " Model " + (k + 1);
+            }
+            modelCdf[t] = cdf(zipf);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    //vehicle number index, the same every time for the same seed and profile
+    public Vehicle vehicle(long index) {
+        SplittableRandom random = new SplittableRandom(profile.seed + index * SEED_STRIDE);
+        int type = pick(typeCdf, random.nextDouble());
+        String id = ID_PREFIXES[type] + index;
+        String model = models[type][pick(modelCdf[type], random.nextDouble())];
+
+        Vehicle v;
+        switch (type) {
+            case 0:
+                v = new Car(id, model, 100 + random.nextInt(80));
+                break;
+            case 1:
+                v = new Truck(id, model, 70 + random.nextInt(40), 6 + 2 * random.nextInt(4));
+                break;
+            case 2:
+                v = new Bus(id, model, 60 + random.nextInt(40), 6);
+                break;
+            case 3:
+                v = new Airplane(id, model, 700 + random.nextInt(200), 30000 + random.nextInt(10000));
+                break;
+            default:
+                v = new CargoShip(id, model, 30 + random.nextInt(20), random.nextDouble() < profile.sailShare);
+                break;
+        }
+        VehicleSpec spec = v.getSpec();
+
+        //mileage, the last service and the fuel stop all fit inside it
+        double mileage = round(-profile.meanMileage * Math.log(1 - random.nextDouble()));
+        double interval = spec.getServiceInterval();
+        double sinceService = random.nextDouble() < profile.overdueShare
+                ? interval * (1.01 + random.nextDouble())
+                : interval * 0.99 * random.nextDouble();
+        mileage = Math.max(mileage, round(sinceService) + 1);
+        v.setCurrentMileage(mileage);
+        v.setMileageAtLastService(round(Math.max(0, mileage - sinceService)));
+        double fuel = round(spec.getFuelTankCapacity() * uniform(random, profile.minFuel, profile.maxFuel));
+        double lastFueledAt = round(mileage * (1 - 0.05 * random.nextDouble()));
+        double cargo = v instanceof CargoCarrier
+                ? round(spec.getCargoCapacity() * uniform(random, profile.minLoad, profile.maxLoad)) : 0;
+        int passengers = v instanceof PassengerCarrier
+                ? (int) Math.round(spec.getPassengerCapacity() * uniform(random, profile.minOccupancy, profile.maxOccupancy)) : 0;
+        boolean scheduled = random.nextDouble() < profile.scheduledShare;
+
+        //the setters and not refuel()/loadCargo() so a generated fleet doesnt fire refuel events and such
+        if (v instanceof Car c) {
+            c.setFuelLevel(fuel);
+            c.setLastFueledAt(lastFueledAt);
+            c.setCurrentPassengers(passengers);
+            c.setMaintenanceNeeded(scheduled);
+        } else if (v instanceof Truck t) {
+            t.setFuelLevel(fuel);
+            t.setLastFueledAt(lastFueledAt);
+            t.setCurrentCargo(cargo);
+            t.setMaintenanceNeeded(scheduled);
+        } else if (v instanceof Bus b) {
+            b.setFuelLevel(fuel);
+            b.setLastFueledAt(lastFueledAt);
+            b.setCurrentPassengers(passengers);
+            b.setCurrentCargo(cargo);
+            b.setMaintenanceNeeded(scheduled);
+        } else if (v instanceof Airplane a) {
+            a.setFuelLevel(fuel);
+            a.setLastFueledAt(lastFueledAt);
+            a.setCurrentPassengers(passengers);
+            a.setCurrentCargo(cargo);
+            a.setMaintenanceNeeded(scheduled);
+        } else if (v instanceof CargoShip s) {
+            if (!s.getHasSail()) {
+                s.setFuelLevel(fuel);
+                s.setLastFueledAt(lastFueledAt);
+            }
+            s.setCurrentCargo(cargo);
+            s.setMaintenanceNeeded(scheduled);
+        }
+        return v;
+    }
+
+    //the vehicles in order, each one is made when it is asked for
+    public Iterator<Vehicle> iterator() {
+        return new Iterator<>() {
+            private long next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Vehicle next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return vehicle(next++);
+            }
+        };
+    }
+
+    //the same vehicles as a stream, every vehicle is independent so .parallel() works
+    public Stream<Vehicle> stream() {
+        return LongStream.range(0, count).mapToObj(this::vehicle);
+    }
+
+    //streams the fleet into the manager
+    public int addTo(FleetManager manager) throws InvalidOperationException {
+        return manager.addVehicles(iterator());
+    }
+
+    //writes the fleet as a csv file that FleetManager.loadFromFile() can read, one vehicle in memory at a time
+    public void writeTo(String filename) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename), 1 << 16)) {
+            for (long i = 0; i < count; i++) {
+                writer.write(FleetManager.toCsvLine(vehicle(i)));
+                writer.newLine();
+            }
+        }
+    }
+
+    //"car=70,truck=30" -> weights in the order of TYPES, types that are not named get 0
+    public static int[] parseMix(String text) {
+        int[] mix = new int[TYPES.length];
+        for (String part : text.split(",")) {
+            String[] kv = part.trim().split("=");
+            int index = kv.length == 2 ? List.of(TYPES).indexOf(kv[0].trim().toLowerCase()) : -1;
+            if (index < 0) {
+                throw new IllegalArgumentException("Bad type mix '" + part + "', expected e.g. car=40,truck=25,bus=15,airplane=10,ship=10");
+            }
+            mix[index] = Integer.parseInt(kv[1].trim());
+        }
+        return checkMix(mix);
+    }
+
+    public static String formatMix(int[] mix) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < TYPES.length; i++) {
+            if (mix[i] > 0) {
+                sb.append(sb.length() > 0 ? "," : "").append(TYPES[i]).append('=').append(mix[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int[] checkMix(int[] mix) {
+        int total = 0;
+        for (int w : mix) {
+            if (w < 0) {
+                throw new IllegalArgumentException("A type mix cannot have negative weights.");
+            }
+            total += w;
+        }
+        if (mix.length != TYPES.length || total <= 0) {
+            throw new IllegalArgumentException("A type mix needs " + TYPES.length + " weights and at least one above 0.");
+        }
+        return mix;
+    }
+
+    private static double[] cdf(int[] weights) {
+        double[] w = new double[weights.length];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = weights[i];
+        }
+        return cdf(w);
+    }
+
+    //running totals scaled to 1, the last entry is exactly 1
+    private static double[] cdf(double[] weights) {
+        double total = 0;
+        for (double w : weights) {
+            total += w;
+        }
+        double[] cdf = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cdf[i] = sum / total;
+        }
+        cdf[cdf.length - 1] = 1.0;
+        return cdf;
+    }
+
+    //first entry whose running total is above u, with a binary search
+    private static int pick(double[] cdf, double u) {
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] > u) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private static double uniform(SplittableRandom random, double min, double max) {
+        return max > min ? min + (max - min) * random.nextDouble() : min;
+    }
+
+    //one decimal like the csv file, so a generated fleet survives a save and load unchanged
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
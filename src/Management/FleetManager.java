@@ -1,14 +1,19 @@
 package Management;
 
+import Events.FleetFileEvent;
+import Events.FleetReportEvent;
 import Exceptions.InvalidOperationException;
+import Exceptions.MemoryBudgetExceededException;
 import Interfaces.FuelConsumable;
 import Interfaces.Maintainable;
 import Vehicles.*;
 
 import Management.Comparators.VehicleModelComparator;
+import Management.FleetMetrics.Operation;
 import Management.Comparators.VehicleSpeedComparator;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.PrintWriter;
@@ -19,66 +24,193 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.stream.IntStream;
 
 public class FleetManager {
 
     private List<Vehicle> fleet;
-    private Set<String> distinctModels;
+    private TreeSet<String> distinctModels;
     private Set<String> vehicleIds;
+    private RangeIndex rangeIndex;
+    private FleetMetrics metrics;
+    //running estimate of the heap the vehicles and their index entries take (see FleetFootprint)
+    private volatile long footprint;
+    //most bytes footprint may reach, 0 for no limit
+    private long memoryBudget;
 
     //This is the constructor that initializes the collections for the fleet management system
     public FleetManager() {
         this.fleet = new ArrayList<>();
         this.distinctModels = new TreeSet<>();
         this.vehicleIds = new HashSet<>();
+        this.rangeIndex = new RangeIndex();
+        this.metrics = new FleetMetrics(this);
+        String budget = System.getProperty("fleet.memory.budget");
+        this.memoryBudget = budget != null ? FleetFootprint.parseBytes(budget) : 0;
+    }
+
+    //call counts, errors and latencies of the operations below (when -Dfleet.metrics=true) and fleet gauges
+    public FleetMetrics getMetrics() {
+        return metrics;
     }
 
     //This is the function that will add a new vehicle to the fleet
     //and will throw an exception if a vehicle with the same ID exists already
     public void addVehicle(Vehicle v) throws InvalidOperationException {
-        if (vehicleIds.contains(v.getId())) {
-            throw new InvalidOperationException("Vehicle with ID " + v.getId() + " already exists.");
+        long start = metrics.start();
+        try {
+            if (vehicleIds.contains(v.getId())) {
+                throw new InvalidOperationException("Vehicle with ID " + v.getId() + " already exists.");
+            }
+            long bytes = footprintOf(v, distinctModels);
+            checkBudget(footprint, bytes, "Vehicle " + v.getId() + " was not added");
+            fleet.add(v);
+            vehicleIds.add(v.getId());
+            distinctModels.add(v.getModel());
+            rangeIndex.update(v);
+            footprint += bytes;
+            System.out.println("Vehicle " + v.getId() + " added to the fleet.");
+        } catch (Exception e) {
+            metrics.failed(Operation.ADD_VEHICLE);
+            throw e;
+        } finally {
+            metrics.end(Operation.ADD_VEHICLE, start);
+        }
+    }
+
+    //Adds many vehicles in one go (a generated fleet), with one line printed at the end instead of one per vehicle
+    //The vehicles are taken one at a time so a generator never has to hold the whole fleet in memory.
+    //Stops at the first vehicle whose ID already exists or that does not fit in the memory budget,
+    //the ones before it stay in the fleet
+    public int addVehicles(Iterator<? extends Vehicle> vehicles) throws InvalidOperationException {
+        long start = metrics.start();
+        int added = 0;
+        try {
+            while (vehicles.hasNext()) {
+                Vehicle v = vehicles.next();
+                if (vehicleIds.contains(v.getId())) {
+                    throw new InvalidOperationException("Vehicle with ID " + v.getId() + " already exists.");
+                }
+                long bytes = footprintOf(v, distinctModels);
+                checkBudget(footprint, bytes, "Stopped after " + added + " vehicles");
+                vehicleIds.add(v.getId());
+                fleet.add(v);
+                distinctModels.add(v.getModel());
+                rangeIndex.update(v);
+                footprint += bytes;
+                added++;
+            }
+            System.out.println(added + " vehicles added to the fleet.");
+            return added;
+        } catch (Exception e) {
+            metrics.failed(Operation.ADD_VEHICLES);
+            throw e;
+        } finally {
+            metrics.end(Operation.ADD_VEHICLES, start);
         }
-        fleet.add(v);
-        vehicleIds.add(v.getId());
-        distinctModels.add(v.getModel());
-        System.out.println("Vehicle " + v.getId() + " added to the fleet.");
     }
 
     //This is the function that will remove a vehicle from the fleet
     //and will throw an exception if a vehicle with the ID doesn't exist in the fleet
     public void removeVehicle(String id) throws InvalidOperationException {
-        Vehicle vehR = null;
-        for (Vehicle v : fleet) {
-            if (v.getId().equals(id)) {
-                vehR = v;
-                break;
+        long start = metrics.start();
+        try {
+            Vehicle vehR = null;
+            for (Vehicle v : fleet) {
+                if (v.getId().equals(id)) {
+                    vehR = v;
+                    break;
+                }
             }
-        }
 
-        if (vehR != null) {
-            fleet.remove(vehR);
-            vehicleIds.remove(id);
-            rebuildDistinctModels();
-            System.out.println("Vehicle " + id + " removed from the fleet.");
-        } else {
-            throw new InvalidOperationException("Vehicle with ID " + id + " not found.");
+            if (vehR != null) {
+                String model = vehR.getModel();
+                long bytes = FleetFootprint.vehicleSize(vehR, distinctModels.ceiling(model) == model)
+                        + FleetFootprint.INDEX_BYTES_PER_VEHICLE;
+                fleet.remove(vehR);
+                vehicleIds.remove(id);
+                rangeIndex.remove(vehR);
+                rebuildDistinctModels();
+                if (!distinctModels.contains(model)) {
+                    bytes += FleetFootprint.modelSize(model);
+                }
+                footprint -= bytes;
+                System.out.println("Vehicle " + id + " removed from the fleet.");
+            } else {
+                throw new InvalidOperationException("Vehicle with ID " + id + " not found.");
+            }
+        } catch (Exception e) {
+            metrics.failed(Operation.REMOVE_VEHICLE);
+            throw e;
+        } finally {
+            metrics.end(Operation.REMOVE_VEHICLE, start);
         }
     }
 
     //This is the function that will start journey for all the vehicles for a specific distance
     //and will throw an exception if fuel is not enough in any particular vehicle
     public void startAllJourneys(double distance) {
-        System.out.println("\nStarting all journeys for " + distance + " km:");
-        for (Vehicle v : fleet) {
-            try {
-                v.move(distance);
-            } catch (Exception exp) {
-                System.out.println("\nERROR: Could not start journey for vehicle " + v.getId() + ". Reason: " + exp.getMessage());
+        long start = metrics.start();
+        try {
+            System.out.println("\nStarting all journeys for " + distance + " km:");
+            for (Vehicle v : fleet) {
+                try {
+                    v.move(distance);
+                } catch (Exception exp) {
+                    System.out.println("\nERROR: Could not start journey for vehicle " + v.getId() + ". Reason: " + exp.getMessage());
+                }
             }
+        } finally {
+            metrics.end(Operation.START_ALL_JOURNEYS, start);
+        }
+    }
+
+    //what adding the vehicle does to the footprint: the vehicle with its strings and index entries, and the model
+    //if it is new to models (its string is then shared with the distinct model set)
+    private long footprintOf(Vehicle v, TreeSet<String> models) {
+        String model = v.getModel();
+        String known = models.ceiling(model);
+        if (!model.equals(known)) {
+            return FleetFootprint.vehicleSize(v, true) + FleetFootprint.INDEX_BYTES_PER_VEHICLE
+                    + FleetFootprint.modelSize(model);
+        }
+        return FleetFootprint.vehicleSize(v, known == model) + FleetFootprint.INDEX_BYTES_PER_VEHICLE;
+    }
+
+    //refuses bytes more when a fleet of inUse bytes would go over the memory budget, before anything is changed
+    private void checkBudget(long inUse, long bytes, String refused) throws MemoryBudgetExceededException {
+        long required = inUse + bytes;
+        if (memoryBudget > 0 && required > memoryBudget) {
+            throw new MemoryBudgetExceededException(refused + ": it would take the fleet past its memory budget of "
+                    + FleetFootprint.formatBytes(memoryBudget) + " (about " + FleetFootprint.formatBytes(inUse)
+                    + " in use).", required, memoryBudget);
         }
     }
 
+    //the estimated heap footprint of the fleet by vehicle type, with the indices and the distinct models
+    public FleetFootprint estimateFootprint() {
+        return FleetFootprint.of(fleet, distinctModels, vehicleIds.size(), rangeIndex.size(), memoryBudget);
+    }
+
+    //the running estimate the budget is checked against, it adds up the same parts as estimateFootprint()
+    //with the hash tables counted at their average fill instead of their actual size
+    public long getEstimatedBytes() {
+        return footprint;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    //0 turns the budget off, a budget below the current footprint only stops the fleet from growing
+    public void setMemoryBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("A memory budget cannot be negative.");
+        }
+        this.memoryBudget = bytes;
+    }
+
     //Helper method that helps to rebuild the set of distinct models
     //this is called after removing a vehicle or loading from a file
     private void rebuildDistinctModels() {
@@ -91,60 +223,143 @@ public class FleetManager {
     //This is a function that will estimate the fuel required for the entire fleet for a given distance
     //and this will not consume any fuel from the vehicles
     public double getTotalFuelConsumption(double distance) {
-        double totalFuel = 0.0;
-        for (Vehicle v : fleet) {
-            if (v instanceof FuelConsumable fc) {
-                double efficiency = v.calculateFuelEfficiency();
+        long start = metrics.start();
+        try {
+            double totalFuel = 0.0;
+            for (Vehicle v : fleet) {
+                if (v instanceof FuelConsumable fc) {
+                    double efficiency = v.getFuelEfficiency();
 
-                if (efficiency > 0) {
-                    totalFuel += (distance / efficiency);
+                    if (efficiency > 0) {
+                        totalFuel += (distance / efficiency);
+                    }
                 }
             }
+            return totalFuel;
+        } finally {
+            metrics.end(Operation.TOTAL_FUEL_CONSUMPTION, start);
         }
-        return totalFuel;
     }
 
     //This function will perform maintenance on the all vehicles
     public void maintainAll() {
-        System.out.println("Performing maintenance on all vehicles that need it...");
-        for (Vehicle veh : fleet) {
-            if (veh instanceof Maintainable) {
-                Maintainable mtbVeh = (Maintainable) veh;
-                if (mtbVeh.needsMaintenance()) {
-                    mtbVeh.performMaintenance();
+        long start = metrics.start();
+        try {
+            System.out.println("Performing maintenance on all vehicles that need it...");
+            for (Vehicle veh : fleet) {
+                if (veh instanceof Maintainable) {
+                    Maintainable mtbVeh = (Maintainable) veh;
+                    if (mtbVeh.needsMaintenance()) {
+                        mtbVeh.performMaintenance();
+                    }
                 }
             }
+            System.out.println();
+        } finally {
+            metrics.end(Operation.MAINTAIN_ALL, start);
         }
-        System.out.println();
+    }
+
+    //read-only view of the fleet in its current order, for the simulation runners
+    public List<Vehicle> getVehicles() {
+        return Collections.unmodifiableList(fleet);
     }
 
     //This searches the fleet for vehicles of a specific type (like car or truck etc)
     public List<Vehicle> searchByType(Class<?> type) {
-        List<Vehicle> vehFound = new ArrayList<>();
-        for (Vehicle v : fleet) {
-            if (type.isInstance(v)) {
-                vehFound.add(v);
+        long start = metrics.start();
+        try {
+            List<Vehicle> vehFound = new ArrayList<>();
+            for (Vehicle v : fleet) {
+                if (type.isInstance(v)) {
+                    vehFound.add(v);
+                }
             }
+            return vehFound;
+        } finally {
+            metrics.end(Operation.SEARCH_BY_TYPE, start);
         }
-        return vehFound;
     }
 
     //sorts the fleet on the basis of fuel efficiency (high to low)
+    //the efficiency of every vehicle is read once into an array and the sort only compares those numbers
     public void sortFleetByEfficiency() {
-        Collections.sort(fleet);
-        System.out.println("\nFleet is sorted by fuel efficiency (highest to lowest).");
+        long start = metrics.start();
+        try {
+            double[] keys = new double[fleet.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = fleet.get(i).getFuelEfficiency();
+            }
+            sortFleetByKeyDescending(keys);
+            System.out.println("\nFleet is sorted by fuel efficiency (highest to lowest).");
+        } finally {
+            metrics.end(Operation.SORT_BY_EFFICIENCY, start);
+        }
     }
 
     //sorts the fleet on the basis of model name (A-Z)
     public void sortFleetByModel() {
-        Collections.sort(fleet, new VehicleModelComparator());
-        System.out.println("\nFleet is sorted by model name (A-Z).");
+        long start = metrics.start();
+        try {
+            Collections.sort(fleet, new VehicleModelComparator());
+            System.out.println("\nFleet is sorted by model name (A-Z).");
+        } finally {
+            metrics.end(Operation.SORT_BY_MODEL, start);
+        }
     }
 
     //sorts the fleet on the basis of speed (high to low)
     public void sortFleetBySpeed() {
-        Collections.sort(fleet, new VehicleSpeedComparator());
-        System.out.println("\nFleet is sorted by max speed (highest to lowest).");
+        long start = metrics.start();
+        try {
+            double[] keys = new double[fleet.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = fleet.get(i).getMaxSpeed();
+            }
+            sortFleetByKeyDescending(keys);
+            System.out.println("\nFleet is sorted by max speed (highest to lowest).");
+        } finally {
+            metrics.end(Operation.SORT_BY_SPEED, start);
+        }
+    }
+
+    //Helper method that reorders the fleet so that keys[i] (the key of fleet.get(i)) goes from high to low
+    //it is a stable merge sort on the positions, so vehicles with equal keys keep their order like Collections.sort
+    private void sortFleetByKeyDescending(double[] keys) {
+        int n = keys.length;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, n);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    //take from the right side only when its key is strictly larger so the sort stays stable
+                    if (Double.compare(keys[order[j]], keys[order[i]]) > 0) {
+                        buffer[k++] = order[j++];
+                    } else {
+                        buffer[k++] = order[i++];
+                    }
+                }
+                while (i < mid) buffer[k++] = order[i++];
+                while (j < hi) buffer[k++] = order[j++];
+                System.arraycopy(buffer, lo, order, lo, hi - lo);
+            }
+        }
+
+        Vehicle[] sorted = new Vehicle[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = fleet.get(order[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            fleet.set(i, sorted[i]);
+        }
     }
 
     //This function will give us a set of unique(distinct) vehicle models
@@ -166,245 +381,396 @@ public class FleetManager {
 
     //This will give us the summary of our fleet and will give us the complete report
     public String generateReport() {
-        StringBuilder rpt = new StringBuilder();
-        rpt.append("\n=================================\n");
-        rpt.append("********** Fleet Report *********\n\n");
-        rpt.append("Total Vehicles: ").append(fleet.size()).append("\n");
-
-        double totalMlg = 0;
-        double totalEfficiency = 0;
-        int fuelableVehicles = 0;
-        int carCount = 0;
-        int truckCount = 0;
-        int busCount = 0;
-        int airplaneCount = 0;
-        int cargoShipCount = 0;
-
-        StringBuilder vehicleDetails = new StringBuilder();
+        long start = metrics.start();
+        FleetReportEvent event = new FleetReportEvent();
+        event.begin();
+        try {
+            StringBuilder rpt = new StringBuilder();
+            rpt.append("\n=================================\n");
+            rpt.append("********** Fleet Report *********\n\n");
+            rpt.append("Total Vehicles: ").append(fleet.size()).append("\n");
+
+            double totalMlg = 0;
+            double totalEfficiency = 0;
+            int fuelableVehicles = 0;
+            int carCount = 0;
+            int truckCount = 0;
+            int busCount = 0;
+            int airplaneCount = 0;
+            int cargoShipCount = 0;
+
+            StringBuilder vehicleDetails = new StringBuilder();
 
-        for (Vehicle v : fleet) {
+            for (Vehicle v : fleet) {
 
-            totalMlg += v.getCurrentMileage();
+                totalMlg += v.getCurrentMileage();
 
-            if (v instanceof FuelConsumable fc) {
-                double efficiency = v.calculateFuelEfficiency();
-                if (efficiency > 0) {
-                    totalEfficiency += efficiency;
-                    fuelableVehicles++;
+                if (v instanceof FuelConsumable fc) {
+                    double efficiency = v.getFuelEfficiency();
+                    if (efficiency > 0) {
+                        totalEfficiency += efficiency;
+                        fuelableVehicles++;
+                    }
+                }
+
+                if (v instanceof Car) carCount++;
+                else if (v instanceof Truck) truckCount++;
+                else if (v instanceof Bus) busCount++;
+                else if (v instanceof Airplane) airplaneCount++;
+                else if (v instanceof CargoShip) cargoShipCount++;
+
+                String maintenanceStatus = "N/A";
+                if (v instanceof Maintainable m) {
+                    maintenanceStatus = String.valueOf(m.needsMaintenance());
                 }
-            }
 
-            if (v instanceof Car) carCount++;
-            else if (v instanceof Truck) truckCount++;
-            else if (v instanceof Bus) busCount++;
-            else if (v instanceof Airplane) airplaneCount++;
-            else if (v instanceof CargoShip) cargoShipCount++;
+                vehicleDetails.append("ID: ").append(v.getId())
+                        .append(", Type: ").append(v.getClass().getSimpleName())
+                        .append(", Model: ").append(v.getModel())
+                        .append(", Top Speed: ").append(v.getMaxSpeed()).append(" km/h")
+                        .append(", Mileage: ").append(v.getCurrentMileage()).append(" km")
+                        .append(", Status: ").append(maintenanceStatus)
+                        .append("\n");
+            }
 
-            String maintenanceStatus = "N/A";
-            if (v instanceof Maintainable m) {
-                maintenanceStatus = String.valueOf(m.needsMaintenance());
+            rpt.append("\n--- Fleet Statistics ---\n");
+            rpt.append("Vehicle Counts by Type:\n");
+            if (carCount > 0) rpt.append("  - Cars: ").append(carCount).append("\n");
+            if (truckCount > 0) rpt.append("  - Trucks: ").append(truckCount).append("\n");
+            if (busCount > 0) rpt.append("  - Buses: ").append(busCount).append("\n");
+            if (airplaneCount > 0) rpt.append("  - Airplanes: ").append(airplaneCount).append("\n");
+            if (cargoShipCount > 0) rpt.append("  - Cargo Ships: ").append(cargoShipCount).append("\n");
+            rpt.append("---------------------------\n");
+
+            if (fuelableVehicles > 0) {
+                double avgEfficiency = totalEfficiency / fuelableVehicles;
+                rpt.append(String.format("\nAverage Fleet Efficiency: %.1f km/L\n", avgEfficiency));
+            } else {
+                rpt.append("\nAverage Fleet Efficiency: N/A\n");
             }
 
-            vehicleDetails.append("ID: ").append(v.getId())
-                    .append(", Type: ").append(v.getClass().getSimpleName())
-                    .append(", Model: ").append(v.getModel())
-                    .append(", Top Speed: ").append(v.getMaxSpeed()).append(" km/h")
-                    .append(", Mileage: ").append(v.getCurrentMileage()).append(" km")
-                    .append(", Status: ").append(maintenanceStatus)
-                    .append("\n");
+            rpt.append(String.format("\nTotal Fleet Mileage: %.1f km\n", totalMlg));
+
+            rpt.append("\n---Individual Vehicle Details---\n");
+            rpt.append(vehicleDetails.toString());
+            rpt.append("----------------------------------\n");
+
+            String report = rpt.toString();
+            if (event.shouldCommit()) {
+                event.vehicles = fleet.size();
+                event.characters = report.length();
+                event.commit();
+            }
+            return report;
+        } finally {
+            metrics.end(Operation.GENERATE_REPORT, start);
         }
+    }
 
-        rpt.append("\n--- Fleet Statistics ---\n");
-        rpt.append("Vehicle Counts by Type:\n");
-        if (carCount > 0) rpt.append("  - Cars: ").append(carCount).append("\n");
-        if (truckCount > 0) rpt.append("  - Trucks: ").append(truckCount).append("\n");
-        if (busCount > 0) rpt.append("  - Buses: ").append(busCount).append("\n");
-        if (airplaneCount > 0) rpt.append("  - Airplanes: ").append(airplaneCount).append("\n");
-        if (cargoShipCount > 0) rpt.append("  - Cargo Ships: ").append(cargoShipCount).append("\n");
-        rpt.append("---------------------------\n");
-
-        if (fuelableVehicles > 0) {
-            double avgEfficiency = totalEfficiency / fuelableVehicles;
-            rpt.append(String.format("\nAverage Fleet Efficiency: %.1f km/L\n", avgEfficiency));
-        } else {
-            rpt.append("\nAverage Fleet Efficiency: N/A\n");
+
+    //This scores every itinerary against every vehicle in parallel
+    //result[i][j] is the estimate of the i-th itinerary on the j-th vehicle of the fleet
+    public JourneyEstimate[][] evaluateItineraries(List<Itinerary> itineraries) {
+        Vehicle[] vehicles = fleet.toArray(new Vehicle[0]);
+        int n = vehicles.length;
+        JourneyEstimate[][] results = new JourneyEstimate[itineraries.size()][n];
+        if (n == 0) {
+            return results;
         }
+        IntStream.range(0, itineraries.size() * n).parallel().forEach(k -> {
+            int i = k / n;
+            int j = k % n;
+            results[i][j] = vehicles[j].estimateItinerary(itineraries.get(i));
+        });
+        return results;
+    }
 
-        rpt.append(String.format("\nTotal Fleet Mileage: %.1f km\n", totalMlg));
+    //This is for dispatch, for every itinerary it picks the feasible vehicle that finishes first
+    //(less fuel wins on a tie), the entry is null if no vehicle in the fleet can do that itinerary
+    public List<JourneyEstimate> findBestVehicles(List<Itinerary> itineraries) {
+        Vehicle[] vehicles = fleet.toArray(new Vehicle[0]);
+        JourneyEstimate[] best = new JourneyEstimate[itineraries.size()];
+        IntStream.range(0, itineraries.size()).parallel().forEach(i -> {
+            Itinerary itinerary = itineraries.get(i);
+            JourneyEstimate bestSoFar = null;
+            for (Vehicle v : vehicles) {
+                JourneyEstimate est = v.estimateItinerary(itinerary);
+                if (!est.isFeasible()) {
+                    continue;
+                }
+                if (bestSoFar == null || est.getTotalTime() < bestSoFar.getTotalTime()
+                        || (est.getTotalTime() == bestSoFar.getTotalTime() && est.getTotalFuel() < bestSoFar.getTotalFuel())) {
+                    bestSoFar = est;
+                }
+            }
+            best[i] = bestSoFar;
+        });
+        List<JourneyEstimate> result = new ArrayList<>(best.length);
+        Collections.addAll(result, best);
+        return result;
+    }
+
+    //This gives the vehicles that can cover the distance right now without refuelling (longest range first)
+    //the range index keeps the vehicles sorted by fuel x efficiency so we dont have to check every vehicle
+    public List<Vehicle> getVehiclesAbleToCover(double distance) {
+        return rangeIndex.between(distance, Double.POSITIVE_INFINITY);
+    }
 
-        rpt.append("\n---Individual Vehicle Details---\n");
-        rpt.append(vehicleDetails.toString());
-        rpt.append("----------------------------------\n");
+    //This counts the vehicles that can cover the distance without refuelling
+    public int countVehiclesAbleToCover(double distance) {
+        return rangeIndex.countAtLeast(distance);
+    }
 
-        return rpt.toString();
+    //This gives the vehicles whose remaining range is between min and max km
+    public List<Vehicle> getVehiclesWithRangeBetween(double min, double max) {
+        return rangeIndex.between(min, max);
     }
 
+    //This gives the k vehicles that can go the farthest without refuelling
+    public List<Vehicle> getTopVehiclesByRange(int k) {
+        return rangeIndex.top(k);
+    }
 
     //This will give us a list of vehicles that needs a maintenance
     public List<Vehicle> getVehiclesNeedingMaintenance() {
-        List<Vehicle> maintenanceList = new ArrayList<>();
-        for (Vehicle v : fleet) {
-            if (v instanceof Maintainable) {
-                Maintainable mtbVeh = (Maintainable) v;
-                if (mtbVeh.needsMaintenance()) {
-                    maintenanceList.add(v);
+        long start = metrics.start();
+        try {
+            List<Vehicle> maintenanceList = new ArrayList<>();
+            for (Vehicle v : fleet) {
+                if (v instanceof Maintainable) {
+                    Maintainable mtbVeh = (Maintainable) v;
+                    if (mtbVeh.needsMaintenance()) {
+                        maintenanceList.add(v);
+                    }
                 }
             }
+            return maintenanceList;
+        } finally {
+            metrics.end(Operation.VEHICLES_NEEDING_MAINTENANCE, start);
         }
-        return maintenanceList;
     }
 
     //saves the entire fleet into a csv file
     public void saveToFile(String filename) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            for (Vehicle v : fleet) {
-                String type = v.getClass().getSimpleName();
-                String line;
-
-                if (v instanceof Car) {
-                    Car c = (Car) v;
-                    line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%d,%b,%d,%.1f",
-                            type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
-                            c.getMileageAtLastService(),
-                            c.getFuelLevel(), c.getCurrentPassengers(), c.needsMaintenance(),
-                            c.getNumWheels(), c.getLastFueledAt());
-
-                } else if (v instanceof Truck) {
-                    Truck t = (Truck) v;
-                    line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%.1f,%b,%d,%.1f",
-                            type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
-                            t.getMileageAtLastService(),
-                            t.getFuelLevel(), t.getCurrentCargo(), t.needsMaintenance(),
-                            t.getNumWheels(), t.getLastFueledAt());
-
-                } else if (v instanceof Bus) {
-                    Bus b = (Bus) v;
-                    line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%d,%.1f,%b,%d,%.1f",
-                            type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
-                            b.getMileageAtLastService(),
-                            b.getFuelLevel(), b.getCurrentPassengers(), b.getCurrentCargo(), b.needsMaintenance(),
-                            b.getNumWheels(), b.getLastFueledAt());
-
-                } else if (v instanceof Airplane) {
-                    Airplane a = (Airplane) v;
-                    line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%d,%.1f,%b,%.1f",
-                            type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
-                            a.getMileageAtLastService(),
-                            a.getFuelLevel(), a.getCurrentPassengers(), a.getCurrentCargo(), a.needsMaintenance(),
-                            a.getLastFueledAt());
-
-                } else if (v instanceof CargoShip) {
-                    CargoShip cs = (CargoShip) v;
-                    line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%b,%.1f,%.1f,%b,%.1f",
-                            type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
-                            cs.getMileageAtLastService(),
-                            cs.getHasSail(), cs.getFuelLevel(), cs.getCurrentCargo(), cs.needsMaintenance(),
-                            cs.getLastFueledAt());
-
-                } else {
-                    line = String.format("%s,%s,%s,%.1f,%.1f,%.1f",
-                            type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
-                            v.getMileageAtLastService());
+        long start = metrics.start();
+        FleetFileEvent event = new FleetFileEvent();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+                for (Vehicle v : fleet) {
+                    writer.println(toCsvLine(v));
                 }
-                writer.println(line);
+                System.out.println("Fleet saved successfully to " + filename);
             }
-            System.out.println("Fleet saved successfully to " + filename);
+            succeeded = true;
+        } catch (Exception e) {
+            metrics.failed(Operation.SAVE_TO_FILE);
+            throw e;
+        } finally {
+            metrics.end(Operation.SAVE_TO_FILE, start);
+            commitFileEvent(event, "save", filename, succeeded);
         }
     }
 
-    //loads the fleet data from the csv file and replaces all the data currently in the fleet
-    public void loadFromFile(String filename) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            fleet.clear();
-            distinctModels.clear();
-            vehicleIds.clear();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split(",");
-                String type = data[0];
-                String id = data[1];
-                String model = data[2];
-                double maxSpeed = Double.parseDouble(data[3]);
-                double mileage = Double.parseDouble(data[4]);
-                double mileageAtLastService = Double.parseDouble(data[5]);
-
-                Vehicle vehicle = null;
-                if (type.equals("Car")) {
-                    Car car = new Car(id, model, maxSpeed);
-                    car.setFuelLevel(Double.parseDouble(data[6]));
-                    car.setCurrentPassengers(Integer.parseInt(data[7]));
-                    car.setMaintenanceNeeded(Boolean.parseBoolean(data[8]));
-                    car.setMileageAtLastService(mileageAtLastService);
-                    double lastFueledAt = Double.parseDouble(data[10]);
-                    car.setLastFueledAt(lastFueledAt);
-                    vehicle = car;
-                }
+    //one line of the fleet csv file, FleetGenerator writes its files with this too
+    static String toCsvLine(Vehicle v) {
+        String type = v.getClass().getSimpleName();
+        String line;
+
+        if (v instanceof Car) {
+            Car c = (Car) v;
+            line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%d,%b,%d,%.1f",
+                    type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
+                    c.getMileageAtLastService(),
+                    c.getFuelLevel(), c.getCurrentPassengers(), c.needsMaintenance(),
+                    c.getNumWheels(), c.getLastFueledAt());
+
+        } else if (v instanceof Truck) {
+            Truck t = (Truck) v;
+            line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%.1f,%b,%d,%.1f",
+                    type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
+                    t.getMileageAtLastService(),
+                    t.getFuelLevel(), t.getCurrentCargo(), t.needsMaintenance(),
+                    t.getNumWheels(), t.getLastFueledAt());
+
+        } else if (v instanceof Bus) {
+            Bus b = (Bus) v;
+            line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%d,%.1f,%b,%d,%.1f",
+                    type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
+                    b.getMileageAtLastService(),
+                    b.getFuelLevel(), b.getCurrentPassengers(), b.getCurrentCargo(), b.needsMaintenance(),
+                    b.getNumWheels(), b.getLastFueledAt());
+
+        } else if (v instanceof Airplane) {
+            Airplane a = (Airplane) v;
+            line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%.1f,%d,%.1f,%b,%.1f",
+                    type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
+                    a.getMileageAtLastService(),
+                    a.getFuelLevel(), a.getCurrentPassengers(), a.getCurrentCargo(), a.needsMaintenance(),
+                    a.getLastFueledAt());
+
+        } else if (v instanceof CargoShip) {
+            CargoShip cs = (CargoShip) v;
+            line = String.format("%s,%s,%s,%.1f,%.1f,%.1f,%b,%.1f,%.1f,%b,%.1f",
+                    type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
+                    cs.getMileageAtLastService(),
+                    cs.getHasSail(), cs.getFuelLevel(), cs.getCurrentCargo(), cs.needsMaintenance(),
+                    cs.getLastFueledAt());
 
-                else if (type.equals("Truck")) {
-                    int wheels = Integer.parseInt(data[9]);
-                    Truck truck = new Truck(id, model, maxSpeed, wheels);
-                    truck.setFuelLevel(Double.parseDouble(data[6]));
-                    truck.setCurrentCargo(Double.parseDouble(data[7]));
-                    truck.setMaintenanceNeeded(Boolean.parseBoolean(data[8]));
-                    double lastFueledAt = Double.parseDouble(data[10]);
-                    truck.setMileageAtLastService(mileageAtLastService);
-                    truck.setLastFueledAt(lastFueledAt);
-                    vehicle = truck;
-                }
-                else if (type.equals("Bus")) {
-                    int wheels = Integer.parseInt(data[10]);
-                    double lastFueledAt = Double.parseDouble(data[11]);
-                    Bus bus = new Bus(id, model, maxSpeed, wheels);
-                    bus.setFuelLevel(Double.parseDouble(data[6]));
-                    bus.setCurrentPassengers(Integer.parseInt(data[7]));
-                    bus.setCurrentCargo(Double.parseDouble(data[8]));
-                    bus.setMaintenanceNeeded(Boolean.parseBoolean(data[9]));
-                    bus.setMileageAtLastService(mileageAtLastService);
-                    bus.setLastFueledAt(lastFueledAt);
-                    vehicle = bus;
-                }
-                else if (type.equals("Airplane")) {
-                    double lastFueledAt = Double.parseDouble(data[10]);
-                    Airplane airplane = new Airplane(id, model, maxSpeed, 35000);
-                    airplane.setFuelLevel(Double.parseDouble(data[6]));
-                    airplane.setCurrentPassengers(Integer.parseInt(data[7]));
-                    airplane.setCurrentCargo(Double.parseDouble(data[8]));
-                    airplane.setMaintenanceNeeded(Boolean.parseBoolean(data[9]));
-                    airplane.setMileageAtLastService(mileageAtLastService);
-                    airplane.setLastFueledAt(lastFueledAt);
-                    vehicle = airplane;
-                }
-                else if (type.equals("CargoShip")) {
-                    double lastFueledAt = Double.parseDouble(data[10]);
-                    boolean hasSail = Boolean.parseBoolean(data[6]);
-                    CargoShip ship = new CargoShip(id, model, maxSpeed, hasSail);
-                    ship.setFuelLevel(Double.parseDouble(data[7]));
-                    ship.setCurrentCargo(Double.parseDouble(data[8]));
-                    ship.setMaintenanceNeeded(Boolean.parseBoolean(data[9]));
-                    ship.setMileageAtLastService(mileageAtLastService);
-                    ship.setLastFueledAt(lastFueledAt);
-                    vehicle = ship;
-                }
+        } else {
+            line = String.format("%s,%s,%s,%.1f,%.1f,%.1f",
+                    type, v.getId(), v.getModel(), v.getMaxSpeed(), v.getCurrentMileage(),
+                    v.getMileageAtLastService());
+        }
+        return line;
+    }
 
-                if (vehicle != null) {
-                    vehicle.setCurrentMileage(mileage);
-                    fleet.add(vehicle);
-                    distinctModels.add(vehicle.getModel());
-                    vehicleIds.add(vehicle.getId());
+    //loads the fleet data from the csv file and replaces all the data currently in the fleet
+    //The file is read into new collections and they replace the current ones only when the whole file was read,
+    //so a bad line or a vehicle that does not fit in the memory budget leaves the current fleet as it was
+    public void loadFromFile(String filename) throws IOException, InvalidOperationException {
+        long start = metrics.start();
+        FleetFileEvent event = new FleetFileEvent();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            List<Vehicle> loaded = new ArrayList<>();
+            TreeSet<String> loadedModels = new TreeSet<>();
+            Set<String> loadedIds = new HashSet<>();
+            long loadedFootprint = 0;
+            try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    String[] data = line.split(",");
+                    String type = data[0];
+                    String id = data[1];
+                    String model = data[2];
+                    double maxSpeed = Double.parseDouble(data[3]);
+                    double mileage = Double.parseDouble(data[4]);
+                    double mileageAtLastService = Double.parseDouble(data[5]);
+
+                    Vehicle vehicle = null;
+                    if (type.equals("Car")) {
+                        Car car = new Car(id, model, maxSpeed);
+                        car.setFuelLevel(Double.parseDouble(data[6]));
+                        car.setCurrentPassengers(Integer.parseInt(data[7]));
+                        car.setMaintenanceNeeded(Boolean.parseBoolean(data[8]));
+                        car.setMileageAtLastService(mileageAtLastService);
+                        double lastFueledAt = Double.parseDouble(data[10]);
+                        car.setLastFueledAt(lastFueledAt);
+                        vehicle = car;
+                    }
+
+                    else if (type.equals("Truck")) {
+                        int wheels = Integer.parseInt(data[9]);
+                        Truck truck = new Truck(id, model, maxSpeed, wheels);
+                        truck.setFuelLevel(Double.parseDouble(data[6]));
+                        truck.setCurrentCargo(Double.parseDouble(data[7]));
+                        truck.setMaintenanceNeeded(Boolean.parseBoolean(data[8]));
+                        double lastFueledAt = Double.parseDouble(data[10]);
+                        truck.setMileageAtLastService(mileageAtLastService);
+                        truck.setLastFueledAt(lastFueledAt);
+                        vehicle = truck;
+                    }
+                    else if (type.equals("Bus")) {
+                        int wheels = Integer.parseInt(data[10]);
+                        double lastFueledAt = Double.parseDouble(data[11]);
+                        Bus bus = new Bus(id, model, maxSpeed, wheels);
+                        bus.setFuelLevel(Double.parseDouble(data[6]));
+                        bus.setCurrentPassengers(Integer.parseInt(data[7]));
+                        bus.setCurrentCargo(Double.parseDouble(data[8]));
+                        bus.setMaintenanceNeeded(Boolean.parseBoolean(data[9]));
+                        bus.setMileageAtLastService(mileageAtLastService);
+                        bus.setLastFueledAt(lastFueledAt);
+                        vehicle = bus;
+                    }
+                    else if (type.equals("Airplane")) {
+                        double lastFueledAt = Double.parseDouble(data[10]);
+                        Airplane airplane = new Airplane(id, model, maxSpeed, 35000);
+                        airplane.setFuelLevel(Double.parseDouble(data[6]));
+                        airplane.setCurrentPassengers(Integer.parseInt(data[7]));
+                        airplane.setCurrentCargo(Double.parseDouble(data[8]));
+                        airplane.setMaintenanceNeeded(Boolean.parseBoolean(data[9]));
+                        airplane.setMileageAtLastService(mileageAtLastService);
+                        airplane.setLastFueledAt(lastFueledAt);
+                        vehicle = airplane;
+                    }
+                    else if (type.equals("CargoShip")) {
+                        double lastFueledAt = Double.parseDouble(data[10]);
+                        boolean hasSail = Boolean.parseBoolean(data[6]);
+                        CargoShip ship = new CargoShip(id, model, maxSpeed, hasSail);
+                        ship.setFuelLevel(Double.parseDouble(data[7]));
+                        ship.setCurrentCargo(Double.parseDouble(data[8]));
+                        ship.setMaintenanceNeeded(Boolean.parseBoolean(data[9]));
+                        ship.setMileageAtLastService(mileageAtLastService);
+                        ship.setLastFueledAt(lastFueledAt);
+                        vehicle = ship;
+                    }
+
+                    if (vehicle != null) {
+                        vehicle.setCurrentMileage(mileage);
+                        long bytes = footprintOf(vehicle, loadedModels);
+                        checkBudget(loadedFootprint, bytes, "Loading stopped at line " + lineNumber + " of " + filename
+                                + " after " + loaded.size() + " vehicles, the fleet was not changed");
+                        loadedFootprint += bytes;
+                        loaded.add(vehicle);
+                        loadedModels.add(vehicle.getModel());
+                        loadedIds.add(vehicle.getId());
+                    }
                 }
             }
+            //the old vehicles stop reporting to the range index before the new ones are put in it
+            rangeIndex.clear();
+            for (Vehicle vehicle : loaded) {
+                rangeIndex.update(vehicle);
+            }
+            fleet = loaded;
+            distinctModels = loadedModels;
+            vehicleIds = loadedIds;
+            footprint = loadedFootprint;
             System.out.println("Fleet loaded successfully from " + filename);
+            succeeded = true;
+        } catch (Exception e) {
+            metrics.failed(Operation.LOAD_FROM_FILE);
+            throw e;
+        } finally {
+            metrics.end(Operation.LOAD_FROM_FILE, start);
+            commitFileEvent(event, "load", filename, succeeded);
+        }
+    }
+
+    //ends the JFR event of a save or load, the file size is only looked up when a recording wants the event
+    private void commitFileEvent(FleetFileEvent event, String operation, String filename, boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.file = filename;
+            event.rows = fleet.size();
+            event.bytes = new File(filename).length();
+            event.succeeded = succeeded;
+            event.commit();
         }
     }
 
     //This is a helper function for finding a vehicle by its ID
     //and it will throw the error if the vehicle not found by its ID
     public Vehicle getVehicleById(String id) throws Exception {
-        for (Vehicle v : fleet) {
-            if (v.getId().equalsIgnoreCase(id)) {
-                return v;
+        long start = metrics.start();
+        try {
+            for (Vehicle v : fleet) {
+                if (v.getId().equalsIgnoreCase(id)) {
+                    return v;
+                }
             }
+            throw new Exception("Vehicle with ID '" + id + "' not found.");
+        } catch (Exception e) {
+            metrics.failed(Operation.GET_VEHICLE_BY_ID);
+            throw e;
+        } finally {
+            metrics.end(Operation.GET_VEHICLE_BY_ID, start);
         }
-        throw new Exception("Vehicle with ID '" + id + "' not found.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,338 @@
+package Management;
+
+import Interfaces.Maintainable;
+import Vehicles.Vehicle;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//This counts how often every FleetManager operation runs, how often it fails and how long it takes, and gives
+//gauges for the fleet size, the vehicles of each type, the vehicles due for maintenance and the estimated heap.
+//It is switched on with -Dfleet.metrics=true. ENABLED is a constant, so when it is off the JIT drops the timing
+//code from FleetManager completely and no counters or histograms are created (the gauges still work).
+//The numbers can be read over JMX (register()) or as Prometheus text, also written to a file every few seconds
+//(startFileExport(), for the node exporter textfile collector). The gauges are computed when they are read,
+//from a copy of the fleet, so a read while the fleet changes sees it just before or just after the change
+public class FleetMetrics implements FleetMetricsMXBean {
+
+    public static final boolean ENABLED = Boolean.getBoolean("fleet.metrics");
+
+    //The FleetManager operations that are measured, with the name they get in the metrics
+    public enum Operation {
+        ADD_VEHICLE("addVehicle"),
+        ADD_VEHICLES("addVehicles"),
+        REMOVE_VEHICLE("removeVehicle"),
+        GET_VEHICLE_BY_ID("getVehicleById"),
+        SEARCH_BY_TYPE("searchByType"),
+        START_ALL_JOURNEYS("startAllJourneys"),
+        MAINTAIN_ALL("maintainAll"),
+        VEHICLES_NEEDING_MAINTENANCE("getVehiclesNeedingMaintenance"),
+        TOTAL_FUEL_CONSUMPTION("getTotalFuelConsumption"),
+        SORT_BY_EFFICIENCY("sortFleetByEfficiency"),
+        SORT_BY_MODEL("sortFleetByModel"),
+        SORT_BY_SPEED("sortFleetBySpeed"),
+        GENERATE_REPORT("generateReport"),
+        SAVE_TO_FILE("saveToFile"),
+        LOAD_FROM_FILE("loadFromFile");
+
+        public final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final FleetManager manager;
+    private final LongAdder[] calls;
+    private final LongAdder[] errors;
+    private final LatencyHistogram[] latency;
+    private volatile String name = "fleet";
+    private ObjectName objectName;
+    private ScheduledExecutorService exporter;
+
+    FleetMetrics(FleetManager manager) {
+        this.manager = manager;
+        if (!ENABLED) {
+            this.calls = null;
+            this.errors = null;
+            this.latency = null;
+            return;
+        }
+        this.calls = new LongAdder[OPERATIONS.length];
+        this.errors = new LongAdder[OPERATIONS.length];
+        this.latency = new LatencyHistogram[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i] = new LongAdder();
+            errors[i] = new LongAdder();
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    //start of an operation, pass the result to end()
+    long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    //end of an operation, counted whether it worked or not
+    void end(Operation op, long start) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        calls[op.ordinal()].increment();
+        latency[op.ordinal()].record(nanos);
+    }
+
+    //the operation threw, end() is still called by its finally block
+    void failed(Operation op) {
+        if (ENABLED) {
+            errors[op.ordinal()].increment();
+        }
+    }
+
+    public long getCalls(Operation op) {
+        return ENABLED ? calls[op.ordinal()].sum() : 0;
+    }
+
+    public long getErrors(Operation op) {
+        return ENABLED ? errors[op.ordinal()].sum() : 0;
+    }
+
+    //null when metrics are off
+    public LatencyHistogram getLatency(Operation op) {
+        return ENABLED ? latency[op.ordinal()] : null;
+    }
+
+    @Override
+    public void reset() {
+        if (!ENABLED) {
+            return;
+        }
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i].reset();
+            errors[i].reset();
+            latency[i].reset();
+        }
+    }
+
+    //a copy of the fleet for the gauges, slots that were emptied by a removal at the same time are null
+    private Vehicle[] fleet() {
+        return manager.getVehicles().toArray(new Vehicle[0]);
+    }
+
+    @Override
+    public int getFleetSize() {
+        return fleet().length;
+    }
+
+    @Override
+    public Map<String, Long> getVehiclesByType() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Vehicle v : fleet()) {
+            if (v != null) {
+                counts.merge(v.getClass().getSimpleName(), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int getVehiclesNeedingMaintenance() {
+        int count = 0;
+        for (Vehicle v : fleet()) {
+            if (v instanceof Maintainable m && m.needsMaintenance()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getEstimatedHeapBytes() {
+        return manager.getEstimatedBytes();
+    }
+
+    @Override
+    public long getMemoryBudgetBytes() {
+        return manager.getMemoryBudget();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCalls() {
+        Map<String, Long> map = new TreeMap<>();
+        for (Operation op : OPERATIONS) {
+            map.put(op.metricName, getCalls(op));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getOperationErrors() {
+        Map<String, Long> map = new TreeMap<>();
+        for (Operation op : OPERATIONS) {
+            map.put(op.metricName, getErrors(op));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Double> getOperationMeanMicros() {
+        Map<String, Double> map = new TreeMap<>();
+        for (Operation op : OPERATIONS) {
+            map.put(op.metricName, ENABLED ? latency[op.ordinal()].getMean() / 1e3 : 0);
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Double> getOperationP99Micros() {
+        Map<String, Double> map = new TreeMap<>();
+        for (Operation op : OPERATIONS) {
+            map.put(op.metricName, ENABLED ? latency[op.ordinal()].getValueAtPercentile(99) / 1e3 : 0);
+        }
+        return map;
+    }
+
+    //Prometheus text exposition format, latencies in seconds as summaries with quantiles
+    @Override
+    public String toPrometheusText() {
+        String fleet = "fleet=\"" + escape(name) + "\"";
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# HELP fleet_vehicles Vehicles in the fleet.\n");
+        sb.append("# TYPE fleet_vehicles gauge\n");
+        sb.append("fleet_vehicles{").append(fleet).append("} ").append(getFleetSize()).append('\n');
+        sb.append("# HELP fleet_vehicles_by_type Vehicles in the fleet by type.\n");
+        sb.append("# TYPE fleet_vehicles_by_type gauge\n");
+        for (Map.Entry<String, Long> e : getVehiclesByType().entrySet()) {
+            sb.append("fleet_vehicles_by_type{").append(fleet).append(",type=\"").append(escape(e.getKey()))
+                    .append("\"} ").append(e.getValue()).append('\n');
+        }
+        sb.append("# HELP fleet_vehicles_needing_maintenance Vehicles due for maintenance.\n");
+        sb.append("# TYPE fleet_vehicles_needing_maintenance gauge\n");
+        sb.append("fleet_vehicles_needing_maintenance{").append(fleet).append("} ")
+                .append(getVehiclesNeedingMaintenance()).append('\n');
+        sb.append("# HELP fleet_estimated_heap_bytes Estimated heap taken by the vehicles and their index entries.\n");
+        sb.append("# TYPE fleet_estimated_heap_bytes gauge\n");
+        sb.append("fleet_estimated_heap_bytes{").append(fleet).append("} ").append(getEstimatedHeapBytes()).append('\n');
+        sb.append("# HELP fleet_memory_budget_bytes Most heap the fleet may take, 0 when there is no budget.\n");
+        sb.append("# TYPE fleet_memory_budget_bytes gauge\n");
+        sb.append("fleet_memory_budget_bytes{").append(fleet).append("} ").append(getMemoryBudgetBytes()).append('\n');
+        if (!ENABLED) {
+            return sb.toString();
+        }
+
+        sb.append("# HELP fleet_operation_calls_total FleetManager operations run.\n");
+        sb.append("# TYPE fleet_operation_calls_total counter\n");
+        for (Operation op : OPERATIONS) {
+            sb.append("fleet_operation_calls_total{").append(fleet).append(",operation=\"").append(op.metricName)
+                    .append("\"} ").append(getCalls(op)).append('\n');
+        }
+        sb.append("# HELP fleet_operation_errors_total FleetManager operations that threw an exception.\n");
+        sb.append("# TYPE fleet_operation_errors_total counter\n");
+        for (Operation op : OPERATIONS) {
+            sb.append("fleet_operation_errors_total{").append(fleet).append(",operation=\"").append(op.metricName)
+                    .append("\"} ").append(getErrors(op)).append('\n');
+        }
+        sb.append("# HELP fleet_operation_latency_seconds Time spent in FleetManager operations.\n");
+        sb.append("# TYPE fleet_operation_latency_seconds summary\n");
+        for (Operation op : OPERATIONS) {
+            LatencyHistogram.Summary s = latency[op.ordinal()].summarize();
+            String labels = fleet + ",operation=\"" + op.metricName + "\"";
+            quantile(sb, labels, "0.5", s.p50);
+            quantile(sb, labels, "0.9", s.p90);
+            quantile(sb, labels, "0.99", s.p99);
+            quantile(sb, labels, "0.999", s.p999);
+            sb.append("fleet_operation_latency_seconds_sum{").append(labels).append("} ")
+                    .append(seconds(s.mean * s.count)).append('\n');
+            sb.append("fleet_operation_latency_seconds_count{").append(labels).append("} ").append(s.count).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void quantile(StringBuilder sb, String labels, String q, long nanos) {
+        sb.append("fleet_operation_latency_seconds{").append(labels).append(",quantile=\"").append(q).append("\"} ")
+                .append(seconds(nanos)).append('\n');
+    }
+
+    private static String seconds(double nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    //writes the text to a temporary file next to the target and moves it over, so a reader never sees half a file
+    @Override
+    public void writePrometheusFile(String file) throws IOException {
+        Path target = Path.of(file).toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.writeString(tmp, toPrometheusText(), StandardCharsets.UTF_8);
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    //rewrites the file every periodSeconds from a daemon thread until stopFileExport()
+    public synchronized void startFileExport(String file, long periodSeconds) {
+        stopFileExport();
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fleet-metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        exporter.scheduleAtFixedRate(() -> {
+            try {
+                writePrometheusFile(file);
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopFileExport() {
+        if (exporter != null) {
+            exporter.shutdownNow();
+            exporter = null;
+        }
+    }
+
+    //makes the metrics visible over JMX as fleet:type=FleetManager,name=<name>
+    public synchronized void register(String name) throws JMException {
+        unregister();
+        this.name = name;
+        ObjectName on = new ObjectName("fleet:type=FleetManager,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, on);
+        objectName = on;
+    }
+
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package Management;
+
+import java.io.IOException;
+import java.util.Map;
+
+//What FleetMetrics shows over JMX (jconsole, VisualVM), the maps are keyed by operation or vehicle type
+public interface FleetMetricsMXBean {
+    int getFleetSize();
+    Map<String, Long> getVehiclesByType();
+    int getVehiclesNeedingMaintenance();
+    long getEstimatedHeapBytes();
+    long getMemoryBudgetBytes();
+    Map<String, Long> getOperationCalls();
+    Map<String, Long> getOperationErrors();
+    Map<String, Double> getOperationMeanMicros();
+    Map<String, Double> getOperationP99Micros();
+    String toPrometheusText();
+    void writePrometheusFile(String file) throws IOException;
+    void reset();
+}
@@ -0,0 +1,160 @@
+package Management;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//This is a small latency histogram in the style of HdrHistogram, for nanosecond values
+//Values below 128 get a bucket each, above that every power of two is split into 64 buckets, so any value is
+//reported within about 1.5% no matter if it is 50 ns or 5 s, and the whole range fits in a fixed array.
+//Recording is one atomic increment, so many threads can record into the same histogram at the same time
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF;
+
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.total = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    //records one value in nanoseconds, negative values count as 0
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        sum.add(value);
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+            //another thread raised the maximum at the same time, try again
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    //The usual numbers of a latency report, all in nanoseconds, read from one copy of the buckets
+    public static class Summary {
+        public final long count;
+        public final double mean;
+        public final long p50;
+        public final long p90;
+        public final long p99;
+        public final long p999;
+        public final long max;
+
+        Summary(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public String toJson() {
+            return String.format(Locale.ROOT, "{\"count\":%d,\"mean\":%.1f,\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}",
+                    count, mean, p50, p90, p99, p999, max);
+        }
+
+        //short text for labels and logs, in microseconds
+        @Override
+        public String toString() {
+            return String.format("p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us (%d samples)",
+                    p50 / 1e3, p99 / 1e3, p999 / 1e3, max / 1e3, count);
+        }
+    }
+
+    //the value that percentile percent of the recorded values are at or below (percentile from 0 to 100)
+    public long getValueAtPercentile(double percentile) {
+        long[] copy = copyCounts();
+        return valueAtPercentile(copy, total(copy), percentile);
+    }
+
+    public Summary summarize() {
+        long[] copy = copyCounts();
+        long n = total(copy);
+        return new Summary(n, getMean(), valueAtPercentile(copy, n, 50), valueAtPercentile(copy, n, 90),
+                valueAtPercentile(copy, n, 99), valueAtPercentile(copy, n, 99.9), n == 0 ? 0 : getMax());
+    }
+
+    private long[] copyCounts() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    private static long total(long[] copy) {
+        long n = 0;
+        for (long c : copy) {
+            n += c;
+        }
+        return n;
+    }
+
+    private long valueAtPercentile(long[] copy, long n, double percentile) {
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += copy[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private static int indexOf(long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value);
+        if (bits <= SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = bits - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF + (sub - HALF);
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long sub = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,400 @@
+package Management;
+
+import Vehicles.Vehicle;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//This is an ordered index of vehicles by their remaining range (fuel x efficiency)
+//It is a treap (a binary search tree balanced with random priorities) where every node also stores the
+//size of its subtree, so counting the vehicles above a range takes O(log n) instead of looking at every vehicle
+//Every vehicle keeps its node for as long as it is indexed. The vehicle does not know its index (a reference
+//in every vehicle would make 10M vehicles 40 MB bigger), the indices share one listener for all vehicles that
+//looks the vehicle up in the node map of every index that is still in use.
+//A fuel change does not touch the tree: the first change after a query marks the vehicle (see
+//Vehicle.notifyRangeChanged) and the listener pushes its node on a lock-free stack, the changes after it only read
+//the mark. A vehicle that is in no index is marked by its first change and never calls the listener again.
+//The next query takes the whole stack and moves those nodes to their new range, so moving and refuelling never take
+//a lock or allocate, and a vehicle that moved a thousand times between two queries is moved in the tree once.
+//Everything that reads or changes the tree is synchronized
+public class RangeIndex {
+
+    private static final class Node {
+        final Vehicle vehicle;
+        final int priority;
+        double range;
+        long order;
+        int size;
+        Node left;
+        Node right;
+        //the next node on the stack of changed vehicles
+        Node nextDirty;
+        //true while the node is on the stack, a vehicle that is in two indices can be marked again by the one that
+        //handled it first before the other took its stack
+        volatile boolean queued;
+
+        Node(Vehicle vehicle, int priority) {
+            this.vehicle = vehicle;
+            this.priority = priority;
+            this.size = 1;
+        }
+    }
+
+    //The node of every indexed vehicle by the vehicle's identity hash, with linear probing. It is changed under the
+    //monitor of the index and read without it by the listener, on the thread that changed the vehicle, so an entry
+    //never moves: a removed node leaves a tombstone, and a table that gets 2/3 full (tombstones included) is copied
+    //into a new one that is published when it is complete. A reader on the old table still finds what was in it.
+    //A ConcurrentHashMap would do the same with a 32 byte entry object per vehicle, this is 2 to 3 references
+    private static final class NodeTable {
+        private static final Node TOMBSTONE = new Node(null, 0);
+        private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Node[].class);
+
+        private volatile Node[] slots = new Node[16];
+        private int size;
+        private int used;
+
+        Node get(Vehicle v) {
+            Node[] t = slots;
+            int mask = t.length - 1;
+            for (int i = hash(v) & mask; ; i = (i + 1) & mask) {
+                Node n = (Node) SLOT.getVolatile(t, i);
+                if (n == null) {
+                    return null;
+                }
+                if (n.vehicle == v) {
+                    return n;
+                }
+            }
+        }
+
+        //the vehicle is not in the table yet
+        void put(Node node) {
+            if ((used + 1) * 3 > slots.length * 2) {
+                rebuild();
+            }
+            Node[] t = slots;
+            int mask = t.length - 1;
+            int i = hash(node.vehicle) & mask;
+            while (t[i] != null) {
+                i = (i + 1) & mask;
+            }
+            SLOT.setVolatile(t, i, node);
+            size++;
+            used++;
+        }
+
+        Node remove(Vehicle v) {
+            Node[] t = slots;
+            int mask = t.length - 1;
+            for (int i = hash(v) & mask; t[i] != null; i = (i + 1) & mask) {
+                Node n = t[i];
+                if (n.vehicle == v) {
+                    SLOT.setVolatile(t, i, TOMBSTONE);
+                    size--;
+                    return n;
+                }
+            }
+            return null;
+        }
+
+        void clear() {
+            slots = new Node[16];
+            size = 0;
+            used = 0;
+        }
+
+        //copies the nodes into a table where they take at most 1/3 of the slots, or the same length when the
+        //tombstones were what filled it
+        private void rebuild() {
+            int length = 16;
+            while (length < size * 3) {
+                length <<= 1;
+            }
+            Node[] t = new Node[length];
+            int mask = length - 1;
+            for (Node n : slots) {
+                if (n != null && n != TOMBSTONE) {
+                    int i = hash(n.vehicle) & mask;
+                    while (t[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    t[i] = n;
+                }
+            }
+            used = size;
+            slots = t;
+        }
+
+        //Vehicle does not override hashCode, and it could not be used here if it did (it would change with the fields)
+        private static int hash(Vehicle v) {
+            int h = System.identityHashCode(v);
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static final VarHandle DIRTY_HEAD;
+    private static final VarHandle QUEUED;
+
+    //the indices that were not collected yet, a dropped FleetManager takes its index and nodes with it
+    private static final List<WeakReference<RangeIndex>> INDICES = new CopyOnWriteArrayList<>();
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            DIRTY_HEAD = lookup.findVarHandle(RangeIndex.class, "dirtyHead", Node.class);
+            QUEUED = lookup.findVarHandle(Node.class, "queued", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        Vehicle.setStateListener(RangeIndex::rangeChanged);
+    }
+
+    private Node root;
+    //where each vehicle currently sits in the tree, so an update can find and remove the old entry
+    private final NodeTable nodes;
+    private final Random random;
+    //tie breaker so vehicles with the same range are still distinct keys
+    private long nextOrder;
+    //the nodes whose vehicle changed since the last query, linked through nextDirty
+    private volatile Node dirtyHead;
+
+    public RangeIndex() {
+        this.nodes = new NodeTable();
+        this.random = new Random();
+        this.nextOrder = 0;
+        INDICES.removeIf(ref -> ref.get() == null);
+        INDICES.add(new WeakReference<>(this));
+    }
+
+    //called by a vehicle after its fuel or efficiency changed, on whatever thread changed it
+    private static void rangeChanged(Vehicle v) {
+        for (WeakReference<RangeIndex> ref : INDICES) {
+            RangeIndex index = ref.get();
+            if (index != null) {
+                Node node = index.nodes.get(v);
+                if (node != null) {
+                    index.push(node);
+                }
+            }
+        }
+    }
+
+    //adds the vehicle or moves it to its new position right away if it is already indexed
+    //from now on the vehicle reports its fuel changes to this index
+    public synchronized void update(Vehicle v) {
+        Node node = nodes.get(v);
+        if (node != null) {
+            root = delete(root, node);
+        } else {
+            node = new Node(v, random.nextInt());
+            nodes.put(node);
+            //in the map first, a fuel change from another thread is then either read below or pushes the node
+            v.rangeChangeHandled();
+        }
+        place(node);
+    }
+
+    //gives the node the current range of its vehicle and puts it in the tree as a leaf
+    private void place(Node node) {
+        node.range = node.vehicle.getRemainingRange();
+        node.order = nextOrder++;
+        node.left = null;
+        node.right = null;
+        node.size = 1;
+        root = insert(root, node);
+    }
+
+    private void push(Node node) {
+        if (node.queued || !QUEUED.compareAndSet(node, false, true)) {
+            return;
+        }
+        Node head;
+        do {
+            head = dirtyHead;
+            node.nextDirty = head;
+        } while (!DIRTY_HEAD.compareAndSet(this, head, node));
+    }
+
+    //moves the node of every vehicle that changed to the current range of the vehicle, every query calls this first
+    //The marks of the node and the vehicle are cleared before the range is read, so a change that comes after the
+    //read pushes the node again. A node whose vehicle was removed in the meantime (the listener may have found it
+    //just before the removal) is not put back, and it leaves the mark of the vehicle alone
+    private void applyChanges() {
+        Node node = (Node) DIRTY_HEAD.getAndSet(this, null);
+        while (node != null) {
+            Node next = node.nextDirty;
+            node.nextDirty = null;
+            node.queued = false;
+            if (nodes.get(node.vehicle) == node) {
+                node.vehicle.rangeChangeHandled();
+                root = delete(root, node);
+                place(node);
+            }
+            node = next;
+        }
+    }
+
+    public synchronized void remove(Vehicle v) {
+        Node old = nodes.remove(v);
+        if (old != null) {
+            root = delete(root, old);
+        }
+    }
+
+    public synchronized void clear() {
+        root = null;
+        nodes.clear();
+        dirtyHead = null;
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    //number of vehicles that can cover the distance without refuelling
+    public synchronized int countAtLeast(double distance) {
+        applyChanges();
+        int count = 0;
+        Node n = root;
+        while (n != null) {
+            if (n.range >= distance) {
+                count += size(n.right) + 1;
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+        }
+        return count;
+    }
+
+    //vehicles whose range is between min and max (both included), from the longest range to the shortest
+    public synchronized List<Vehicle> between(double min, double max) {
+        applyChanges();
+        List<Vehicle> result = new ArrayList<>();
+        collectBetween(root, min, max, result);
+        return result;
+    }
+
+    //the k vehicles with the longest range, longest first
+    public synchronized List<Vehicle> top(int k) {
+        applyChanges();
+        List<Vehicle> result = new ArrayList<>(Math.max(0, Math.min(k, size(root))));
+        collectTop(root, k, result);
+        return result;
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static void resize(Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+    }
+
+    //orders the nodes by range and then by insertion order
+    private static int compare(Node a, Node b) {
+        int c = Double.compare(a.range, b.range);
+        return c != 0 ? c : Long.compare(a.order, b.order);
+    }
+
+    //puts the node in as a leaf and rotates it up while its priority is higher than its parent's
+    private static Node insert(Node t, Node node) {
+        if (t == null) {
+            return node;
+        }
+        if (compare(node, t) < 0) {
+            t.left = insert(t.left, node);
+            if (t.left.priority > t.priority) {
+                return rotateRight(t);
+            }
+        } else {
+            t.right = insert(t.right, node);
+            if (t.right.priority > t.priority) {
+                return rotateLeft(t);
+            }
+        }
+        resize(t);
+        return t;
+    }
+
+    //the left child becomes the root of this subtree
+    private static Node rotateRight(Node t) {
+        Node l = t.left;
+        t.left = l.right;
+        l.right = t;
+        resize(t);
+        resize(l);
+        return l;
+    }
+
+    //the right child becomes the root of this subtree
+    private static Node rotateLeft(Node t) {
+        Node r = t.right;
+        t.right = r.left;
+        r.left = t;
+        resize(t);
+        resize(r);
+        return r;
+    }
+
+    private static Node delete(Node t, Node node) {
+        if (t == null) {
+            return null;
+        }
+        if (t == node) {
+            return merge(t.left, t.right);
+        }
+        if (compare(node, t) < 0) {
+            t.left = delete(t.left, node);
+        } else {
+            t.right = delete(t.right, node);
+        }
+        resize(t);
+        return t;
+    }
+
+    //joins two trees where every node of a comes before every node of b
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            resize(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        resize(b);
+        return b;
+    }
+
+    private static void collectBetween(Node n, double min, double max, List<Vehicle> out) {
+        if (n == null) {
+            return;
+        }
+        if (n.range <= max) {
+            collectBetween(n.right, min, max, out);
+        }
+        if (n.range >= min && n.range <= max) {
+            out.add(n.vehicle);
+        }
+        if (n.range >= min) {
+            collectBetween(n.left, min, max, out);
+        }
+    }
+
+    private static void collectTop(Node n, int k, List<Vehicle> out) {
+        if (n == null || out.size() >= k) {
+            return;
+        }
+        collectTop(n.right, k, out);
+        if (out.size() < k) {
+            out.add(n.vehicle);
+        }
+        collectTop(n.left, k, out);
+    }
+}
@@ -8,30 +8,41 @@ import Interfaces.FuelConsumable;
 import Interfaces.Maintainable;
 import Interfaces.PassengerCarrier;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class Airplane extends AirVehicle implements FuelConsumable, PassengerCarrier, CargoCarrier, Maintainable {
 
-    private double fuelLevel;
-    private final int passengerCapacity;
-    private int currentPassengers;
-    private final double cargoCapacity;
-    private double currentCargo;
+    //shared properties of every Airplane
+    private static final VehicleSpec SPEC = VehicleSpec.AIRPLANE;
+
+    //handles used to update the shared state with compare-and-set instead of locking the vehicle
+    private static final VarHandle FUEL_LEVEL = fieldHandle(MethodHandles.lookup(), "fuelLevel", double.class);
+    private static final VarHandle CURRENT_CARGO = fieldHandle(MethodHandles.lookup(), "currentCargo", double.class);
+    private static final VarHandle CURRENT_PASSENGERS = fieldHandle(MethodHandles.lookup(), "currentPassengers", int.class);
+
+    private volatile double fuelLevel;
+    private volatile int currentPassengers;
+    private volatile double currentCargo;
     private boolean maintenanceNeeded;
-    private double mileageAtLastService;
     private double lastFueledAt;
 
     //Constructor
     public Airplane(String id, String model, double maxSpeed, double maxAltitude) {
         super(id, model, maxSpeed, maxAltitude);
         this.fuelLevel = 0.0;
-        this.passengerCapacity = 200;
         this.currentPassengers = 0;
-        this.cargoCapacity = 10000;
         this.currentCargo = 0.0;
         this.maintenanceNeeded = false;
-        this.mileageAtLastService=0.0;
         this.lastFueledAt = 0.0;
     }
 
+    //returns the shared properties of this vehicle type
+    @Override
+    public VehicleSpec getSpec() {
+        return SPEC;
+    }
+
     //getter function for lastFueledAt
     @Override
     public double getLastFueledAt() {
@@ -44,20 +55,10 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
         this.lastFueledAt = mileage;
     }
 
-    //getter function for mileage at last service
-    public double getMileageAtLastService() {
-        return this.mileageAtLastService;
-    }
-
-    //sets mileage at last service
-    public void setMileageAtLastService(double mileage) {
-        this.mileageAtLastService = mileage;
-    }
-
     //Fuel efficiency set to 5 (given)
     @Override
     public double calculateFuelEfficiency() {
-        return 5.0;
+        return SPEC.getBaseEfficiency();
     }
 
     //starts flying and throws error if fuel not enough
@@ -68,11 +69,14 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
         }
         double fuelNeeded = distance / calculateFuelEfficiency();
         if (fuelNeeded > this.fuelLevel) {
+            recordInsufficientFuel(distance, fuelNeeded, this.fuelLevel);
             throw new InsufficientFuelException("Fuel is not enough");
         }
         consumeFuel(distance);
-        this.currentMileage += distance;
-        System.out.println("Airplane: Flying at - " + this.maxAltitude + " ft, For Distance - " + distance + " km.");
+        addMileage(distance);
+        if (isMoveLogging()) {
+            System.out.println("Airplane: Flying at - " + this.maxAltitude + " ft, For Distance - " + distance + " km.");
+        }
     }
 
     //this will refuel the airplane and will throw an error if amount will be invalid
@@ -81,8 +85,10 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
         if (amount <= 0) {
             throw new InvalidOperationException("Fuel amount must be positive.");
         }
-        this.fuelLevel += amount;
+        double fuelLevel = addAtomically(FUEL_LEVEL, amount);
         this.setLastFueledAt(this.currentMileage);
+        notifyRangeChanged();
+        recordRefuel(amount, fuelLevel);
     }
 
     //getter function for fuelLevel
@@ -95,40 +101,39 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
     @Override
     public double consumeFuel(double distance) throws InsufficientFuelException {
         double fuelConsumed = distance / calculateFuelEfficiency();
-        if (fuelConsumed > this.fuelLevel) {
+        if (!addWithin(FUEL_LEVEL, -fuelConsumed, 0, Double.POSITIVE_INFINITY)) {
             throw new InsufficientFuelException("Fuel cant be consumed more than available.");
         }
-        this.fuelLevel -= fuelConsumed;
+        notifyRangeChanged();
         return fuelConsumed;
     }
 
     //setter function for current fuel level
     public void setFuelLevel(double fuelLevel) {
         this.fuelLevel = fuelLevel;
+        notifyRangeChanged();
     }
 
     //board the passengers into the plane and will throw error if greater than the capacity
     @Override
     public void boardPassengers(int count) throws OverloadException {
-        if (this.currentPassengers + count > this.passengerCapacity) {
-            throw new OverloadException("Passenger capacity of " + this.passengerCapacity + " exceeded.");
+        if (!addWithin(CURRENT_PASSENGERS, count, Integer.MIN_VALUE, SPEC.getPassengerCapacity())) {
+            throw new OverloadException("Passenger capacity of " + SPEC.getPassengerCapacity() + " exceeded.");
         }
-        this.currentPassengers += count;
     }
 
     //disembark passengers from the plane and will throw the error if disembarked greater than the passengers
     @Override
     public void disembarkPassengers(int count) throws InvalidOperationException {
-        if (count > this.currentPassengers) {
+        if (!addWithin(CURRENT_PASSENGERS, -count, 0, Integer.MAX_VALUE)) {
             throw new InvalidOperationException("More passengers cant be disembark than are on board.");
         }
-        this.currentPassengers -= count;
     }
 
     //getter function for the upper limit of passengers
     @Override
     public int getPassengerCapacity() {
-        return this.passengerCapacity;
+        return SPEC.getPassengerCapacity();
     }
 
     //getter function for the current passengers
@@ -145,25 +150,23 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
     //loads the cargo into the plane and will throw the error if greater than the capacity
     @Override
     public void loadCargo(double weight) throws OverloadException {
-        if (this.currentCargo + weight > this.cargoCapacity) {
-            throw new OverloadException("Cargo capacity of " + this.cargoCapacity + " kg exceeded.");
+        if (!addWithin(CURRENT_CARGO, weight, Double.NEGATIVE_INFINITY, SPEC.getCargoCapacity())) {
+            throw new OverloadException("Cargo capacity of " + SPEC.getCargoCapacity() + " kg exceeded.");
         }
-        this.currentCargo += weight;
     }
 
     //unloads the cargo from the plane and will throw the error if unloaded greater than the cargo present in the plane
     @Override
     public void unloadCargo(double weight) throws InvalidOperationException {
-        if (weight > this.currentCargo) {
+        if (!addWithin(CURRENT_CARGO, -weight, 0, Double.POSITIVE_INFINITY)) {
             throw new InvalidOperationException("Cargo cant be unloaded than the currently loaded.");
         }
-        this.currentCargo -= weight;
     }
 
     //getter function for the upper limit of cargo capacity
     @Override
     public double getCargoCapacity() {
-        return this.cargoCapacity;
+        return SPEC.getCargoCapacity();
     }
 
     //getter function for the current cargo
@@ -186,7 +189,7 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
     //checks the vehicle whether the maintenance is needed
     @Override
     public boolean needsMaintenance() {
-        return (this.currentMileage - this.mileageAtLastService) > 10000 || this.maintenanceNeeded;
+        return (this.currentMileage - this.mileageAtLastService) > SPEC.getServiceInterval() || this.maintenanceNeeded;
     }
 
     //this will perform the maintenance on vehicles
@@ -194,6 +197,7 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
     public void performMaintenance() {
         this.maintenanceNeeded = false;
         this.mileageAtLastService = this.currentMileage;
+        recordMaintenance();
         System.out.println("Maintenance performed on " + this.getId() + " at " + this.currentMileage + " km.");
     }
 
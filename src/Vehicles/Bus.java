@@ -8,29 +8,40 @@ import Interfaces.FuelConsumable;
 import Interfaces.Maintainable;
 import Interfaces.PassengerCarrier;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier, CargoCarrier, Maintainable {
 
-    private double fuelLevel;
-    private final int passengerCapacity;
-    private int currentPassengers;
-    private final double cargoCapacity;
-    private double currentCargo;
+    //shared properties of every Bus
+    private static final VehicleSpec SPEC = VehicleSpec.BUS;
+
+    //handles used to update the shared state with compare-and-set instead of locking the vehicle
+    private static final VarHandle FUEL_LEVEL = fieldHandle(MethodHandles.lookup(), "fuelLevel", double.class);
+    private static final VarHandle CURRENT_CARGO = fieldHandle(MethodHandles.lookup(), "currentCargo", double.class);
+    private static final VarHandle CURRENT_PASSENGERS = fieldHandle(MethodHandles.lookup(), "currentPassengers", int.class);
+
+    private volatile double fuelLevel;
+    private volatile int currentPassengers;
+    private volatile double currentCargo;
     private boolean maintenanceNeeded;
-    private double mileageAtLastService;
     private double lastFueledAt;
 
     public Bus(String id, String model, double maxSpeed, int numWheels) {
         super(id, model, maxSpeed, numWheels);
         this.fuelLevel = 0.0;
-        this.passengerCapacity = 50;
         this.currentPassengers = 0;
-        this.cargoCapacity = 500;
         this.currentCargo = 0.0;
         this.maintenanceNeeded = false;
-        this.mileageAtLastService = 0.0;
         this.lastFueledAt = 0.0;
     }
 
+    //returns the shared properties of this vehicle type
+    @Override
+    public VehicleSpec getSpec() {
+        return SPEC;
+    }
+
     //getter function for lastFueledAt
     @Override
     public double getLastFueledAt() {
@@ -43,20 +54,10 @@ public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier
         this.lastFueledAt = mileage;
     }
 
-    //getter function for mileage at last service
-    public double getMileageAtLastService() {
-        return this.mileageAtLastService;
-    }
-
-    //setter function for mileage at last service
-    public void setMileageAtLastService(double mileage) {
-        this.mileageAtLastService = mileage;
-    }
-
     //sets the fuel efficiency to 10 (given)
     @Override
     public double calculateFuelEfficiency() {
-        return 10.0;
+        return SPEC.getBaseEfficiency();
     }
 
     //starts the journey and will throw the error if fuel is not enough
@@ -67,11 +68,14 @@ public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier
         }
         double fuelNeeded = distance / calculateFuelEfficiency();
         if (fuelNeeded > this.fuelLevel) {
+            recordInsufficientFuel(distance, fuelNeeded, this.fuelLevel);
             throw new InsufficientFuelException("Fuel is not enough");
         }
         consumeFuel(distance);
-        this.currentMileage += distance;
-        System.out.println("Bus is transporting passengers and cargo for " + distance + " km...");
+        addMileage(distance);
+        if (isMoveLogging()) {
+            System.out.println("Bus is transporting passengers and cargo for " + distance + " km...");
+        }
     }
 
     //this will refuel the vehicle and will throw the exception if fuel is negative
@@ -80,8 +84,10 @@ public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier
         if (amount <= 0) {
             throw new InvalidOperationException("Fuel amount must be positive.");
         }
-        this.fuelLevel += amount;
+        double fuelLevel = addAtomically(FUEL_LEVEL, amount);
         this.setLastFueledAt(this.currentMileage);
+        notifyRangeChanged();
+        recordRefuel(amount, fuelLevel);
     }
 
     //getter function for fuel level
@@ -94,41 +100,40 @@ public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier
     @Override
     public double consumeFuel(double distance) throws InsufficientFuelException {
         double fuelConsumed = distance / calculateFuelEfficiency();
-        if (fuelConsumed > this.fuelLevel) {
+        if (!addWithin(FUEL_LEVEL, -fuelConsumed, 0, Double.POSITIVE_INFINITY)) {
             throw new InsufficientFuelException("Fuel cant be consumed more than available.");
         }
-        this.fuelLevel -= fuelConsumed;
+        notifyRangeChanged();
         return fuelConsumed;
     }
 
     //setter function for fuel level
     public void setFuelLevel(double fuelLevel) {
         this.fuelLevel = fuelLevel;
+        notifyRangeChanged();
     }
 
     //board the passengers into the bus and will throw the error if passengers are greater than the capacity
     @Override
     public void boardPassengers(int count) throws OverloadException {
-        if (this.currentPassengers + count > this.passengerCapacity) {
-            throw new OverloadException("Passenger capacity of " + this.passengerCapacity + " exceeded.");
+        if (!addWithin(CURRENT_PASSENGERS, count, Integer.MIN_VALUE, SPEC.getPassengerCapacity())) {
+            throw new OverloadException("Passenger capacity of " + SPEC.getPassengerCapacity() + " exceeded.");
         }
-        this.currentPassengers += count;
     }
 
     //disembark the passengers from the bus and will throw the error if passengers are removed greater than the already
     //present
     @Override
     public void disembarkPassengers(int count) throws InvalidOperationException {
-        if (count > this.currentPassengers) {
+        if (!addWithin(CURRENT_PASSENGERS, -count, 0, Integer.MAX_VALUE)) {
             throw new InvalidOperationException("Cannot disembark more passengers than are on board.");
         }
-        this.currentPassengers -= count;
     }
 
     //getter function for the upper limit of passenger capacity
     @Override
     public int getPassengerCapacity() {
-        return this.passengerCapacity;
+        return SPEC.getPassengerCapacity();
     }
 
 
@@ -146,25 +151,23 @@ public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier
     //loads the cargo into the bus and will throw the error if cargo is greater than the capacity
     @Override
     public void loadCargo(double weight) throws OverloadException {
-        if (this.currentCargo + weight > this.cargoCapacity) {
-            throw new OverloadException("Cargo capacity of " + this.cargoCapacity + " kg exceeded.");
+        if (!addWithin(CURRENT_CARGO, weight, Double.NEGATIVE_INFINITY, SPEC.getCargoCapacity())) {
+            throw new OverloadException("Cargo capacity of " + SPEC.getCargoCapacity() + " kg exceeded.");
         }
-        this.currentCargo += weight;
     }
 
     //unloads the cargo from the bus and will throw the error if cargo is unloaded more than the currently present
     @Override
     public void unloadCargo(double weight) throws InvalidOperationException {
-        if (weight > this.currentCargo) {
+        if (!addWithin(CURRENT_CARGO, -weight, 0, Double.POSITIVE_INFINITY)) {
             throw new InvalidOperationException("Cargo cant be unloaded than the currently loaded.");
         }
-        this.currentCargo -= weight;
     }
 
     //getter function for the upper limit of cargo capacity
     @Override
     public double getCargoCapacity() {
-        return this.cargoCapacity;
+        return SPEC.getCargoCapacity();
     }
 
     //getter function for current cargo
@@ -187,7 +190,7 @@ public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier
     //returns true if the maintenance needed and false if not
     @Override
     public boolean needsMaintenance() {
-        return (this.currentMileage - this.mileageAtLastService) > 10000 || this.maintenanceNeeded;
+        return (this.currentMileage - this.mileageAtLastService) > SPEC.getServiceInterval() || this.maintenanceNeeded;
     }
 
     //performs the maintenance for the vehicle
@@ -195,6 +198,7 @@ public class Bus extends LandVehicle implements FuelConsumable, PassengerCarrier
     public void performMaintenance() {
         this.maintenanceNeeded = false;
         this.mileageAtLastService = this.currentMileage;
+        recordMaintenance();
         System.out.println("Maintenance performed on " + this.getId() + " at " + this.currentMileage + " km.");
     }
 
@@ -7,25 +7,37 @@ import Interfaces.FuelConsumable;
 import Interfaces.Maintainable;
 import Interfaces.PassengerCarrier;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier, Maintainable {
 
-    private double fuelLevel;
-    private final int passengerCapacity;
-    private int currentPassengers;
+    //shared properties of every Car
+    private static final VehicleSpec SPEC = VehicleSpec.CAR;
+
+    //handles used to update the shared state with compare-and-set instead of locking the vehicle
+    private static final VarHandle FUEL_LEVEL = fieldHandle(MethodHandles.lookup(), "fuelLevel", double.class);
+    private static final VarHandle CURRENT_PASSENGERS = fieldHandle(MethodHandles.lookup(), "currentPassengers", int.class);
+
+    private volatile double fuelLevel;
+    private volatile int currentPassengers;
     private boolean maintenanceNeeded;
-    private double mileageAtLastService;
     private double lastFueledAt;
 
     public Car(String id, String model, double maxSpeed) {
         super(id, model, maxSpeed, 4);
         this.fuelLevel = 0.0;
-        this.passengerCapacity = 5; // As per PDF
         this.currentPassengers = 0;
         this.maintenanceNeeded = false;
-        this.mileageAtLastService = 0.0;
         this.lastFueledAt = 0.0;
     }
 
+    //returns the shared properties of this vehicle type
+    @Override
+    public VehicleSpec getSpec() {
+        return SPEC;
+    }
+
     //getter function for lastFueledAt
     @Override
     public double getLastFueledAt() {
@@ -38,16 +50,6 @@ public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier
         this.lastFueledAt = mileage;
     }
 
-    //getter function for mileage at last service
-    public double getMileageAtLastService() {
-        return this.mileageAtLastService;
-    }
-
-    //setter function for mileage at last service
-    public void setMileageAtLastService(double mileage) {
-        this.mileageAtLastService = mileage;
-    }
-
     //starts the journey and will throw the error if fuel is not enough
     @Override
     public void move(double distance) throws InvalidOperationException, InsufficientFuelException {
@@ -56,11 +58,14 @@ public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier
         }
         double fuelNeeded = distance / calculateFuelEfficiency();
         if (fuelNeeded > this.fuelLevel) {
+            recordInsufficientFuel(distance, fuelNeeded, this.fuelLevel);
             throw new InsufficientFuelException("Fuel is not enough");
         }
         consumeFuel(distance);
-        this.currentMileage += distance;
-        System.out.println("Car is driving on the road for " + distance + " km...");
+        addMileage(distance);
+        if (isMoveLogging()) {
+            System.out.println("Car is driving on the road for " + distance + " km...");
+        }
     }
 
     public void setCurrentMileage(double mileage) {
@@ -70,7 +75,7 @@ public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier
     //sets the fuel efficiency
     @Override
     public double calculateFuelEfficiency() {
-        return 15.0;
+        return SPEC.getBaseEfficiency();
     }
 
     //this will refuel the vehicle and will throw the exception if fuel is negative
@@ -79,8 +84,10 @@ public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier
         if (amount <= 0) {
             throw new InvalidOperationException("Fuel amount must be positive.");
         }
-        this.fuelLevel += amount;
+        double fuelLevel = addAtomically(FUEL_LEVEL, amount);
         this.setLastFueledAt(this.currentMileage);
+        notifyRangeChanged();
+        recordRefuel(amount, fuelLevel);
     }
 
     //getter function for fuel level
@@ -92,42 +99,41 @@ public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier
     //setter function for fuel level
     public void setFuelLevel(double fuelLevel){
         this.fuelLevel = fuelLevel;
+        notifyRangeChanged();
     }
 
     //returns the fuel that is consumed
     @Override
     public double consumeFuel(double distance) throws InsufficientFuelException {
         double fuelConsumed = distance / calculateFuelEfficiency();
-        if (fuelConsumed > this.fuelLevel) {
+        if (!addWithin(FUEL_LEVEL, -fuelConsumed, 0, Double.POSITIVE_INFINITY)) {
             throw new InsufficientFuelException("Fuel cant be consumed more than available.");
         }
-        this.fuelLevel -= fuelConsumed;
+        notifyRangeChanged();
         return fuelConsumed;
     }
 
     //board the passengers into the bus and will throw the error if passengers are greater than the capacity
     @Override
     public void boardPassengers(int count) throws OverloadException {
-        if (this.currentPassengers + count > this.passengerCapacity) {
+        if (!addWithin(CURRENT_PASSENGERS, count, Integer.MIN_VALUE, SPEC.getPassengerCapacity())) {
             throw new OverloadException("Passenger capacity exceeded.");
         }
-        this.currentPassengers += count;
     }
 
     //disembark the passengers from the bus and will throw the error if passengers are removed greater than the already
     //present
     @Override
     public void disembarkPassengers(int count) throws InvalidOperationException {
-        if (count > this.currentPassengers) {
+        if (!addWithin(CURRENT_PASSENGERS, -count, 0, Integer.MAX_VALUE)) {
             throw new InvalidOperationException("Cannot disembark more passengers than are on board.");
         }
-        this.currentPassengers -= count;
     }
 
     //getter function for the upper limit of passenger capacity
     @Override
     public int getPassengerCapacity() {
-        return this.passengerCapacity;
+        return SPEC.getPassengerCapacity();
     }
 
     //getter function for current passengers
@@ -150,7 +156,7 @@ public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier
     //returns true if the maintenance needed and false if not
     @Override
     public boolean needsMaintenance() {
-        return (this.currentMileage - this.mileageAtLastService) > 10000 || this.maintenanceNeeded;
+        return (this.currentMileage - this.mileageAtLastService) > SPEC.getServiceInterval() || this.maintenanceNeeded;
     }
 
     //performs the maintenance for the vehicle
@@ -158,6 +164,7 @@ public class Car extends LandVehicle implements FuelConsumable, PassengerCarrier
     public void performMaintenance() {
         this.maintenanceNeeded = false;
         this.mileageAtLastService = this.currentMileage;
+        recordMaintenance();
         System.out.println("Maintenance performed on " + this.getId() + " at " + this.currentMileage + " km.");
     }
 
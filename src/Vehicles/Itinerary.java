@@ -0,0 +1,73 @@
+package Vehicles;
+
+import java.util.Arrays;
+
+//this is a multi-leg trip that can be scored against any vehicle with Vehicle.estimateItinerary()
+//every leg has a distance and the cargo/passengers that are loaded (positive) or unloaded (negative)
+//before the leg starts. The legs are kept in plain arrays so scoring a trip does not create objects per leg
+public class Itinerary {
+
+    private String name;
+    private double[] distances;
+    private double[] cargoChanges;
+    private int[] passengerChanges;
+    private int legCount;
+    private double totalDistance;
+
+    public Itinerary(String name) {
+        this.name = name;
+        this.distances = new double[4];
+        this.cargoChanges = new double[4];
+        this.passengerChanges = new int[4];
+        this.legCount = 0;
+        this.totalDistance = 0.0;
+    }
+
+    //adds a leg without any cargo or passenger change
+    public Itinerary addLeg(double distance) {
+        return addLeg(distance, 0.0, 0);
+    }
+
+    //adds a leg and will throw the error if the distance is negative
+    public Itinerary addLeg(double distance, double cargoChange, int passengerChange) {
+        if (distance < 0) {
+            throw new IllegalArgumentException("Leg distance cannot be negative.");
+        }
+        if (legCount == distances.length) {
+            int newSize = legCount * 2;
+            distances = Arrays.copyOf(distances, newSize);
+            cargoChanges = Arrays.copyOf(cargoChanges, newSize);
+            passengerChanges = Arrays.copyOf(passengerChanges, newSize);
+        }
+        distances[legCount] = distance;
+        cargoChanges[legCount] = cargoChange;
+        passengerChanges[legCount] = passengerChange;
+        legCount++;
+        totalDistance += distance;
+        return this;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getLegCount() {
+        return this.legCount;
+    }
+
+    public double getDistance(int leg) {
+        return this.distances[leg];
+    }
+
+    public double getCargoChange(int leg) {
+        return this.cargoChanges[leg];
+    }
+
+    public int getPassengerChange(int leg) {
+        return this.passengerChanges[leg];
+    }
+
+    public double getTotalDistance() {
+        return this.totalDistance;
+    }
+}
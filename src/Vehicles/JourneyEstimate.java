@@ -0,0 +1,71 @@
+package Vehicles;
+
+//this is the result of scoring an itinerary against one vehicle
+//if the trip is not feasible, failedLeg is the leg where it breaks (starting from 0) and reason says why
+public class JourneyEstimate {
+
+    private final Vehicle vehicle;
+    private final Itinerary itinerary;
+    private final double totalTime;
+    private final double totalFuel;
+    private final int refuelStops;
+    private final boolean feasible;
+    private final int failedLeg;
+    private final String reason;
+
+    public JourneyEstimate(Vehicle vehicle, Itinerary itinerary, double totalTime, double totalFuel,
+                           int refuelStops, boolean feasible, int failedLeg, String reason) {
+        this.vehicle = vehicle;
+        this.itinerary = itinerary;
+        this.totalTime = totalTime;
+        this.totalFuel = totalFuel;
+        this.refuelStops = refuelStops;
+        this.feasible = feasible;
+        this.failedLeg = failedLeg;
+        this.reason = reason;
+    }
+
+    public Vehicle getVehicle() {
+        return this.vehicle;
+    }
+
+    public Itinerary getItinerary() {
+        return this.itinerary;
+    }
+
+    //total travel time in hours
+    public double getTotalTime() {
+        return this.totalTime;
+    }
+
+    //total fuel in litres
+    public double getTotalFuel() {
+        return this.totalFuel;
+    }
+
+    public int getRefuelStops() {
+        return this.refuelStops;
+    }
+
+    public boolean isFeasible() {
+        return this.feasible;
+    }
+
+    public int getFailedLeg() {
+        return this.failedLeg;
+    }
+
+    public String getReason() {
+        return this.reason;
+    }
+
+    @Override
+    public String toString() {
+        if (!feasible) {
+            return String.format("%s on %s: not feasible at leg %d (%s)",
+                    vehicle.getId(), itinerary.getName(), failedLeg + 1, reason);
+        }
+        return String.format("%s on %s: %.2f h, %.2f L, %d refuel stop(s)",
+                vehicle.getId(), itinerary.getName(), totalTime, totalFuel, refuelStops);
+    }
+}
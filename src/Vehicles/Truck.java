@@ -7,24 +7,37 @@ import Interfaces.CargoCarrier;
 import Interfaces.FuelConsumable;
 import Interfaces.Maintainable;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier, Maintainable {
-    private double fuelLevel;
-    private final double cargoCapacity;
-    private double currentCargo;
+
+    //shared properties of every Truck
+    private static final VehicleSpec SPEC = VehicleSpec.TRUCK;
+
+    //handles used to update the shared state with compare-and-set instead of locking the vehicle
+    private static final VarHandle FUEL_LEVEL = fieldHandle(MethodHandles.lookup(), "fuelLevel", double.class);
+    private static final VarHandle CURRENT_CARGO = fieldHandle(MethodHandles.lookup(), "currentCargo", double.class);
+
+    private volatile double fuelLevel;
+    private volatile double currentCargo;
     private boolean maintenanceNeeded;
-    private double mileageAtLastService;
     private double lastFueledAt;
 
     public Truck(String id, String model, double maxSpeed, int numWheels) {
         super(id, model, maxSpeed, numWheels);
         this.fuelLevel = 0.0;
-        this.cargoCapacity = 5000;
         this.currentCargo = 0.0;
         this.maintenanceNeeded = false;
-        this.mileageAtLastService = 0.0;
         this.lastFueledAt = 0.0;
     }
 
+    //returns the shared properties of this vehicle type
+    @Override
+    public VehicleSpec getSpec() {
+        return SPEC;
+    }
+
     //getter function for lastFueledAt
     @Override
     public double getLastFueledAt() {
@@ -37,23 +50,19 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
         this.lastFueledAt = mileage;
     }
 
-    //getter function for mileage at last service
-    public double getMileageAtLastService() {
-        return this.mileageAtLastService;
-    }
-
-    //setter function for mileage at last service
-    public void setMileageAtLastService(double mileage) {
-        this.mileageAtLastService = mileage;
+    //sets the fuel efficiency, it depends on the cargo so the cargo methods tell the range index about the change
+    @Override
+    public double calculateFuelEfficiency() {
+        return calculateFuelEfficiency(this.currentCargo);
     }
 
-    //sets the fuel efficiency
+    //a truck loses 10% efficiency when it is more than half full
     @Override
-    public double calculateFuelEfficiency() {
-        if (this.currentCargo > (this.cargoCapacity * 0.5)) {
-            return 8.0 * 0.9;
+    public double calculateFuelEfficiency(double cargoLoad) {
+        if (cargoLoad > (SPEC.getCargoCapacity() * 0.5)) {
+            return SPEC.getBaseEfficiency() * 0.9;
         }
-        return 8.0;
+        return SPEC.getBaseEfficiency();
     }
 
     //starts the journey and will throw the error if fuel is not enough
@@ -64,11 +73,14 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
         }
         double fuelNeeded = distance / calculateFuelEfficiency();
         if (fuelNeeded > this.fuelLevel) {
+            recordInsufficientFuel(distance, fuelNeeded, this.fuelLevel);
             throw new InsufficientFuelException("Fuel is not enough");
         }
         consumeFuel(distance);
-        this.currentMileage += distance;
-        System.out.println("Truck is hauling cargo for " + distance + " km...");
+        addMileage(distance);
+        if (isMoveLogging()) {
+            System.out.println("Truck is hauling cargo for " + distance + " km...");
+        }
     }
 
     //this will refuel the vehicle and will throw the exception if fuel is negative
@@ -77,8 +89,10 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
         if (amount <= 0) {
             throw new InvalidOperationException("Fuel amount must be positive.");
         }
-        this.fuelLevel += amount;
+        double fuelLevel = addAtomically(FUEL_LEVEL, amount);
         this.setLastFueledAt(this.currentMileage);
+        notifyRangeChanged();
+        recordRefuel(amount, fuelLevel);
     }
 
     //getter function for fuel level
@@ -91,40 +105,41 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
     @Override
     public double consumeFuel(double distance) throws InsufficientFuelException {
         double fuelConsumed = distance / calculateFuelEfficiency();
-        if (fuelConsumed > this.fuelLevel) {
+        if (!addWithin(FUEL_LEVEL, -fuelConsumed, 0, Double.POSITIVE_INFINITY)) {
             throw new InsufficientFuelException("Fuel cant be consumed more than available.");
         }
-        this.fuelLevel -= fuelConsumed;
+        notifyRangeChanged();
         return fuelConsumed;
     }
 
     //setter function for fuel level
     public void setFuelLevel(double fuelLevel) {
         this.fuelLevel = fuelLevel;
+        notifyRangeChanged();
     }
 
     //loads the cargo into the bus and will throw the error if cargo is greater than the capacity
     @Override
     public void loadCargo(double weight) throws OverloadException {
-        if (this.currentCargo + weight > this.cargoCapacity) {
-            throw new OverloadException("Cargo capacity of " + this.cargoCapacity + " kg exceeded.");
+        if (!addWithin(CURRENT_CARGO, weight, Double.NEGATIVE_INFINITY, SPEC.getCargoCapacity())) {
+            throw new OverloadException("Cargo capacity of " + SPEC.getCargoCapacity() + " kg exceeded.");
         }
-        this.currentCargo += weight;
+        notifyRangeChanged();
     }
 
     //unloads the cargo from the bus and will throw the error if cargo is unloaded more than the currently present
     @Override
     public void unloadCargo(double weight) throws InvalidOperationException {
-        if (weight > this.currentCargo) {
+        if (!addWithin(CURRENT_CARGO, -weight, 0, Double.POSITIVE_INFINITY)) {
             throw new InvalidOperationException("Cargo cant be unloaded than the currently loaded.");
         }
-        this.currentCargo -= weight;
+        notifyRangeChanged();
     }
 
     //getter function for the upper limit of cargo capacity
     @Override
     public double getCargoCapacity() {
-        return this.cargoCapacity;
+        return SPEC.getCargoCapacity();
     }
 
     //getter function for current cargo
@@ -136,6 +151,7 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
     //setter function for current cargo
     public void setCurrentCargo(double currentCargo) {
         this.currentCargo = currentCargo;
+        notifyRangeChanged();
     }
 
     //marks the vehicle for maintenance
@@ -147,7 +163,7 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
     //returns true if the maintenance needed and false if not
     @Override
     public boolean needsMaintenance() {
-        return (this.currentMileage - this.mileageAtLastService) > 10000 || this.maintenanceNeeded;
+        return (this.currentMileage - this.mileageAtLastService) > SPEC.getServiceInterval() || this.maintenanceNeeded;
     }
 
     //performs the maintenance for the vehicle
@@ -155,6 +171,7 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
     public void performMaintenance() {
         this.maintenanceNeeded = false;
         this.mileageAtLastService = this.currentMileage;
+        recordMaintenance();
         System.out.println("Maintenance performed on " + this.getId() + " at " + this.currentMileage + " km.");
     }
 
@@ -2,15 +2,42 @@ package Vehicles;
 
 import Exceptions.InvalidOperationException;
 import Exceptions.InsufficientFuelException;
+import Events.InsufficientFuelEvent;
+import Events.MaintenanceEvent;
+import Events.RefuelEvent;
+import Events.VehicleMoveEvent;
+import Interfaces.CargoCarrier;
+import Interfaces.FuelConsumable;
+import Interfaces.PassengerCarrier;
+import Interfaces.VehicleStateListener;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 //this is the abstract class and this is the template for all the vehicles
 public abstract class Vehicle implements Comparable<Vehicle> {
+
+    //handle used to add mileage with compare-and-set so concurrent moves are never lost
+    private static final VarHandle CURRENT_MILEAGE = fieldHandle(MethodHandles.lookup(), "currentMileage", double.class);
+    private static final VarHandle RANGE_CHANGED = fieldHandle(MethodHandles.lookup(), "rangeChanged", boolean.class);
+
     private String id;
     private String model;
     protected double maxSpeed;
-    protected double currentMileage;
+    protected volatile double currentMileage;
     protected double mileageAtLastService;
 
+    //when this is false move() doesnt print anything, large simulations turn it off
+    private static volatile boolean moveLogging = true;
+
+    //whoever has to know when the range of a vehicle changes (the range index), one for all vehicles so it
+    //costs no field in every vehicle, can be null
+    private static volatile VehicleStateListener stateListener;
+    //true from the call to the listener until the listener calls rangeChangeHandled(), the changes in between
+    //dont call it again, so a vehicle that moves on every tick costs its listener one call and not one per move
+    //(it takes bytes that were padding, a vehicle is not bigger for it, see VehicleFootprintCheck)
+    private volatile boolean rangeChanged;
+
     //constructor
     public Vehicle(String id, String model, double maxSpeed) {
         if (id == null || id.trim().isEmpty()) {
@@ -27,6 +54,124 @@ public abstract class Vehicle implements Comparable<Vehicle> {
     public abstract void move(double distance) throws InvalidOperationException, InsufficientFuelException;
     public abstract double calculateFuelEfficiency();
     public abstract double estimateJourneyTime(double distance);
+    public abstract VehicleSpec getSpec();
+
+    //returns the fuel efficiency for the current load, it is not kept in the vehicle (that would be 8 more bytes
+    //in every vehicle), the sorts compute it once per vehicle into an array of keys instead of on every comparison
+    public double getFuelEfficiency() {
+        return calculateFuelEfficiency();
+    }
+
+    //returns how far the vehicle can go on the fuel it has now
+    //vehicles that dont burn fuel (like a sail ship) have an unlimited range
+    public double getRemainingRange() {
+        if (!(this instanceof FuelConsumable fc)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double efficiency = getFuelEfficiency();
+        if (efficiency <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return fc.getFuelLevel() * efficiency;
+    }
+
+    //the listener of every vehicle, a vehicle that changed before it was set tells it after its next
+    //rangeChangeHandled()
+    public static void setStateListener(VehicleStateListener listener) {
+        stateListener = listener;
+    }
+
+    //subclasses call this after the fuel level or something the efficiency depends on changes
+    protected void notifyRangeChanged() {
+        if (this.rangeChanged) {
+            return;
+        }
+        VehicleStateListener listener = stateListener;
+        if (listener != null && RANGE_CHANGED.compareAndSet(this, false, true)) {
+            listener.onRangeChanged(this);
+        }
+    }
+
+    //the listener calls this when it starts to follow the vehicle and when it has picked up the range, before it
+    //reads it, the next change calls it again
+    public void rangeChangeHandled() {
+        this.rangeChanged = false;
+    }
+
+    //returns the fuel efficiency the vehicle would have while carrying the given cargo
+    //most vehicles dont depend on the load so by default this is the normal efficiency
+    public double calculateFuelEfficiency(double cargoLoad) {
+        return getFuelEfficiency();
+    }
+
+    //scores a multi-leg itinerary in a single pass without changing the vehicle
+    //cargo and passenger changes are applied before each leg starts, and when the fuel left cannot cover
+    //the next leg we count a refuel stop that fills the tank
+    public JourneyEstimate estimateItinerary(Itinerary itinerary) {
+        double cargo = 0.0;
+        double cargoCapacity = 0.0;
+        if (this instanceof CargoCarrier cc) {
+            cargo = cc.getCurrentCargo();
+            cargoCapacity = cc.getCargoCapacity();
+        }
+        int passengers = 0;
+        int passengerCapacity = 0;
+        if (this instanceof PassengerCarrier pc) {
+            passengers = pc.getCurrentPassengers();
+            passengerCapacity = pc.getPassengerCapacity();
+        }
+        boolean usesFuel = this instanceof FuelConsumable;
+        double fuel = usesFuel ? ((FuelConsumable) this).getFuelLevel() : 0.0;
+        double tank = Math.max(getSpec().getFuelTankCapacity(), fuel);
+
+        double totalTime = 0.0;
+        double totalFuel = 0.0;
+        int refuelStops = 0;
+        for (int leg = 0; leg < itinerary.getLegCount(); leg++) {
+            double cargoChange = itinerary.getCargoChange(leg);
+            if (cargoChange != 0) {
+                cargo += cargoChange;
+                if (cargo < 0 || cargo > cargoCapacity) {
+                    return new JourneyEstimate(this, itinerary, totalTime, totalFuel, refuelStops, false, leg,
+                            "cargo of " + cargo + " kg is outside 0.." + cargoCapacity + " kg");
+                }
+            }
+            int passengerChange = itinerary.getPassengerChange(leg);
+            if (passengerChange != 0) {
+                passengers += passengerChange;
+                if (passengers < 0 || passengers > passengerCapacity) {
+                    return new JourneyEstimate(this, itinerary, totalTime, totalFuel, refuelStops, false, leg,
+                            passengers + " passengers is outside 0.." + passengerCapacity);
+                }
+            }
+
+            double distance = itinerary.getDistance(leg);
+            double efficiency = calculateFuelEfficiency(cargo);
+            if (usesFuel && efficiency > 0) {
+                double legFuel = distance / efficiency;
+                if (legFuel > tank) {
+                    return new JourneyEstimate(this, itinerary, totalTime, totalFuel, refuelStops, false, leg,
+                            "leg needs more fuel than a full tank");
+                }
+                if (legFuel > fuel) {
+                    refuelStops++;
+                    fuel = tank;
+                }
+                fuel -= legFuel;
+                totalFuel += legFuel;
+            }
+            totalTime += estimateJourneyTime(distance);
+        }
+        return new JourneyEstimate(this, itinerary, totalTime, totalFuel, refuelStops, true, -1, null);
+    }
+
+    public static boolean isMoveLogging() {
+        return moveLogging;
+    }
+
+    public static void setMoveLogging(boolean enabled) {
+        moveLogging = enabled;
+    }
 
     //this will display info
     public void displayInfo() {
@@ -44,6 +189,103 @@ public abstract class Vehicle implements Comparable<Vehicle> {
         this.currentMileage = mileage;
     }
 
+    //The counters of a vehicle (fuel, mileage, cargo, passengers) are volatile fields that are only changed with
+    //compare-and-set through these helpers, so a refuel on the GUI thread and a move on the simulation thread never
+    //lose each other's update and no lock is taken. A subclass keeps the handles of its fields in static final fields
+
+    //the handle of a field of the class the lookup was made in
+    protected static VarHandle fieldHandle(MethodHandles.Lookup lookup, String name, Class<?> type) {
+        try {
+            return lookup.findVarHandle(lookup.lookupClass(), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    //adds the amount to a double field of this vehicle and returns the new value
+    protected final double addAtomically(VarHandle field, double amount) {
+        double current;
+        do {
+            current = (double) field.getVolatile(this);
+        } while (!field.compareAndSet(this, current, current + amount));
+        return current + amount;
+    }
+
+    //adds the amount (it can be negative) unless the new value would be below min or above max, then nothing is
+    //changed and false is returned so the caller can throw its own exception
+    protected final boolean addWithin(VarHandle field, double amount, double min, double max) {
+        double current;
+        do {
+            current = (double) field.getVolatile(this);
+            if (current + amount < min || current + amount > max) {
+                return false;
+            }
+        } while (!field.compareAndSet(this, current, current + amount));
+        return true;
+    }
+
+    protected final boolean addWithin(VarHandle field, int amount, int min, int max) {
+        int current;
+        do {
+            current = (int) field.getVolatile(this);
+            if (current + amount < min || current + amount > max) {
+                return false;
+            }
+        } while (!field.compareAndSet(this, current, current + amount));
+        return true;
+    }
+
+    //adds the distance to the mileage atomically, this is used by move() in every vehicle
+    protected void addMileage(double distance) {
+        double mileage = addAtomically(CURRENT_MILEAGE, distance);
+        //commit() draws the sample (shouldCommit() would draw it a second time)
+        VehicleMoveEvent event = new VehicleMoveEvent();
+        if (event.isEnabled()) {
+            event.vehicleId = id;
+            event.vehicleType = getClass().getSimpleName();
+            event.distance = distance;
+            event.mileage = mileage;
+            event.commit();
+        }
+    }
+
+    //the JFR events of the subclasses (see the Events package), without a running recording the event is
+    //never filled in and the JIT removes the allocation, so these cost a check and nothing else
+
+    //move() calls this right before it throws InsufficientFuelException
+    protected void recordInsufficientFuel(double distance, double fuelNeeded, double fuelAvailable) {
+        InsufficientFuelEvent event = new InsufficientFuelEvent();
+        if (event.shouldCommit()) {
+            event.vehicleId = id;
+            event.vehicleType = getClass().getSimpleName();
+            event.distance = distance;
+            event.fuelNeeded = fuelNeeded;
+            event.fuelAvailable = fuelAvailable;
+            event.commit();
+        }
+    }
+
+    protected void recordRefuel(double amount, double fuelLevel) {
+        RefuelEvent event = new RefuelEvent();
+        if (event.shouldCommit()) {
+            event.vehicleId = id;
+            event.vehicleType = getClass().getSimpleName();
+            event.amount = amount;
+            event.fuelLevel = fuelLevel;
+            event.commit();
+        }
+    }
+
+    protected void recordMaintenance() {
+        MaintenanceEvent event = new MaintenanceEvent();
+        if (event.shouldCommit()) {
+            event.vehicleId = id;
+            event.vehicleType = getClass().getSimpleName();
+            event.mileage = currentMileage;
+            event.commit();
+        }
+    }
+
     public String getModel() {
         return this.model;
     }
@@ -67,6 +309,6 @@ public abstract class Vehicle implements Comparable<Vehicle> {
     //compares to other vehicle
     @Override
     public int compareTo(Vehicle other) {
-        return Double.compare(other.calculateFuelEfficiency(), this.calculateFuelEfficiency());
+        return Double.compare(other.getFuelEfficiency(), this.getFuelEfficiency());
     }
 }
\ No newline at end of file
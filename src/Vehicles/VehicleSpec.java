@@ -0,0 +1,57 @@
+package Vehicles;
+
+//this holds the fixed properties of a vehicle type (capacities, base efficiency and service interval)
+//there is only one object per type and every vehicle of that type shares it, so the values are not
+//copied into each vehicle object
+public final class VehicleSpec {
+
+    public static final VehicleSpec CAR = new VehicleSpec("Car", 5, 0, 15.0, 10000, 50);
+    public static final VehicleSpec TRUCK = new VehicleSpec("Truck", 0, 5000, 8.0, 10000, 400);
+    public static final VehicleSpec BUS = new VehicleSpec("Bus", 50, 500, 10.0, 10000, 300);
+    public static final VehicleSpec AIRPLANE = new VehicleSpec("Airplane", 200, 10000, 5.0, 10000, 200000);
+    public static final VehicleSpec CARGO_SHIP = new VehicleSpec("CargoShip", 0, 50000, 4.0, 10000, 100000);
+
+    private final String typeName;
+    private final int passengerCapacity;
+    private final double cargoCapacity;
+    private final double baseEfficiency;
+    private final double serviceInterval;
+    private final double fuelTankCapacity;
+
+    private VehicleSpec(String typeName, int passengerCapacity, double cargoCapacity,
+                        double baseEfficiency, double serviceInterval, double fuelTankCapacity) {
+        this.typeName = typeName;
+        this.passengerCapacity = passengerCapacity;
+        this.cargoCapacity = cargoCapacity;
+        this.baseEfficiency = baseEfficiency;
+        this.serviceInterval = serviceInterval;
+        this.fuelTankCapacity = fuelTankCapacity;
+    }
+
+    public String getTypeName() {
+        return this.typeName;
+    }
+
+    public int getPassengerCapacity() {
+        return this.passengerCapacity;
+    }
+
+    public double getCargoCapacity() {
+        return this.cargoCapacity;
+    }
+
+    //fuel efficiency in km/L before any load or sail adjustments
+    public double getBaseEfficiency() {
+        return this.baseEfficiency;
+    }
+
+    //the mileage after which a vehicle of this type needs maintenance
+    public double getServiceInterval() {
+        return this.serviceInterval;
+    }
+
+    //the fuel a full tank holds, journey planning assumes a refuel stop fills the tank up to this
+    public double getFuelTankCapacity() {
+        return this.fuelTankCapacity;
+    }
+}
@@ -0,0 +1,270 @@
+package benchmarks;
+
+import Exceptions.InvalidOperationException;
+import Management.Allocation;
+import Management.FleetGenerator;
+import Management.FleetManager;
+import Management.RangeIndex;
+import Vehicles.Car;
+import Vehicles.Truck;
+import Vehicles.Vehicle;
+import simulation.CounterMode;
+import simulation.HighwayStepHandler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+//Allocation budgets for the hot paths of FleetManager, Vehicle and the simulation
+//Every check is a Bench.Case with the most bytes one call may allocate. The case is warmed up until the JIT has
+//compiled it and then run in rounds of many calls with the allocation counter of the thread read only around the
+//whole round, the best round counts (one-off allocations of the JIT or a lazy init only show up in a single round).
+//Paths that look at the whole fleet cap the calls of a round with maxOpsPerIteration().
+//The steady state paths (moving, refuelling, the range index and the aggregations) have a budget of 0, so a
+//change that makes them allocate again fails here before it shows up as GC time in a simulation of 10M vehicles.
+//Exits with 1 when a check goes over its budget, so it can run in a build script
+//Usage: java -cp ../bin benchmarks.AllocationBudgets [--ops 200000] [--rounds 5] [--fleet 10000] [--only name]
+public class AllocationBudgets {
+
+    //One hot path and what it may allocate per call
+    static class Budget {
+        final Bench.Case check;
+        final double bytesPerOp;
+
+        Budget(double bytesPerOp, Bench.Case check) {
+            this.check = check;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    //what a whole round may allocate on top of the budget, the allocation counter itself and things like a
+    //lock that is inflated once are not part of the path
+    private static final long ROUND_SLACK_BYTES = 1024;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final long SEED = 42;
+    //calls per round of a path that looks at every vehicle
+    private static final int FLEET_SCANS = 2000;
+
+    private static volatile int blackhole;
+
+    public static void main(String[] args) throws Exception {
+        int ops = 200_000;
+        int rounds = 5;
+        int fleetSize = 10_000;
+        String only = "";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ops": ops = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--fleet": fleetSize = Integer.parseInt(args[++i]); break;
+                case "--only": only = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!Allocation.isSupported()) {
+            System.out.println("This JVM cannot count allocated bytes per thread, nothing to check.");
+            return;
+        }
+
+        Vehicle.setMoveLogging(false);
+        FleetManager manager = newManager(fleetSize);
+        System.out.printf("fleet of %d vehicles, %d rounds of %d calls after %d warmup rounds%n", fleetSize, rounds,
+                ops, WARMUP_ROUNDS);
+        System.out.printf("%-40s %12s %12s  %s%n", "path", "budget B/op", "alloc B/op", "result");
+        int failed = 0;
+        for (Budget b : budgets(manager)) {
+            if (!b.check.name.contains(only)) {
+                continue;
+            }
+            int n = Math.min(ops, b.check.maxOpsPerIteration());
+            double measured = measure(b.check, n, rounds);
+            boolean ok = measured * n <= b.bytesPerOp * n + ROUND_SLACK_BYTES;
+            if (!ok) {
+                failed++;
+            }
+            System.out.printf("%-40s %12.1f %12.2f  %s%n", b.check.name, b.bytesPerOp, measured, ok ? "ok" : "OVER BUDGET");
+        }
+        if (failed > 0) {
+            System.out.println(failed + " path(s) allocate more than their budget.");
+            System.exit(1);
+        }
+        System.out.println("All paths are within their budget.");
+    }
+
+    //bytes per call of the best round
+    private static double measure(Bench.Case c, int ops, int rounds) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(c, ops);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            best = Math.min(best, round(c, ops));
+        }
+        return (double) best / ops;
+    }
+
+    private static long round(Bench.Case c, int ops) throws Exception {
+        c.setUp();
+        int hash = 0;
+        long before = Allocation.currentThreadAllocatedBytes();
+        for (int op = 0; op < ops; op++) {
+            hash ^= System.identityHashCode(c.run(op));
+        }
+        long after = Allocation.currentThreadAllocatedBytes();
+        c.tearDown();
+        blackhole ^= hash;
+        return after - before;
+    }
+
+    private static FleetManager newManager(int size) throws InvalidOperationException {
+        FleetGenerator.Profile profile = new FleetGenerator.Profile();
+        profile.seed = SEED;
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            FleetManager manager = new FleetManager();
+            new FleetGenerator(size, profile).addTo(manager);
+            return manager;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    //a car and a truck that are in the fleet (and in its range index), with a tank that does not run dry
+    private static <T extends Vehicle> T find(FleetManager manager, Class<T> type) {
+        for (Vehicle v : manager.searchByType(type)) {
+            return type.cast(v);
+        }
+        throw new IllegalStateException("The generated fleet has no " + type.getSimpleName());
+    }
+
+    private static List<Budget> budgets(FleetManager manager) {
+        List<Vehicle> vehicles = new ArrayList<>(manager.getVehicles());
+        Car car = find(manager, Car.class);
+        Truck truck = find(manager, Truck.class);
+        String id = vehicles.get(vehicles.size() / 2).getId();
+        HighwayStepHandler highway = new HighwayStepHandler(CounterMode.ATOMIC);
+        List<Budget> budgets = new ArrayList<>();
+
+        //the setters tell the fleet's range index too, so the tanks can be refilled before every round
+        budgets.add(new Budget(0, new Bench.Case("Car.move (indexed)") {
+            @Override
+            public void setUp() {
+                car.setFuelLevel(1e12);
+            }
+
+            @Override
+            public Object run(int op) throws Exception {
+                car.move(1);
+                return car;
+            }
+        }));
+
+        budgets.add(new Budget(0, new Bench.Case("Truck.consumeFuel (indexed)") {
+            @Override
+            public void setUp() {
+                truck.setFuelLevel(1e12);
+            }
+
+            @Override
+            public Object run(int op) throws Exception {
+                truck.consumeFuel(1);
+                return truck;
+            }
+        }));
+
+        budgets.add(new Budget(0, new Bench.Case("Car.refuel (indexed)") {
+            @Override
+            public void setUp() {
+                car.setFuelLevel(0);
+            }
+
+            @Override
+            public Object run(int op) throws Exception {
+                car.refuel(0.5);
+                return car;
+            }
+        }));
+
+        //vehicles of its own, so the fleet's index does not hear about the changes the other cases make
+        List<Vehicle> loose = new FleetGenerator(vehicles.size(), new FleetGenerator.Profile()).stream().toList();
+        budgets.add(new Budget(0, new Bench.Case("RangeIndex.update") {
+            private final RangeIndex index = new RangeIndex();
+
+            @Override
+            public void setUp() {
+                for (Vehicle v : loose) {
+                    index.update(v);
+                }
+            }
+
+            @Override
+            public Object run(int op) {
+                Vehicle v = loose.get(op % loose.size());
+                index.update(v);
+                return v;
+            }
+        }));
+
+        budgets.add(new Budget(0, new Bench.Case("HighwayStepHandler.onStep") {
+            @Override
+            public void setUp() {
+                car.setFuelLevel(1e12);
+            }
+
+            @Override
+            public Object run(int op) {
+                return highway.onStep(car, op);
+            }
+        }));
+
+        budgets.add(new Budget(0, new Bench.Case("getTotalFuelConsumption") {
+            @Override
+            public int maxOpsPerIteration() {
+                return FLEET_SCANS;
+            }
+
+            @Override
+            public Object run(int op) {
+                return manager.getTotalFuelConsumption(100) > 0 ? manager : null;
+            }
+        }));
+
+        budgets.add(new Budget(0, new Bench.Case("countVehiclesAbleToCover") {
+            @Override
+            public Object run(int op) {
+                return manager.countVehiclesAbleToCover(op % 2000) > 0 ? manager : null;
+            }
+        }));
+
+        budgets.add(new Budget(0, new Bench.Case("getVehicleById") {
+            @Override
+            public int maxOpsPerIteration() {
+                return FLEET_SCANS;
+            }
+
+            @Override
+            public Object run(int op) throws Exception {
+                return manager.getVehicleById(id);
+            }
+        }));
+
+        //the list of matches is the result, it may take up to 16 bytes per match with the copies made while the
+        //list grows, but nothing for the vehicles that dont match
+        int trucks = manager.searchByType(Truck.class).size();
+        budgets.add(new Budget(16.0 * trucks + 256, new Bench.Case("searchByType(Truck)") {
+            @Override
+            public int maxOpsPerIteration() {
+                return FLEET_SCANS;
+            }
+
+            @Override
+            public Object run(int op) {
+                return manager.searchByType(Truck.class);
+            }
+        }));
+        return budgets;
+    }
+}
@@ -0,0 +1,228 @@
+package benchmarks;
+
+import Management.Allocation;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+//This is a small benchmark harness in the style of JMH for a project that is built with plain javac
+//A benchmark is a list of Cases. Each case is run for a few warmup iterations (not reported) and then a few
+//measured iterations of about iterationMillis each. Only the operation itself is timed: setUp(), beforeEach()
+//and tearDown() run outside the timer, so a case can put its data back into shape before every call.
+//For every case it reports throughput, average time per operation, bytes allocated per operation and the
+//allocation rate (from the per-thread allocation counter of the JVM) and the GC count and time, like JMH's -prof gc.
+//Results go through a Blackhole so the JIT cant throw the work away
+public class Bench {
+
+    //One thing to measure
+    public abstract static class Case {
+        public final String name;
+
+        protected Case(String name) {
+            this.name = name;
+        }
+
+        //before every iteration, not timed
+        public void setUp() throws Exception {
+        }
+
+        //before every single operation, not timed
+        public void beforeEach(int op) throws Exception {
+        }
+
+        //after every iteration, not timed, to leave the data the way the next case expects it
+        public void tearDown() throws Exception {
+        }
+
+        //the operation that is measured, the result is handed to the blackhole
+        public abstract Object run(int op) throws Exception;
+
+        //most operations one iteration may do, for cases that change the fleet (add, remove)
+        public int maxOpsPerIteration() {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    //What one case measured, averaged over the measured iterations
+    public static class Result {
+        public final String name;
+        public final long ops;
+        public final double avgNanos;
+        //standard deviation of the per-iteration average, to see how stable the number is
+        public final double errorNanos;
+        public final double bytesPerOp;
+        public final long gcCount;
+        public final long gcMillis;
+        //set when the case could not run (for example out of memory at a big size)
+        public final String failure;
+
+        Result(String name, long ops, double avgNanos, double errorNanos, double bytesPerOp, long gcCount,
+               long gcMillis, String failure) {
+            this.name = name;
+            this.ops = ops;
+            this.avgNanos = avgNanos;
+            this.errorNanos = errorNanos;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.failure = failure;
+        }
+
+        public double getOpsPerSecond() {
+            return avgNanos > 0 ? 1e9 / avgNanos : 0;
+        }
+
+        //MB allocated per second of operation time
+        public double getAllocationRate() {
+            return avgNanos > 0 ? bytesPerOp / avgNanos * 1e9 / (1024 * 1024) : 0;
+        }
+    }
+
+    //where results end up so the JIT has to compute them
+    private static volatile int blackhole;
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationMillis;
+
+    public Bench(int warmupIterations, int measureIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+    public static void consume(Object o) {
+        blackhole ^= System.identityHashCode(o);
+    }
+
+    public Result run(Case c) {
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                iteration(c, null);
+            }
+            long ops = 0;
+            long bytes = 0;
+            double[] perIteration = new double[measureIterations];
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long totalNanos = 0;
+            for (int i = 0; i < measureIterations; i++) {
+                long[] totals = new long[3];
+                iteration(c, totals);
+                ops += totals[0];
+                totalNanos += totals[1];
+                bytes += totals[2];
+                perIteration[i] = totals[0] > 0 ? (double) totals[1] / totals[0] : 0;
+            }
+            double avg = ops > 0 ? (double) totalNanos / ops : 0;
+            return new Result(c.name, ops, avg, stdev(perIteration), ops > 0 ? (double) bytes / ops : 0,
+                    gcCount() - gcCountBefore, gcMillis() - gcMillisBefore, null);
+        } catch (OutOfMemoryError e) {
+            return new Result(c.name, 0, 0, 0, 0, 0, 0, "out of memory");
+        } catch (Exception e) {
+            return new Result(c.name, 0, 0, 0, 0, 0, 0, e.toString());
+        }
+    }
+
+    //totals = {operations, nanoseconds spent in the operations, bytes they allocated}, null for warmup
+    private void iteration(Case c, long[] totals) throws Exception {
+        c.setUp();
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+        int max = c.maxOpsPerIteration();
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        int hash = 0;
+        do {
+            int op = (int) ops;
+            c.beforeEach(op);
+            long allocBefore = Allocation.currentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            Object result = c.run(op);
+            long end = System.nanoTime();
+            long allocAfter = Allocation.currentThreadAllocatedBytes();
+            hash ^= System.identityHashCode(result);
+            nanos += end - start;
+            bytes += allocAfter - allocBefore;
+            ops++;
+        } while (ops < max && System.nanoTime() < deadline);
+        c.tearDown();
+        blackhole ^= hash;
+        if (totals != null) {
+            totals[0] = ops;
+            totals[1] = nanos;
+            totals[2] = bytes;
+        }
+    }
+
+    private static double stdev(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = 0;
+        for (double v : values) {
+            mean += v;
+        }
+        mean /= values.length;
+        double sq = 0;
+        for (double v : values) {
+            sq += (v - mean) * (v - mean);
+        }
+        return Math.sqrt(sq / (values.length - 1));
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    public static void printHeader(PrintStream out) {
+        out.printf("%-32s %10s %14s %14s %12s %14s %12s %8s %8s%n", "benchmark", "vehicles", "ops/s",
+                "avg us/op", "error us", "alloc B/op", "alloc MB/s", "gc", "gc ms");
+    }
+
+    public static void print(PrintStream out, Result r, long size) {
+        if (r.failure != null) {
+            out.printf("%-32s %10d   failed: %s%n", r.name, size, r.failure);
+            return;
+        }
+        out.printf(Locale.ROOT, "%-32s %10d %14.1f %14.3f %12.3f %14.1f %12.1f %8d %8d%n", r.name, size,
+                r.getOpsPerSecond(), r.avgNanos / 1e3, r.errorNanos / 1e3, r.bytesPerOp, r.getAllocationRate(),
+                r.gcCount, r.gcMillis);
+    }
+
+    //runs every case and prints a line for each, with System.out silenced while they run
+    //(FleetManager prints a line for every vehicle it adds or removes, that would measure the terminal instead)
+    public List<Result> runAll(List<? extends Case> cases, long size) {
+        PrintStream out = System.out;
+        List<Result> results = new ArrayList<>();
+        for (Case c : cases) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Result r;
+            try {
+                r = run(c);
+            } finally {
+                System.setOut(out);
+            }
+            print(out, r, size);
+            results.add(r);
+        }
+        return results;
+    }
+}
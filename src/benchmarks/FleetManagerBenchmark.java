@@ -0,0 +1,250 @@
+package benchmarks;
+
+import Exceptions.InvalidOperationException;
+import Management.Allocation;
+import Management.FleetGenerator;
+import Management.FleetManager;
+import Vehicles.Truck;
+import Vehicles.Vehicle;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Benchmarks of the FleetManager operations on synthetic fleets of different sizes
+//Every fleet size runs in its own JVM (like a JMH fork) so the sizes dont share heap, JIT state or GC history
+//Usage: java -cp ../bin benchmarks.FleetManagerBenchmark [--sizes 1000,10000,100000,1000000] [--warmup 3]
+//           [--iterations 5] [--millis 1000] [--heap 4g] [--only name] [--no-fork]
+//10M vehicles need a heap of about 6 GB: --sizes 10000000 --heap 6g
+public class FleetManagerBenchmark {
+
+    private static final long SEED = 42;
+    private static final long CHILD_TIMEOUT_MINUTES = 30;
+
+    public static void main(String[] args) throws Exception {
+        String sizes = "1000,10000,100000,1000000";
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 1000;
+        String heap = "4g";
+        String only = "";
+        boolean fork = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": sizes = args[++i]; break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--millis": millis = Long.parseLong(args[++i]); break;
+                case "--heap": heap = args[++i]; break;
+                case "--only": only = args[++i]; break;
+                case "--no-fork": fork = false; break;
+                case "--child":
+                    //internal: one size in this JVM, the parent already printed the header
+                    runSize(Integer.parseInt(args[++i]), new Bench(warmup, iterations, millis), only);
+                    return;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.printf("warmup %d x %d ms, measure %d x %d ms, %s%n", warmup, millis, iterations, millis,
+                Allocation.isSupported() ? "allocation counting on" : "allocation counting not supported by this JVM");
+        Bench.printHeader(System.out);
+        String java = ProcessHandle.current().info().command().orElse("java");
+        for (String s : sizes.split(",")) {
+            int size = Integer.parseInt(s.trim());
+            if (!fork) {
+                runSize(size, new Bench(warmup, iterations, millis), only);
+                continue;
+            }
+            List<String> command = new ArrayList<>(List.of(java, "-Xmx" + heap, "-cp", System.getProperty("java.class.path"),
+                    FleetManagerBenchmark.class.getName(), "--warmup", String.valueOf(warmup), "--iterations",
+                    String.valueOf(iterations), "--millis", String.valueOf(millis)));
+            if (!only.isEmpty()) {
+                command.add("--only");
+                command.add(only);
+            }
+            command.add("--child");
+            command.add(String.valueOf(size));
+            Process p = new ProcessBuilder(command).inheritIO().start();
+            if (!p.waitFor(CHILD_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                p.destroyForcibly().waitFor();
+                System.out.printf("%-32s %10d   gave up after %d minutes%n", "(all)", size, CHILD_TIMEOUT_MINUTES);
+            } else if (p.exitValue() != 0) {
+                System.out.printf("%-32s %10d   JVM exited with %d%n", "(all)", size, p.exitValue());
+            }
+        }
+    }
+
+    private static void runSize(int size, Bench bench, String only) throws Exception {
+        Vehicle.setMoveLogging(false);
+        FleetGenerator.Profile profile = new FleetGenerator.Profile();
+        profile.seed = SEED;
+        FleetManager manager = newManager(new FleetGenerator(size, profile));
+        List<Bench.Case> cases = new ArrayList<>();
+        for (Bench.Case c : cases(manager, size, profile)) {
+            if (c.name.contains(only)) {
+                cases.add(c);
+            }
+        }
+        bench.runAll(cases, size);
+    }
+
+    private static FleetManager newManager(FleetGenerator generator) throws InvalidOperationException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            FleetManager manager = new FleetManager();
+            generator.addTo(manager);
+            return manager;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static List<Bench.Case> cases(FleetManager manager, int size, FleetGenerator.Profile profile) {
+        List<Vehicle> vehicles = new ArrayList<>(manager.getVehicles());
+        String[] ids = new String[vehicles.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = vehicles.get(i).getId();
+        }
+        Random random = new Random(SEED);
+        List<Bench.Case> cases = new ArrayList<>();
+
+        //new vehicles every iteration (the ones after the fleet in the generator), at most 1% of the fleet so
+        //the fleet size stays about the same
+        cases.add(new Bench.Case("addVehicle") {
+            private final FleetGenerator more = new FleetGenerator(Long.MAX_VALUE, profile);
+            private final int perIteration = Math.max(100, size / 100);
+            private int next = size;
+            private List<Vehicle> pending;
+
+            @Override
+            public void setUp() {
+                pending = new ArrayList<>(perIteration);
+                for (int i = 0; i < perIteration; i++) {
+                    pending.add(more.vehicle(next++));
+                }
+            }
+
+            @Override
+            public Object run(int op) throws Exception {
+                Vehicle v = pending.get(op);
+                manager.addVehicle(v);
+                return v;
+            }
+
+            @Override
+            public int maxOpsPerIteration() {
+                return perIteration;
+            }
+        });
+
+        //removes a random vehicle and puts the one removed before back first (untimed), so the size stays the same
+        cases.add(new Bench.Case("removeVehicle") {
+            private Vehicle removed;
+
+            @Override
+            public void beforeEach(int op) throws Exception {
+                tearDown();
+            }
+
+            @Override
+            public void tearDown() throws Exception {
+                if (removed != null) {
+                    manager.addVehicle(removed);
+                    removed = null;
+                }
+            }
+
+            @Override
+            public Object run(int op) throws Exception {
+                List<Vehicle> current = manager.getVehicles();
+                Vehicle v = current.get(random.nextInt(current.size()));
+                manager.removeVehicle(v.getId());
+                removed = v;
+                return v;
+            }
+        });
+
+        cases.add(new Bench.Case("getVehicleById") {
+            @Override
+            public Object run(int op) throws Exception {
+                return manager.getVehicleById(ids[random.nextInt(ids.length)]);
+            }
+        });
+
+        cases.add(new Bench.Case("searchByType(Truck)") {
+            @Override
+            public Object run(int op) {
+                return manager.searchByType(Truck.class);
+            }
+        });
+
+        //before every sort the fleet is put in an order that has nothing to do with the sort key (untimed),
+        //otherwise every call after the first would sort a list that is already sorted
+        cases.add(new Bench.Case("sortFleetByEfficiency") {
+            @Override
+            public void beforeEach(int op) {
+                manager.sortFleetByModel();
+            }
+
+            @Override
+            public Object run(int op) {
+                manager.sortFleetByEfficiency();
+                return manager;
+            }
+        });
+
+        cases.add(new Bench.Case("sortFleetByModel") {
+            @Override
+            public void beforeEach(int op) {
+                manager.sortFleetBySpeed();
+            }
+
+            @Override
+            public Object run(int op) {
+                manager.sortFleetByModel();
+                return manager;
+            }
+        });
+
+        cases.add(new Bench.Case("sortFleetBySpeed") {
+            @Override
+            public void beforeEach(int op) {
+                manager.sortFleetByModel();
+            }
+
+            @Override
+            public Object run(int op) {
+                manager.sortFleetBySpeed();
+                return manager;
+            }
+        });
+
+        cases.add(new Bench.Case("getTotalFuelConsumption") {
+            @Override
+            public Object run(int op) {
+                return manager.getTotalFuelConsumption(100);
+            }
+        });
+
+        cases.add(new Bench.Case("generateReport") {
+            @Override
+            public Object run(int op) {
+                return manager.generateReport();
+            }
+        });
+
+        cases.add(new Bench.Case("getVehiclesNeedingMaintenance") {
+            @Override
+            public Object run(int op) {
+                return manager.getVehiclesNeedingMaintenance();
+            }
+        });
+        return cases;
+    }
+}
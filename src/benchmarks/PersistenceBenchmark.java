@@ -0,0 +1,325 @@
+package benchmarks;
+
+import Exceptions.InvalidOperationException;
+import Interfaces.CargoCarrier;
+import Interfaces.FuelConsumable;
+import Interfaces.Maintainable;
+import Interfaces.PassengerCarrier;
+import Management.FleetGenerator;
+import Management.FleetManager;
+import Vehicles.LandVehicle;
+import Vehicles.Vehicle;
+import Vehicles.WaterVehicle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+//Benchmarks of saving and loading the fleet, for every file format FleetManager can write (for now only CSV)
+//For every fleet size it writes a synthetic fleet (with the given type mix) to a file on tmpfs when there is one,
+//so the numbers are about formatting and parsing and not about the disk, and then measures save and load:
+//rows/s, MB/s of file, bytes allocated per row and the peak heap while the operation ran.
+//After measuring it loads the file once more and checks that every vehicle came back with the values the
+//format stores, and that saving the loaded fleet gives the same file again. A failed check makes the exit code 1
+//Usage: java -cp ../bin benchmarks.PersistenceBenchmark [--sizes 10000,100000,1000000]
+//           [--mix car=40,truck=25,bus=15,airplane=10,ship=10] [--dir /dev/shm] [--warmup 2] [--iterations 5]
+//           [--millis 2000] [--heap 4g] [--no-fork]
+public class PersistenceBenchmark {
+
+    private static final long SEED = 42;
+    private static final long CHILD_TIMEOUT_MINUTES = 30;
+    //the CSV keeps one decimal, so a value may come back this far off
+    private static final double TOLERANCE = 0.05;
+
+    //A way of writing a fleet to a file and reading it back
+    interface Format {
+        String name();
+
+        void save(FleetManager manager, String file) throws IOException;
+
+        void load(FleetManager manager, String file) throws IOException, InvalidOperationException;
+    }
+
+    private static final List<Format> FORMATS = List.of(
+            new Format() {
+                public String name() {
+                    return "csv";
+                }
+
+                public void save(FleetManager manager, String file) throws IOException {
+                    manager.saveToFile(file);
+                }
+
+                public void load(FleetManager manager, String file) throws IOException, InvalidOperationException {
+                    manager.loadFromFile(file);
+                }
+            });
+
+    public static void main(String[] args) throws Exception {
+        String sizes = "10000,100000,1000000";
+        int[] mix = new FleetGenerator.Profile().typeMix;
+        String dir = new File("/dev/shm").isDirectory() ? "/dev/shm" : System.getProperty("java.io.tmpdir");
+        int warmup = 2;
+        int iterations = 5;
+        long millis = 2000;
+        String heap = "4g";
+        boolean fork = true;
+        int child = -1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": sizes = args[++i]; break;
+                case "--mix": mix = FleetGenerator.parseMix(args[++i]); break;
+                case "--dir": dir = args[++i]; break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--millis": millis = Long.parseLong(args[++i]); break;
+                case "--heap": heap = args[++i]; break;
+                case "--no-fork": fork = false; break;
+                //internal: one size in this JVM, the parent already printed the header
+                case "--child": child = Integer.parseInt(args[++i]); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Bench bench = new Bench(warmup, iterations, millis);
+        if (child >= 0) {
+            System.exit(runSize(child, mix, dir, bench) ? 0 : 1);
+        }
+
+        System.out.printf("warmup %d x %d ms, measure %d x %d ms, mix %s, files in %s%n", warmup, millis,
+                iterations, millis, FleetGenerator.formatMix(mix), dir);
+        printHeader();
+        boolean ok = true;
+        String java = ProcessHandle.current().info().command().orElse("java");
+        for (String s : sizes.split(",")) {
+            int size = Integer.parseInt(s.trim());
+            if (!fork) {
+                ok &= runSize(size, mix, dir, bench);
+                continue;
+            }
+            List<String> command = List.of(java, "-Xmx" + heap, "-cp", System.getProperty("java.class.path"),
+                    PersistenceBenchmark.class.getName(), "--mix", FleetGenerator.formatMix(mix), "--dir", dir,
+                    "--warmup", String.valueOf(warmup), "--iterations", String.valueOf(iterations),
+                    "--millis", String.valueOf(millis), "--child", String.valueOf(size));
+            Process p = new ProcessBuilder(command).inheritIO().start();
+            if (!p.waitFor(CHILD_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                p.destroyForcibly().waitFor();
+                System.out.printf("%-12s %10d   gave up after %d minutes%n", "(all)", size, CHILD_TIMEOUT_MINUTES);
+                ok = false;
+            } else if (p.exitValue() != 0) {
+                ok = false;
+            }
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    //true when the round trip of every format came out right
+    private static boolean runSize(int size, int[] mix, String dir, Bench bench) throws Exception {
+        FleetGenerator.Profile profile = new FleetGenerator.Profile();
+        profile.seed = SEED;
+        profile.typeMix = mix;
+        FleetManager source = quietly(() -> {
+            FleetManager m = new FleetManager();
+            new FleetGenerator(size, profile).addTo(m);
+            return m;
+        });
+        List<Vehicle> vehicles = source.getVehicles();
+        boolean ok = true;
+        for (Format format : FORMATS) {
+            File file = File.createTempFile("fleet-bench-", "." + format.name(), new File(dir));
+            File copy = File.createTempFile("fleet-bench-", ".copy." + format.name(), new File(dir));
+            try {
+                quietly(() -> {
+                    format.save(source, file.getPath());
+                    return null;
+                });
+                long fileBytes = file.length();
+
+                PeakHeapCase save = new PeakHeapCase(format.name() + " save") {
+                    @Override
+                    Object operation() throws IOException {
+                        format.save(source, file.getPath());
+                        return source;
+                    }
+                };
+                print(save.name, size, fileBytes, quietly(() -> bench.run(save)), save.peakHeap);
+
+                PeakHeapCase load = new PeakHeapCase(format.name() + " load") {
+                    private FleetManager target;
+
+                    //every load starts from an empty manager, like loading a file at startup
+                    @Override
+                    public void beforeEach(int op) {
+                        target = new FleetManager();
+                        super.beforeEach(op);
+                    }
+
+                    @Override
+                    Object operation() throws Exception {
+                        format.load(target, file.getPath());
+                        return target;
+                    }
+                };
+                print(load.name, size, fileBytes, quietly(() -> bench.run(load)), load.peakHeap);
+
+                String problem = quietly(() -> roundTrip(format, vehicles, file, copy));
+                if (problem != null) {
+                    ok = false;
+                }
+                System.out.printf("%-12s %10d   round trip %s%n", format.name(), size,
+                        problem == null ? "ok" : "FAILED: " + problem);
+            } finally {
+                file.delete();
+                copy.delete();
+            }
+        }
+        return ok;
+    }
+
+    //null when the file gives back the fleet it was written from, otherwise what went wrong first
+    private static String roundTrip(Format format, List<Vehicle> expected, File file, File copy) throws Exception {
+        FleetManager loaded = new FleetManager();
+        format.load(loaded, file.getPath());
+        List<Vehicle> actual = loaded.getVehicles();
+        if (actual.size() != expected.size()) {
+            return "saved " + expected.size() + " vehicles, loaded " + actual.size();
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            String diff = compare(expected.get(i), actual.get(i));
+            if (diff != null) {
+                return "row " + (i + 1) + " (" + expected.get(i).getId() + "): " + diff;
+            }
+        }
+        format.save(loaded, copy.getPath());
+        if (!Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(copy.toPath()))) {
+            return "saving the loaded fleet gives a different file";
+        }
+        return null;
+    }
+
+    //the values the CSV stores (the airplane's altitude and the car's wheels are not written, they come from the constructor)
+    private static String compare(Vehicle a, Vehicle b) {
+        if (a.getClass() != b.getClass()) {
+            return "type " + a.getClass().getSimpleName() + " came back as " + b.getClass().getSimpleName();
+        }
+        if (!a.getId().equals(b.getId()) || !a.getModel().equals(b.getModel())) {
+            return "id/model " + a.getId() + "/" + a.getModel() + " came back as " + b.getId() + "/" + b.getModel();
+        }
+        String diff = differs("maxSpeed", a.getMaxSpeed(), b.getMaxSpeed());
+        diff = diff != null ? diff : differs("mileage", a.getCurrentMileage(), b.getCurrentMileage());
+        diff = diff != null ? diff : differs("mileageAtLastService", a.getMileageAtLastService(), b.getMileageAtLastService());
+        if (diff == null && a instanceof FuelConsumable fa && b instanceof FuelConsumable fb) {
+            diff = differs("fuelLevel", fa.getFuelLevel(), fb.getFuelLevel());
+            diff = diff != null ? diff : differs("lastFueledAt", fa.getLastFueledAt(), fb.getLastFueledAt());
+        }
+        if (diff == null && a instanceof PassengerCarrier pa && b instanceof PassengerCarrier pb) {
+            diff = differs("passengers", pa.getCurrentPassengers(), pb.getCurrentPassengers());
+        }
+        if (diff == null && a instanceof CargoCarrier ca && b instanceof CargoCarrier cb) {
+            diff = differs("cargo", ca.getCurrentCargo(), cb.getCurrentCargo());
+        }
+        if (diff == null && a instanceof LandVehicle la && b instanceof LandVehicle lb) {
+            diff = differs("wheels", la.getNumWheels(), lb.getNumWheels());
+        }
+        if (diff == null && a instanceof WaterVehicle wa && b instanceof WaterVehicle wb && wa.getHasSail() != wb.getHasSail()) {
+            diff = "hasSail " + wa.getHasSail() + " came back as " + wb.getHasSail();
+        }
+        if (diff == null && a instanceof Maintainable ma && b instanceof Maintainable mb
+                && ma.needsMaintenance() != mb.needsMaintenance()) {
+            diff = "needsMaintenance " + ma.needsMaintenance() + " came back as " + mb.needsMaintenance();
+        }
+        return diff;
+    }
+
+    private static String differs(String field, double expected, double actual) {
+        return Math.abs(expected - actual) <= TOLERANCE ? null : field + " " + expected + " came back as " + actual;
+    }
+
+    //A case that also keeps the highest heap use seen while its operation ran. The peaks of the heap pools are
+    //reset before every operation (untimed) and read after it, the sum of the pool peaks is a little above the
+    //real peak because the pools dont peak at the same moment, but it moves with what the operation holds on to
+    abstract static class PeakHeapCase extends Bench.Case {
+        long peakHeap;
+
+        PeakHeapCase(String name) {
+            super(name);
+        }
+
+        abstract Object operation() throws Exception;
+
+        @Override
+        public void setUp() {
+            peakHeap = 0;
+        }
+
+        @Override
+        public void beforeEach(int op) {
+            resetPeaks();
+        }
+
+        @Override
+        public Object run(int op) throws Exception {
+            Object result = operation();
+            peakHeap = Math.max(peakHeap, peakHeapUsed());
+            return result;
+        }
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapUsed() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    private static void printHeader() {
+        System.out.printf("%-12s %10s %12s %10s %10s %12s %10s %12s %10s%n", "operation", "rows", "rows/s",
+                "MB/s", "ms/op", "error ms", "file MB", "alloc B/row", "peak MB");
+    }
+
+    private static void print(String name, int rows, long fileBytes, Bench.Result r, long peakHeap) {
+        if (r.failure != null) {
+            System.out.printf("%-12s %10d   failed: %s%n", name, rows, r.failure);
+            return;
+        }
+        double mb = 1024.0 * 1024.0;
+        System.out.printf(Locale.ROOT, "%-12s %10d %12.0f %10.1f %10.2f %12.2f %10.1f %12.1f %10.1f%n", name, rows,
+                rows * r.getOpsPerSecond(), fileBytes / mb * r.getOpsPerSecond(), r.avgNanos / 1e6,
+                r.errorNanos / 1e6, fileBytes / mb, rows > 0 ? r.bytesPerOp / rows : 0, peakHeap / mb);
+    }
+
+    interface Action<T> {
+        T run() throws Exception;
+    }
+
+    //FleetManager prints a line for every vehicle it adds and for every save and load
+    private static <T> T quietly(Action<T> action) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return action.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package benchmarks;
+
+import Management.Allocation;
+import Vehicles.Airplane;
+import Vehicles.Bus;
+import Vehicles.Car;
+import Vehicles.CargoShip;
+import Vehicles.Truck;
+import Vehicles.Vehicle;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.IntFunction;
+
+//Checks the shallow size of one object of every vehicle type, like JOL would print it
+//The shared VehicleSpec objects keep the capacities, the base efficiency and the service interval out of the
+//vehicles, this makes sure they stay out: a field that is added to Vehicle or a subclass shows up here as a bigger
+//object before it shows up as a bigger heap with 10M vehicles. The size is measured, not worked out from the
+//fields: many vehicles are created with the same id and model strings and the bytes the thread allocated for them
+//are divided by their number, that is the object with its header and padding.
+//The limits are for the usual 64 bit layout (compressed references and class pointers, 8 byte alignment), on
+//another layout the sizes are printed but not checked. Exits with 1 when a type is bigger than its limit
+//Usage: java -cp ../bin benchmarks.VehicleFootprintCheck [--count 100000]
+public class VehicleFootprintCheck {
+
+    //One vehicle type and the most bytes one object of it may take
+    static class Limit {
+        final String type;
+        final long maxBytes;
+        final IntFunction<Vehicle> create;
+
+        Limit(String type, long maxBytes, IntFunction<Vehicle> create) {
+            this.type = type;
+            this.maxBytes = maxBytes;
+            this.create = create;
+        }
+    }
+
+    private static final String ID = "FOOTPRINT";
+    private static final String MODEL = "Footprint Model";
+
+    //with the capacities copied into every vehicle the types took 88, 96, 104, 104 and 88 bytes, with the shared
+    //specs 72, 80, 80, 88 and 72. The range index keeps its listener out of the vehicles and the changed mark of
+    //Vehicle fits in what was padding, so the sizes have to stay those of the shared specs
+    private static final List<Limit> LIMITS = List.of(
+            new Limit("Car", 72, i -> new Car(ID, MODEL, 120)),
+            new Limit("Truck", 80, i -> new Truck(ID, MODEL, 90, 6)),
+            new Limit("Bus", 80, i -> new Bus(ID, MODEL, 100, 6)),
+            new Limit("Airplane", 88, i -> new Airplane(ID, MODEL, 900, 35000)),
+            new Limit("CargoShip", 72, i -> new CargoShip(ID, MODEL, 40, false)));
+
+    private static volatile Object blackhole;
+
+    public static void main(String[] args) {
+        int count = 100_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--count": count = Integer.parseInt(args[++i]); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!Allocation.isSupported()) {
+            System.out.println("This JVM cannot count allocated bytes per thread, nothing to check.");
+            return;
+        }
+
+        boolean usualLayout = "true".equals(vmOption("UseCompressedOops"))
+                && "true".equals(vmOption("UseCompressedClassPointers"))
+                && "8".equals(vmOption("ObjectAlignmentInBytes"));
+        System.out.printf("%-12s %10s %10s  %s%n", "type", "limit B", "measured B", "result");
+        int failed = 0;
+        for (Limit limit : LIMITS) {
+            long bytes = measure(limit.create, count);
+            boolean ok = !usualLayout || bytes <= limit.maxBytes;
+            if (!ok) {
+                failed++;
+            }
+            System.out.printf("%-12s %10d %10d  %s%n", limit.type, limit.maxBytes, bytes,
+                    !usualLayout ? "not checked" : ok ? "ok" : "TOO BIG");
+        }
+        if (!usualLayout) {
+            System.out.println("The JVM does not use compressed references with 8 byte alignment, the limits do not apply.");
+            return;
+        }
+        if (failed > 0) {
+            System.out.println(failed + " vehicle type(s) are bigger than their limit.");
+            System.exit(1);
+        }
+        System.out.println("All vehicle types are within their limit.");
+    }
+
+    //bytes of one object, the array that holds them is allocated before counting
+    private static long measure(IntFunction<Vehicle> create, int count) {
+        Vehicle[] vehicles = new Vehicle[count];
+        //the first objects load and initialize the classes
+        for (int i = 0; i < count; i++) {
+            vehicles[i] = create.apply(i);
+        }
+        long before = Allocation.currentThreadAllocatedBytes();
+        for (int i = 0; i < count; i++) {
+            vehicles[i] = create.apply(i);
+        }
+        long after = Allocation.currentThreadAllocatedBytes();
+        blackhole = vehicles;
+        return Math.round((double) (after - before) / count);
+    }
+
+    private static String vmOption(String name) {
+        try {
+            return ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption(name).getValue();
+        } catch (RuntimeException e) {
+            //not a HotSpot JVM
+            return "";
+        }
+    }
+}
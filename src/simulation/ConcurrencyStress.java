@@ -0,0 +1,671 @@
+package simulation;
+
+import Interfaces.CargoCarrier;
+import Interfaces.FuelConsumable;
+import Interfaces.PassengerCarrier;
+import Management.FleetManager;
+import Management.RangeIndex;
+import Vehicles.Airplane;
+import Vehicles.Bus;
+import Vehicles.Car;
+import Vehicles.CargoShip;
+import Vehicles.Truck;
+import Vehicles.Vehicle;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//Stress tests for the code that is shared between threads, in the spirit of jcstress
+//Every test runs many short rounds. In a round a few actor threads are released at the same moment to hammer one
+//shared thing (the Highway counter, the counters of one vehicle, the fleet and its range index), and when they
+//are done the state is checked and boiled down to an outcome string. Every outcome is graded: ACCEPTABLE,
+//INTERESTING (allowed, but worth seeing, like the lost updates of the unsafe counter) or FORBIDDEN. The report lists every outcome that was
+//seen with how often, and the program exits with 1 if any forbidden outcome showed up, so it can run in a test suite.
+//A single CPU still interleaves the threads, more CPUs find more interleavings
+//Usage: java -cp ../bin simulation.ConcurrencyStress [--rounds 200] [--threads 4] [--only name]
+public class ConcurrencyStress {
+
+    public enum Grade { ACCEPTABLE, INTERESTING, FORBIDDEN }
+
+    //One stress test, round() runs the actors once and returns what it observed
+    abstract static class Test {
+        final String name;
+        final String description;
+
+        Test(String name, String description) {
+            this.name = name;
+            this.description = description;
+        }
+
+        abstract String round(int threads, SplittableRandom random) throws Exception;
+
+        abstract Grade grade(String outcome);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 200;
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        String only = "";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--only": only = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (threads < 3) {
+            throw new IllegalArgumentException("The tests need at least 3 threads.");
+        }
+
+        Vehicle.setMoveLogging(false);
+        SplittableRandom random = new SplittableRandom(42);
+        int forbidden = 0;
+        for (Test test : tests()) {
+            if (test.name.contains(only)) {
+                forbidden += run(test, rounds, threads, random);
+            }
+        }
+        if (forbidden > 0) {
+            System.out.println("FAILED: " + forbidden + " forbidden outcome(s) observed.");
+            System.exit(1);
+        }
+        System.out.println("OK: no forbidden outcomes.");
+    }
+
+    //runs the rounds and prints every outcome that was seen, returns how many rounds were forbidden
+    private static int run(Test test, int rounds, int threads, SplittableRandom random) throws Exception {
+        Map<String, Long> seen = new TreeMap<>();
+        long start = System.nanoTime();
+        //FleetManager prints a line for every vehicle it adds or removes
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < rounds; i++) {
+                seen.merge(test.round(threads, random.split()), 1L, Long::sum);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        int forbidden = 0;
+        System.out.printf("%n%s (%d rounds, %d threads, %d ms)%n  %s%n", test.name, rounds, threads,
+                (System.nanoTime() - start) / 1_000_000, test.description);
+        for (Map.Entry<String, Long> e : seen.entrySet()) {
+            Grade grade = test.grade(e.getKey());
+            if (grade == Grade.FORBIDDEN) {
+                forbidden += e.getValue();
+            }
+            System.out.printf("  %-64s %8d  %s%n", e.getKey(), e.getValue(), grade);
+        }
+        return forbidden;
+    }
+
+    //starts the actors together and waits for all of them, the first exception of an actor is thrown here
+    private static void runActors(List<Runnable> actors) throws Exception {
+        CountDownLatch ready = new CountDownLatch(actors.size());
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (Runnable actor : actors) {
+            Thread t = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    actor.run();
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "stress-actor");
+            threads.add(t);
+            t.start();
+        }
+        ready.await();
+        go.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("An actor failed", failures.get(0));
+        }
+    }
+
+    private static List<Test> tests() {
+        List<Test> tests = new ArrayList<>();
+        for (CounterMode mode : CounterMode.values()) {
+            tests.add(highwayTest(mode));
+        }
+        tests.add(countersTest(() -> new Car("STRESS", "Stress Car", 120)));
+        tests.add(countersTest(() -> new Truck("STRESS", "Stress Truck", 90, 6)));
+        tests.add(countersTest(() -> new Bus("STRESS", "Stress Bus", 100, 6)));
+        tests.add(countersTest(() -> new Airplane("STRESS", "Stress Airplane", 900, 35000)));
+        tests.add(countersTest(() -> new CargoShip("STRESS", "Stress Ship", 40, false)));
+        tests.add(cargoRangeTest());
+        tests.add(segmentedRoadTest());
+        tests.add(sharedVehicleTest());
+        tests.add(fleetTest());
+        return tests;
+    }
+
+    //Writers add 1 km at a time to the Highway counter while a reader keeps reading the total.
+    //After the writers are done (PER_THREAD writers flush like a VehicleTask does) no km may be missing, except in
+    //the unsafe demo mode. The reader may never see the total go down or above what was added, in any mode but
+    //the unsafe one (see Highway.getDistance)
+    private static Test highwayTest(CounterMode mode) {
+        //the unsafe mode sleeps 1 ms in every update
+        int perWriter = mode == CounterMode.UNSAFE ? 10 : 20_000;
+        return new Test("highway " + mode.name(), "writers add " + perWriter + " km each with " + mode.getLabel()
+                + ", one reader watches the total") {
+            @Override
+            String round(int threads, SplittableRandom random) throws Exception {
+                Highway.reset();
+                int writers = threads - 1;
+                long total = (long) writers * perWriter;
+                AtomicBoolean done = new AtomicBoolean();
+                AtomicLong writersLeft = new AtomicLong(writers);
+                String[] reading = {"reads never went down"};
+                List<Runnable> actors = new ArrayList<>();
+                for (int w = 0; w < writers; w++) {
+                    actors.add(() -> {
+                        for (int i = 0; i < perWriter; i++) {
+                            Highway.addDistance(mode, 1);
+                        }
+                        Highway.flushThreadLocal();
+                        if (writersLeft.decrementAndGet() == 0) {
+                            done.set(true);
+                        }
+                    });
+                }
+                actors.add(() -> {
+                    long last = 0;
+                    while (!done.get()) {
+                        long now = Highway.getDistance();
+                        if (now > total) {
+                            reading[0] = "a read was above the total";
+                        } else if (now < last && !reading[0].startsWith("a read was above")) {
+                            reading[0] = "a read went down";
+                        }
+                        last = now;
+                        Thread.onSpinWait();
+                    }
+                });
+                runActors(actors);
+                long lost = total - Highway.getDistance();
+                String counted = lost == 0 ? "all km counted" : lost > 0 ? "km lost" : "km counted twice";
+                return counted + ", " + reading[0];
+            }
+
+            @Override
+            Grade grade(String outcome) {
+                if (outcome.equals("all km counted, reads never went down")) {
+                    return Grade.ACCEPTABLE;
+                }
+                if (mode == CounterMode.UNSAFE && outcome.startsWith("km lost")) {
+                    return outcome.endsWith("above the total") ? Grade.FORBIDDEN : Grade.INTERESTING;
+                }
+                if (mode == CounterMode.UNSAFE && outcome.equals("all km counted, a read went down")) {
+                    return Grade.INTERESTING;
+                }
+                return Grade.FORBIDDEN;
+            }
+        };
+    }
+
+    //Every counter of one vehicle is changed from several threads at once: movers drive exactly 1 l worth of km at a
+    //time, refuellers add 1 l, loaders load and unload 1 kg and boarders board and disembark 1 passenger (a car
+    //has room for 5, so many boardings are refused). Nothing may be lost: at the end the fuel has to be the start
+    //plus the refuels minus the trips, the mileage the trips, and the cargo and the passengers what the calls that
+    //went through added up to
+    private static Test countersTest(Supplier<Vehicle> factory) {
+        int perActor = 2_000;
+        String type = factory.get().getClass().getSimpleName();
+        return new Test("counters " + type, "move, refuel, cargo and passengers of one " + type + " from several threads") {
+            @Override
+            String round(int threads, SplittableRandom random) throws Exception {
+                Vehicle v = factory.get();
+                FuelConsumable tank = (FuelConsumable) v;
+                double startFuel = 3;
+                tank.refuel(startFuel);
+                //a trip of this many km burns exactly 1 l
+                double trip = v.calculateFuelEfficiency();
+                AtomicLong trips = new AtomicLong();
+                AtomicLong refuels = new AtomicLong();
+                AtomicLong cargo = new AtomicLong();
+                AtomicLong passengers = new AtomicLong();
+                List<Runnable> actors = new ArrayList<>();
+                for (int a = 0; a < threads; a++) {
+                    int role = a % 4;
+                    if (role == 2 && v instanceof CargoCarrier cc) {
+                        actors.add(() -> {
+                            for (int i = 0; i < perActor; i++) {
+                                try {
+                                    cc.loadCargo(1);
+                                    cargo.incrementAndGet();
+                                    cc.unloadCargo(1);
+                                    cargo.decrementAndGet();
+                                } catch (Exception e) {
+                                    throw new IllegalStateException(e);
+                                }
+                            }
+                        });
+                    } else if (role == 3 && v instanceof PassengerCarrier pc) {
+                        actors.add(() -> {
+                            for (int i = 0; i < perActor; i++) {
+                                try {
+                                    pc.boardPassengers(1);
+                                    passengers.incrementAndGet();
+                                } catch (Exception e) {
+                                    //full
+                                }
+                                try {
+                                    pc.disembarkPassengers(1);
+                                    passengers.decrementAndGet();
+                                } catch (Exception e) {
+                                    //nobody on board
+                                }
+                            }
+                        });
+                    } else if (role == 1) {
+                        actors.add(() -> {
+                            for (int i = 0; i < perActor; i++) {
+                                try {
+                                    tank.refuel(1);
+                                    refuels.incrementAndGet();
+                                } catch (Exception e) {
+                                    throw new IllegalStateException(e);
+                                }
+                            }
+                        });
+                    } else {
+                        actors.add(() -> {
+                            for (int i = 0; i < perActor; i++) {
+                                try {
+                                    v.move(trip);
+                                    trips.incrementAndGet();
+                                } catch (Exception e) {
+                                    //out of fuel, a refueller will be along
+                                }
+                            }
+                        });
+                    }
+                }
+                runActors(actors);
+
+                if (tank.getFuelLevel() != startFuel + refuels.get() - trips.get()) {
+                    return "fuel does not add up";
+                }
+                if (v.getCurrentMileage() != trips.get() * trip) {
+                    return "mileage does not add up";
+                }
+                if (v instanceof CargoCarrier cc && cc.getCurrentCargo() != cargo.get()) {
+                    return "cargo does not add up";
+                }
+                if (v instanceof PassengerCarrier pc && pc.getCurrentPassengers() != passengers.get()) {
+                    return "passengers do not add up";
+                }
+                return "every update counted";
+            }
+
+            @Override
+            Grade grade(String outcome) {
+                return outcome.equals("every update counted") ? Grade.ACCEPTABLE : Grade.FORBIDDEN;
+            }
+        };
+    }
+
+    //One loader keeps moving the cargo of a truck across half of its capacity, which changes its fuel efficiency and
+    //so its range, while readers keep querying two range indices that both hold the truck. A change only tells the
+    //indices when the truck is not marked as changed already (see Vehicle.notifyRangeChanged), and the first index
+    //that picks the change up clears the mark for both, so at the end both have to have the truck at its final range.
+    //The truck yields while it computes its efficiency, so the loader gets in between even on a single CPU
+    private static Test cargoRangeTest() {
+        //odd, so the truck ends up loaded and its final range is not the one the indices started with
+        int changes = 2_001;
+        return new Test("cargo range", "a loader moves a truck's cargo across half capacity, readers query two range indices") {
+            @Override
+            String round(int threads, SplittableRandom random) throws Exception {
+                Truck truck = new Truck("STRESS", "Stress Truck", 90, 6) {
+                    @Override
+                    public double calculateFuelEfficiency(double cargoLoad) {
+                        double efficiency = super.calculateFuelEfficiency(cargoLoad);
+                        Thread.yield();
+                        return efficiency;
+                    }
+                };
+                truck.refuel(100);
+                RangeIndex[] indices = {new RangeIndex(), new RangeIndex()};
+                for (RangeIndex index : indices) {
+                    index.update(truck);
+                }
+                double heavy = truck.getCargoCapacity() * 0.6;
+                AtomicBoolean done = new AtomicBoolean();
+                List<Runnable> actors = new ArrayList<>();
+                actors.add(() -> {
+                    try {
+                        for (int i = 0; i < changes; i++) {
+                            if (i % 2 == 0) {
+                                truck.loadCargo(heavy);
+                            } else {
+                                truck.unloadCargo(heavy);
+                            }
+                            Thread.yield();
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        done.set(true);
+                    }
+                });
+                for (int r = 0; r < threads - 1; r++) {
+                    RangeIndex index = indices[r % 2];
+                    actors.add(() -> {
+                        long seen = 0;
+                        while (!done.get()) {
+                            seen += index.countAtLeast(0);
+                            Thread.yield();
+                        }
+                        if (seen < 0) {
+                            throw new IllegalStateException();
+                        }
+                    });
+                }
+                runActors(actors);
+                double range = truck.getRemainingRange();
+                for (RangeIndex index : indices) {
+                    if (index.countAtLeast(range) != 1 || index.countAtLeast(Math.nextUp(range)) != 0) {
+                        return "an index kept an old range";
+                    }
+                }
+                return "both indices have the final range";
+            }
+
+            @Override
+            Grade grade(String outcome) {
+                return outcome.equals("both indices have the final range") ? Grade.ACCEPTABLE : Grade.FORBIDDEN;
+            }
+        };
+    }
+
+    //Refuellers add 1 l at a time and drivers drive 15 km (exactly 1 l for a car) at a time on the same car, which
+    //starts with only a little fuel so the drivers keep running into an empty tank. At the end the fuel has to
+    //be the start plus the refuels minus the trips that were made, the mileage has to match the trips, the fuel can
+    //never have been seen below 0 and the range index of the fleet has to have the car at its final range
+    //Drivers move their own vehicles around a small circular SegmentedHighway that has room for fewer vehicles than
+    //there are, so they keep fighting over the same lanes. Now and then a vehicle pulls over (out of fuel) or takes a
+    //drive back (the vehicle could not move after all), like SegmentedHighwayStepHandler does. A reader checks that
+    //no lane is ever over its capacity or below 0. At the end every segment has to hold the vehicles that came in
+    //minus the ones that left, and all of them together the vehicles that hold a lane: no place may be lost or kept
+    private static Test segmentedRoadTest() {
+        int perActor = 5_000;
+        int segments = 4;
+        int lanes = 2;
+        int perLane = 3;
+        return new Test("segmented road", "drivers share a " + segments + " segment road with " + lanes * perLane
+                + " places per segment, pulling over and taking drives back, one reader checks the lanes") {
+            @Override
+            String round(int threads, SplittableRandom random) throws Exception {
+                SegmentedHighway road = new SegmentedHighway(segments, 1, lanes, perLane, true);
+                int drivers = threads - 1;
+                int perDriver = 2 * segments * lanes * perLane / drivers + 1;
+                List<SegmentedHighway.Position> positions = new ArrayList<>();
+                AtomicBoolean done = new AtomicBoolean();
+                AtomicLong driversLeft = new AtomicLong(drivers);
+                String[] lanesSeen = {"lanes stayed within capacity"};
+                List<Runnable> actors = new ArrayList<>();
+                for (int d = 0; d < drivers; d++) {
+                    List<SegmentedHighway.Position> own = new ArrayList<>();
+                    for (int i = 0; i < perDriver; i++) {
+                        own.add(new SegmentedHighway.Position());
+                    }
+                    positions.addAll(own);
+                    SplittableRandom driverRandom = random.split();
+                    actors.add(() -> {
+                        for (int i = 0; i < perActor; i++) {
+                            SegmentedHighway.Position p = own.get(i % own.size());
+                            int segment = p.getSegment();
+                            double progress = p.getProgress();
+                            road.drive(p, 0.1 + driverRandom.nextDouble(2.5));
+                            int action = driverRandom.nextInt(20);
+                            if (action == 0) {
+                                road.pullOver(p);
+                            } else if (action == 1) {
+                                road.pullOver(p, segment, progress);
+                            }
+                        }
+                        if (driversLeft.decrementAndGet() == 0) {
+                            done.set(true);
+                        }
+                    });
+                }
+                actors.add(() -> {
+                    while (!done.get()) {
+                        for (int s = 0; s < segments; s++) {
+                            for (int l = 0; l < lanes; l++) {
+                                int occupancy = road.getLaneOccupancy(s, l);
+                                if (occupancy > perLane || occupancy < 0) {
+                                    lanesSeen[0] = "a lane held " + occupancy + " vehicles";
+                                }
+                            }
+                        }
+                        Thread.onSpinWait();
+                    }
+                });
+                runActors(actors);
+
+                int onRoad = 0;
+                for (SegmentedHighway.Position p : positions) {
+                    if (p.isOnRoad()) {
+                        onRoad++;
+                    }
+                }
+                int occupancy = 0;
+                for (SegmentedHighway.SegmentStats stats : road.getAllStats()) {
+                    if (stats.entered - stats.exited != stats.occupancy) {
+                        return "segment counters dont match its occupancy, " + lanesSeen[0];
+                    }
+                    occupancy += stats.occupancy;
+                }
+                if (occupancy != onRoad) {
+                    return (occupancy > onRoad ? "places kept by vehicles that left" : "vehicles without a place")
+                            + ", " + lanesSeen[0];
+                }
+                return "places match the vehicles on the road, " + lanesSeen[0];
+            }
+
+            @Override
+            Grade grade(String outcome) {
+                return outcome.equals("places match the vehicles on the road, lanes stayed within capacity")
+                        ? Grade.ACCEPTABLE : Grade.FORBIDDEN;
+            }
+        };
+    }
+
+    private static Test sharedVehicleTest() {
+        int perActor = 2_000;
+        return new Test("shared vehicle", "refuel(1) and move(15) on one car from several threads, a reader checks the fuel") {
+            @Override
+            String round(int threads, SplittableRandom random) throws Exception {
+                Car car = new Car("STRESS", "Stress Car", 120);
+                FleetManager fleet = new FleetManager();
+                fleet.addVehicle(car);
+                double startFuel = 3;
+                car.setFuelLevel(startFuel);
+                double efficiency = car.getFuelEfficiency();
+                int drivers = (threads - 1) / 2;
+                int refuellers = threads - 1 - drivers;
+                AtomicLong trips = new AtomicLong();
+                AtomicBoolean done = new AtomicBoolean();
+                AtomicLong actorsLeft = new AtomicLong(threads - 1);
+                boolean[] negative = {false};
+                List<Runnable> actors = new ArrayList<>();
+                for (int d = 0; d < drivers; d++) {
+                    actors.add(() -> {
+                        for (int i = 0; i < perActor; i++) {
+                            try {
+                                car.move(efficiency);
+                                trips.incrementAndGet();
+                            } catch (Exception e) {
+                                //out of fuel, a refueller will be along
+                            }
+                        }
+                        if (actorsLeft.decrementAndGet() == 0) {
+                            done.set(true);
+                        }
+                    });
+                }
+                for (int r = 0; r < refuellers; r++) {
+                    actors.add(() -> {
+                        for (int i = 0; i < perActor; i++) {
+                            try {
+                                car.refuel(1);
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                        if (actorsLeft.decrementAndGet() == 0) {
+                            done.set(true);
+                        }
+                    });
+                }
+                actors.add(() -> {
+                    while (!done.get()) {
+                        if (car.getFuelLevel() < 0) {
+                            negative[0] = true;
+                        }
+                        Thread.onSpinWait();
+                    }
+                });
+                runActors(actors);
+
+                if (negative[0]) {
+                    return "fuel was seen below 0";
+                }
+                double expectedFuel = startFuel + (double) refuellers * perActor - trips.get();
+                if (car.getFuelLevel() != expectedFuel) {
+                    return "fuel does not add up";
+                }
+                if (car.getCurrentMileage() != trips.get() * efficiency) {
+                    return "mileage does not add up";
+                }
+                double range = car.getRemainingRange();
+                if (!fleet.getVehiclesWithRangeBetween(range, range).contains(car)) {
+                    return "range index is stale";
+                }
+                return trips.get() == (long) drivers * perActor ? "consistent, every trip made"
+                        : "consistent, some trips found the tank empty";
+            }
+
+            @Override
+            Grade grade(String outcome) {
+                return outcome.startsWith("consistent") ? Grade.ACCEPTABLE : Grade.FORBIDDEN;
+            }
+        };
+    }
+
+    //One thread owns the FleetManager (like the CLI or the GUI thread) and keeps removing vehicles and adding them
+    //back, while the other threads move and refuel the same vehicles, so their fuel changes reach the range index
+    //of the fleet at the same time as the removals and additions. At the end the range index has to hold exactly
+    //the vehicles of the fleet, each at its current range
+    private static Test fleetTest() {
+        int vehicles = 32;
+        int mutations = 400;
+        int perMover = 5_000;
+        return new Test("fleet mutations", "remove/add on the fleet thread while movers move and refuel its vehicles") {
+            @Override
+            String round(int threads, SplittableRandom random) throws Exception {
+                FleetManager fleet = new FleetManager();
+                Vehicle[] all = new Vehicle[vehicles];
+                for (int i = 0; i < vehicles; i++) {
+                    Vehicle v = i % 2 == 0 ? new Car("C" + i, "Stress Car", 120) : new Truck("T" + i, "Stress Truck", 90, 6);
+                    if (v instanceof Car c) {
+                        c.setFuelLevel(1000);
+                    } else {
+                        ((Truck) v).setFuelLevel(1000);
+                    }
+                    all[i] = v;
+                    fleet.addVehicle(v);
+                }
+                long seed = random.nextLong();
+                List<Runnable> actors = new ArrayList<>();
+                actors.add(() -> {
+                    SplittableRandom r = new SplittableRandom(seed);
+                    boolean[] removed = new boolean[vehicles];
+                    try {
+                        for (int i = 0; i < mutations; i++) {
+                            int k = r.nextInt(vehicles);
+                            if (removed[k]) {
+                                fleet.addVehicle(all[k]);
+                            } else {
+                                fleet.removeVehicle(all[k].getId());
+                            }
+                            removed[k] = !removed[k];
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                for (int m = 0; m < threads - 1; m++) {
+                    long moverSeed = seed + m + 1;
+                    actors.add(() -> {
+                        SplittableRandom r = new SplittableRandom(moverSeed);
+                        for (int i = 0; i < perMover; i++) {
+                            Vehicle v = all[r.nextInt(vehicles)];
+                            try {
+                                if (r.nextInt(4) == 0) {
+                                    if (v instanceof Car c) {
+                                        c.refuel(1);
+                                    } else {
+                                        ((Truck) v).refuel(1);
+                                    }
+                                } else {
+                                    v.move(1);
+                                }
+                            } catch (Exception e) {
+                                //out of fuel
+                            }
+                        }
+                    });
+                }
+                runActors(actors);
+
+                List<Vehicle> inFleet = fleet.getVehicles();
+                Set<Vehicle> indexed = Collections.newSetFromMap(new IdentityHashMap<>());
+                indexed.addAll(fleet.getTopVehiclesByRange(Integer.MAX_VALUE));
+                Set<Vehicle> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+                expected.addAll(inFleet);
+                for (Vehicle v : indexed) {
+                    if (!expected.contains(v)) {
+                        return "range index has a removed vehicle";
+                    }
+                }
+                if (indexed.size() != expected.size()) {
+                    return "range index is missing a vehicle";
+                }
+                for (Vehicle v : inFleet) {
+                    double range = v.getRemainingRange();
+                    if (!fleet.getVehiclesWithRangeBetween(range, range).contains(v)) {
+                        return "range index is stale";
+                    }
+                }
+                return "range index matches the fleet";
+            }
+
+            @Override
+            Grade grade(String outcome) {
+                return outcome.equals("range index matches the fleet") ? Grade.ACCEPTABLE : Grade.FORBIDDEN;
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package simulation;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+//This measures every Highway counter mode with N writer threads that add 1 km as fast as they can
+//It prints the throughput (updates per second) and how many updates were lost
+//Usage: java -cp ../bin simulation.CounterBenchmark [maxThreads] [millisPerRun]
+public class CounterBenchmark{
+
+    //the result of one run
+    public static class Result{
+        public final CounterMode mode;
+        public final int writers;
+        public final long attempted;
+        public final long counted;
+        public final double seconds;
+
+        Result(CounterMode mode,int writers,long attempted,long counted,double seconds){
+            this.mode=mode;
+            this.writers=writers;
+            this.attempted=attempted;
+            this.counted=counted;
+            this.seconds=seconds;
+        }
+
+        public double getThroughput(){
+            return attempted/seconds;
+        }
+
+        public long getLostUpdates(){
+            return attempted-counted;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException{
+        int maxThreads=args.length>0?Integer.parseInt(args[0]):Runtime.getRuntime().availableProcessors()*2;
+        long millis=args.length>1?Long.parseLong(args[1]):1000;
+
+        System.out.printf("%-30s %8s %16s %14s%n","mode","writers","updates/s","lost updates");
+        for(CounterMode mode:CounterMode.values()){
+            for(int writers=1;writers<=maxThreads;writers*=2){
+                Result r=measure(mode,writers,millis);
+                System.out.printf("%-30s %8d %16.0f %14d%n",mode.getLabel(),writers,r.getThroughput(),r.getLostUpdates());
+            }
+        }
+    }
+
+    //runs the writers for the given time and checks the counter against what they really added
+    public static Result measure(CounterMode mode,int writers,long millis) throws InterruptedException{
+        Highway.reset();
+        LongAdder attempted=new LongAdder();
+        CountDownLatch start=new CountDownLatch(1);
+        Thread[] threads=new Thread[writers];
+        long[] deadline=new long[1];
+        for(int i=0;i<writers;i++){
+            threads[i]=new Thread(()->{
+                try{
+                    start.await();
+                }
+                catch(InterruptedException e){
+                    return;
+                }
+                long done=0;
+                while(System.nanoTime()<deadline[0]){
+                    Highway.addDistance(mode,1);
+                    done++;
+                }
+                attempted.add(done);
+                Highway.flushThreadLocal();
+            });
+            threads[i].start();
+        }
+        long begin=System.nanoTime();
+        deadline[0]=begin+millis*1_000_000L;
+        start.countDown();
+        for(Thread t:threads){
+            t.join();
+        }
+        double seconds=(System.nanoTime()-begin)/1e9;
+        return new Result(mode,writers,attempted.sum(),Highway.getDistance(),seconds);
+    }
+}
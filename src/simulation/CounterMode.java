@@ -0,0 +1,31 @@
+package simulation;
+
+//The different ways the Highway counter can be updated, from the broken demo to the most scalable
+public enum CounterMode{
+    //racy read-sleep-write, loses updates on purpose for the demo
+    UNSAFE("Unsafe (race condition)"),
+    //one lock around the read-modify-write, every thread waits for the same lock
+    LOCKED("Lock (fix race condition)"),
+    //one AtomicLong updated with compare-and-set, no lock but all threads fight over one cache line
+    ATOMIC("AtomicLong CAS"),
+    //LongAdder spreads the updates over several cells, the cells are added up when the total is read
+    STRIPED("LongAdder striping"),
+    //every thread counts on its own and publishes its count every few updates
+    PER_THREAD("Per-thread + periodic merge");
+
+    private final String label;
+
+    CounterMode(String label){
+        this.label=label;
+    }
+
+    public String getLabel(){
+        return label;
+    }
+
+    //used by the JComboBox in the GUI
+    @Override
+    public String toString(){
+        return label;
+    }
+}
@@ -0,0 +1,366 @@
+package simulation;
+
+import Exceptions.InvalidOperationException;
+import Interfaces.CargoCarrier;
+import Interfaces.FuelConsumable;
+import Interfaces.PassengerCarrier;
+import Vehicles.Bus;
+import Vehicles.Car;
+import Vehicles.CargoShip;
+import Vehicles.Truck;
+import Vehicles.Vehicle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//This is a reproducible version of the VehicleTask simulation for chasing performance regressions
+//There is no wall clock and no threads: a logical clock counts ticks, every tick the vehicles are stepped in
+//fleet order, and the "user" (pausing, resuming, refuelling empty vehicles) is a Random built from the seed.
+//Every change of state is written to a small binary log, and replay() applies that log to a fresh copy
+//of the fleet as fast as it can, without deciding anything itself, and checks it ends in the same state
+//Usage: java -cp ../bin simulation.DeterministicSimulation [vehicles] [ticks] [seed]
+public class DeterministicSimulation {
+
+    private static final int MAGIC = 0x46534C31; //"FSL1"
+    private static final int VERSION = 1;
+
+    //event codes in the log, the vehicle index and the refuel amount are written as varints after the code
+    private static final int TICK = 0;
+    private static final int MOVE = 1;
+    private static final int OUT_OF_FUEL = 2;
+    private static final int REFUEL = 3;
+    private static final int PAUSE = 4;
+    private static final int RESUME = 5;
+    private static final int END = 6;
+
+    //chances (per 1000, per vehicle and tick) of the simulated user doing something
+    private static final int REFUEL_CHANCE = 50;
+    private static final int RESUME_CHANCE = 100;
+    private static final int PAUSE_CHANCE = 5;
+    private static final int MAX_REFUEL_LITRES = 20;
+
+    //the counter mode used for the Highway distance, there is only one thread so any exact mode works
+    private static final CounterMode COUNTER = CounterMode.ATOMIC;
+
+    //what a recording or a replay ended with
+    public static class Result {
+        public final long ticks;
+        public final long events;
+        public final long highwayDistance;
+        public final long stateDigest;
+        public final double seconds;
+        //for a replay: whether the distance and the vehicle states are the ones the log was recorded with
+        public final boolean matchesRecording;
+
+        Result(long ticks, long events, long highwayDistance, long stateDigest, double seconds, boolean matchesRecording) {
+            this.ticks = ticks;
+            this.events = events;
+            this.highwayDistance = highwayDistance;
+            this.stateDigest = stateDigest;
+            this.seconds = seconds;
+            this.matchesRecording = matchesRecording;
+        }
+    }
+
+    private final List<Vehicle> vehicles;
+    private final long seed;
+    //the logical clock
+    private long tick;
+
+    public DeterministicSimulation(List<Vehicle> vehicles, long seed) {
+        this.vehicles = new ArrayList<>(vehicles);
+        this.seed = seed;
+        this.tick = 0;
+    }
+
+    public long getTick() {
+        return this.tick;
+    }
+
+    //runs the simulation for the given number of ticks and writes every event to the log
+    public Result record(long ticks, OutputStream log) throws IOException {
+        long begin = System.nanoTime();
+        Highway.reset();
+        Random random = new Random(seed);
+        int n = vehicles.size();
+        boolean[] paused = new boolean[n];
+        boolean[] outOfFuel = new boolean[n];
+        long events = 0;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(log));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(seed);
+        writeVarLong(out, n);
+        out.writeLong(stateDigest(vehicles));
+
+        for (long t = 0; t < ticks; t++) {
+            out.writeByte(TICK);
+            for (int i = 0; i < n; i++) {
+                Vehicle v = vehicles.get(i);
+                int roll = random.nextInt(1000);
+
+                //what the user does first, the same things the GUI buttons do
+                if (outOfFuel[i]) {
+                    if (roll < REFUEL_CHANCE && v instanceof FuelConsumable fc) {
+                        int litres = 1 + random.nextInt(MAX_REFUEL_LITRES);
+                        try {
+                            fc.refuel(litres);
+                            writeEvent(out, REFUEL, i);
+                            writeVarLong(out, litres);
+                            outOfFuel[i] = false;
+                            paused[i] = false;
+                            events++;
+                        } catch (InvalidOperationException e) {
+                            //a sailing ship cant be refuelled, it stays where it is like in the GUI
+                        }
+                    }
+                } else if (paused[i]) {
+                    if (roll < RESUME_CHANCE) {
+                        writeEvent(out, RESUME, i);
+                        paused[i] = false;
+                        events++;
+                    }
+                } else if (roll < PAUSE_CHANCE) {
+                    writeEvent(out, PAUSE, i);
+                    paused[i] = true;
+                    events++;
+                }
+
+                if (paused[i] || outOfFuel[i]) {
+                    continue;
+                }
+
+                //then the same step as VehicleTask.run()
+                if (!hasFuelForOneKm(v)) {
+                    writeEvent(out, OUT_OF_FUEL, i);
+                    outOfFuel[i] = true;
+                    events++;
+                    continue;
+                }
+                try {
+                    v.move(1);
+                } catch (Exception e) {
+                    writeEvent(out, OUT_OF_FUEL, i);
+                    outOfFuel[i] = true;
+                    events++;
+                    continue;
+                }
+                Highway.addDistance(COUNTER, 1);
+                writeEvent(out, MOVE, i);
+                events++;
+            }
+            tick++;
+        }
+
+        long distance = Highway.getDistance();
+        long digest = stateDigest(vehicles);
+        out.writeByte(END);
+        writeVarLong(out, ticks);
+        out.writeLong(distance);
+        out.writeLong(digest);
+        out.flush();
+        return new Result(ticks, events, distance, digest, (System.nanoTime() - begin) / 1e9, true);
+    }
+
+    //applies a recorded log to the fleet (which must be in the state the recording started from)
+    //nothing is decided here, the moves and refuels are taken from the log, and there is no sleeping
+    public static Result replay(InputStream log, List<Vehicle> fleet) throws IOException {
+        long begin = System.nanoTime();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(log));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Not a simulation log.");
+        }
+        in.readLong(); //the seed, only needed to record
+        long n = readVarLong(in);
+        if (n != fleet.size()) {
+            throw new IOException("The log was recorded with " + n + " vehicles, the fleet has " + fleet.size() + ".");
+        }
+        if (in.readLong() != stateDigest(fleet)) {
+            throw new IOException("The fleet is not in the state the log was recorded from.");
+        }
+
+        Highway.reset();
+        long ticks = 0;
+        long events = 0;
+        while (true) {
+            int code = in.readUnsignedByte();
+            if (code == TICK) {
+                ticks++;
+                continue;
+            }
+            if (code == END) {
+                break;
+            }
+            int index = (int) readVarLong(in);
+            Vehicle v = fleet.get(index);
+            events++;
+            switch (code) {
+                case MOVE:
+                    try {
+                        v.move(1);
+                    } catch (Exception e) {
+                        throw new IOException("Replay diverged at tick " + ticks + ": " + v.getId() + " could not move.", e);
+                    }
+                    Highway.addDistance(COUNTER, 1);
+                    break;
+                case REFUEL:
+                    long litres = readVarLong(in);
+                    try {
+                        ((FuelConsumable) v).refuel(litres);
+                    } catch (Exception e) {
+                        throw new IOException("Replay diverged at tick " + ticks + ": " + v.getId() + " could not refuel.", e);
+                    }
+                    break;
+                case OUT_OF_FUEL:
+                case PAUSE:
+                case RESUME:
+                    //these dont change the vehicle itself, they only explain why it stopped or started moving
+                    break;
+                default:
+                    throw new IOException("Unknown event " + code + " in the log.");
+            }
+        }
+
+        long recordedTicks = readVarLong(in);
+        long recordedDistance = in.readLong();
+        long recordedDigest = in.readLong();
+        long distance = Highway.getDistance();
+        long digest = stateDigest(fleet);
+        boolean matches = recordedTicks == ticks && recordedDistance == distance && recordedDigest == digest;
+        return new Result(ticks, events, distance, digest, (System.nanoTime() - begin) / 1e9, matches);
+    }
+
+    //the same check as VehicleTask: is there enough fuel for 1 km
+    private static boolean hasFuelForOneKm(Vehicle v) {
+        if (!(v instanceof FuelConsumable fc)) {
+            return true;
+        }
+        double fuel = fc.getFuelLevel();
+        double efficiency = v.getFuelEfficiency();
+        double fuelNeeded = (efficiency > 0) ? (1.0 / efficiency) : 0;
+        return !(fuel <= 0.0001 || (fuelNeeded > 0 && fuel < fuelNeeded));
+    }
+
+    //a hash of everything a move or a refuel can change, two fleets with the same digest are in the same state
+    public static long stateDigest(List<Vehicle> fleet) {
+        long h = 0xcbf29ce484222325L;
+        for (Vehicle v : fleet) {
+            h = mix(h, v.getId().hashCode());
+            h = mix(h, Double.doubleToLongBits(v.getCurrentMileage()));
+            if (v instanceof FuelConsumable fc) {
+                h = mix(h, Double.doubleToLongBits(fc.getFuelLevel()));
+                h = mix(h, Double.doubleToLongBits(fc.getLastFueledAt()));
+            }
+            if (v instanceof CargoCarrier cc) {
+                h = mix(h, Double.doubleToLongBits(cc.getCurrentCargo()));
+            }
+            if (v instanceof PassengerCarrier pc) {
+                h = mix(h, pc.getCurrentPassengers());
+            }
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        h ^= value;
+        h *= 0x100000001b3L;
+        return h ^ (h >>> 29);
+    }
+
+    private static void writeEvent(DataOutputStream out, int code, int index) throws IOException {
+        out.writeByte(code);
+        writeVarLong(out, index);
+    }
+
+    //7 bits per byte, small numbers (most vehicle indices) take one or two bytes
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Bad varint in the log.");
+    }
+
+    //builds the same mixed fleet every time for the same seed
+    public static List<Vehicle> buildFleet(int count, long seed) {
+        Random random = new Random(seed);
+        List<Vehicle> fleet = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Vehicle v;
+            double fuel;
+            switch (random.nextInt(4)) {
+                case 0:
+                    v = new Car("C" + i, "Sim", 120);
+                    fuel = random.nextInt(10);
+                    break;
+                case 1:
+                    v = new Truck("T" + i, "Sim", 90, 6);
+                    fuel = random.nextInt(20);
+                    break;
+                case 2:
+                    v = new Bus("B" + i, "Sim", 80, 6);
+                    fuel = random.nextInt(20);
+                    break;
+                default:
+                    v = new CargoShip("S" + i, "Sim", 40, random.nextBoolean());
+                    fuel = random.nextInt(30);
+                    break;
+            }
+            if (fuel > 0 && v instanceof FuelConsumable fc && !(v instanceof CargoShip ship && ship.getHasSail())) {
+                try {
+                    fc.refuel(fuel);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            fleet.add(v);
+        }
+        return fleet;
+    }
+
+    //records a run, replays it on a second copy of the fleet and exits with 1 if they dont end the same way
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long ticks = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        Vehicle.setMoveLogging(false);
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Result recorded = new DeterministicSimulation(buildFleet(count, seed), seed).record(ticks, log);
+        Result replayed = replay(new ByteArrayInputStream(log.toByteArray()), buildFleet(count, seed));
+
+        System.out.printf("recorded: %d ticks, %d events, highway %d km, %.3f s, log %d bytes%n",
+                recorded.ticks, recorded.events, recorded.highwayDistance, recorded.seconds, log.size());
+        System.out.printf("replayed: %d ticks, %d events, highway %d km, %.3f s%n",
+                replayed.ticks, replayed.events, replayed.highwayDistance, replayed.seconds);
+        if (!replayed.matchesRecording || replayed.stateDigest != recorded.stateDigest) {
+            System.out.println("MISMATCH: the replay did not end in the recorded state");
+            System.exit(1);
+        }
+        System.out.println("OK: same highway distance and vehicle states");
+    }
+}
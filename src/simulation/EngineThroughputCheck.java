@@ -0,0 +1,116 @@
+package simulation;
+
+import Exceptions.InvalidOperationException;
+import Interfaces.FuelConsumable;
+import Management.FleetGenerator;
+import Management.FleetManager;
+import Vehicles.Vehicle;
+import Vehicles.WaterVehicle;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+//Checks that keeping the vehicles in a FleetManager does not slow the simulation engine down
+//A vehicle in a fleet tells the fleet's range index about every fuel change, on the worker thread that moved it.
+//The same generated fleet is run on the SimulationEngine twice, once as plain vehicles and once inside a
+//FleetManager, and the steps/s of the two are compared. The runs alternate and the best of each counts, so a GC
+//or a JIT pause in one of them does not decide the result. Exits with 1 when the fleet's vehicles reach less than
+//--min-ratio of the plain steps/s
+//Usage: java -cp ../bin simulation.EngineThroughputCheck [--vehicles 200000] [--ticks 20] [--runs 3]
+//           [--threads N] [--min-ratio 0.8]
+public class EngineThroughputCheck {
+
+    private static final long SEED = 42;
+    private static final int WARMUP_TICKS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int vehicles = 200_000;
+        int ticks = 20;
+        int runs = 3;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double minRatio = 0.8;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles": vehicles = Integer.parseInt(args[++i]); break;
+                case "--ticks": ticks = Integer.parseInt(args[++i]); break;
+                case "--runs": runs = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--min-ratio": minRatio = Double.parseDouble(args[++i]); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Vehicle.setMoveLogging(false);
+        FleetGenerator.Profile profile = new FleetGenerator.Profile();
+        profile.seed = SEED;
+        //the plain vehicles are put in a fleet of their own too and the fleet is dropped, so both lists are laid
+        //out the same in memory (a fleet's vehicles sit between their id set entries and index nodes). Until the
+        //dropped fleet is collected its index hears about the first change of a plain vehicle, none after it
+        List<Vehicle> plain = fuelled(newManager(vehicles, profile).getVehicles());
+        FleetManager manager = newManager(vehicles, profile);
+        List<Vehicle> inFleet = fuelled(manager.getVehicles());
+
+        System.out.printf("%d vehicles, %d threads, best of %d runs of %d ticks%n", vehicles, threads, runs, ticks);
+        double bestPlain = 0;
+        double bestFleet = 0;
+        for (int r = 0; r < runs; r++) {
+            bestPlain = Math.max(bestPlain, stepsPerSecond(plain, threads, ticks));
+            bestFleet = Math.max(bestFleet, stepsPerSecond(inFleet, threads, ticks));
+        }
+        double ratio = bestFleet / bestPlain;
+        System.out.printf("%-28s %14.0f steps/s%n", "plain vehicles", bestPlain);
+        System.out.printf("%-28s %14.0f steps/s%n", "vehicles in a FleetManager", bestFleet);
+        System.out.printf("ratio %.2f (at least %.2f)%n", ratio, minRatio);
+        //the fleet has to give the right answer afterwards too
+        int able = manager.countVehiclesAbleToCover(0);
+        if (able != manager.getVehicles().size()) {
+            System.out.println("FAILED: the range index holds " + able + " of " + manager.getVehicles().size() + " vehicles.");
+            System.exit(1);
+        }
+        if (ratio < minRatio) {
+            System.out.println("FAILED: the fleet's range index slows the engine down.");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    //enough fuel for every tick of every run, through refuel() so the fleet's index hears about it (sailing ships
+    //dont use fuel)
+    private static List<Vehicle> fuelled(List<Vehicle> vehicles) throws InvalidOperationException {
+        for (Vehicle v : vehicles) {
+            if (v instanceof FuelConsumable fc && !(v instanceof WaterVehicle w && w.getHasSail())) {
+                fc.refuel(1_000_000);
+            }
+        }
+        return vehicles;
+    }
+
+    private static FleetManager newManager(int size, FleetGenerator.Profile profile) throws InvalidOperationException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            FleetManager manager = new FleetManager();
+            new FleetGenerator(size, profile).addTo(manager);
+            return manager;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static double stepsPerSecond(List<Vehicle> vehicles, int threads, int ticks) {
+        int batchSize = Math.max(1, Math.min(4096, (vehicles.size() + threads - 1) / threads));
+        SimulationEngine engine = new SimulationEngine(vehicles, new HighwayStepHandler(CounterMode.ATOMIC), threads, batchSize);
+        try {
+            engine.runTicks(WARMUP_TICKS);
+            long steps = engine.getTotalSteps();
+            long start = System.nanoTime();
+            engine.runTicks(ticks);
+            long nanos = System.nanoTime() - start;
+            return (engine.getTotalSteps() - steps) * 1e9 / nanos;
+        } finally {
+            engine.stop();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package simulation;
 
+import Management.FleetGenerator;
 import Management.FleetManager;
+import Management.LatencyHistogram;
 import Vehicles.*;
 import Interfaces.FuelConsumable;
 import javax.swing.*;
@@ -18,14 +20,57 @@ public class FleetSimulatorGUI extends JFrame{
     private List<Thread> threads;
     private boolean simulationRunning = false;
 
+    //Platform or virtual threads for the vehicle tasks, this is picked once when the program starts
+    private final ThreadMode threadMode;
+    //0 means the four demo vehicles, anything else builds a generated fleet of that size (for load testing the GUI)
+    private final int fleetSize;
+    //Most vehicles a generated fleet may run on platform threads, one thread each. ThreadModeBenchmark took 4.5 s
+    //to start 10k of them and ran out of native threads before 100k, bigger fleets need virtual threads
+    static final int MAX_PLATFORM_VEHICLES = 1000;
+
+    //How often the table and the distance label are refreshed from the tasks (about 20 frames per second)
+    private static final int FRAME_MILLIS = 50;
+
     // UI components that need to be accessed by different methods
     private JLabel lblTotalDistance;
-    private JCheckBox chkSync;
-    private JPanel pnlVehicles;
+    private JLabel lblMetrics;
+    private JComboBox<CounterMode> cmbCounter;
+    private JTable tblVehicles;
+    private VehicleTableModel tableModel;
     private Timer guiUpdateTimer;
 
+    //Live metrics: how long a vehicle step takes, how late the frame timer fires on the EDT,
+    //and the previous snapshot so steps/s can be shown as a current rate
+    private final LatencyHistogram stepLatency = new LatencyHistogram();
+    private final LatencyHistogram edtLag = new LatencyHistogram();
+    private long runStartNanos;
+    private long lastFrameNanos;
+    private int frames;
+    private SimulationMetrics previousMetrics;
+    //the metrics line is rebuilt every few frames so the numbers can be read
+    private static final int METRICS_EVERY_FRAMES = 10;
+
     public FleetSimulatorGUI(){
-        setTitle("Fleet Highway Simulator");
+        this(ThreadMode.PLATFORM);
+    }
+
+    public FleetSimulatorGUI(ThreadMode threadMode){
+        this(threadMode, 0);
+    }
+
+    public FleetSimulatorGUI(ThreadMode threadMode, int fleetSize){
+        if(threadMode==ThreadMode.PLATFORM && fleetSize>MAX_PLATFORM_VEHICLES){
+            throw new IllegalArgumentException("A fleet of "+fleetSize+" vehicles needs virtual threads, platform threads "
+                    +"are limited to "+MAX_PLATFORM_VEHICLES+" vehicles.");
+        }
+        this.threadMode = threadMode;
+        this.fleetSize = fleetSize;
+        if(fleetSize>0){
+            //every vehicle would print a line on every step, and System.out is synchronized, so the vehicle threads
+            //would spend the load test waiting for each other on the console
+            Vehicle.setMoveLogging(false);
+        }
+        setTitle("Fleet Highway Simulator (" + threadMode.name().toLowerCase() + " threads)");
 
         //Try to make the GUI look like a native Windows/Mac app instead of the old Java look
         try{
@@ -52,7 +97,9 @@ public class FleetSimulatorGUI extends JFrame{
         JButton btnResume = new JButton("Resume");
         JButton btnStop = new JButton("Stop");
         JButton btnRestart = new JButton("Restart");
-        chkSync = new JCheckBox("Fix Race Condition");// This toggles the synchronized block in Highway
+        JButton btnRefuel = new JButton("Refuel Selected (+10L)");
+        //This picks how Highway updates its counter, the first option is the race condition demo
+        cmbCounter = new JComboBox<>(CounterMode.values());
 
         //Hook up the buttons to their specific functions
         btnStart.addActionListener(e->startSimulation());
@@ -73,11 +120,12 @@ public class FleetSimulatorGUI extends JFrame{
         });
 
         btnRestart.addActionListener(e->performRestart());
+        btnRefuel.addActionListener(e->refuelSelected());
 
-        //If the checkbox is clicked while running, update the sync setting immediately
-        chkSync.addActionListener(e->{
-            boolean sync = chkSync.isSelected();
-            for(simulation.VehicleTask task : tasks) task.setUseSync(sync);
+        //If another counter is picked while running, switch every task to it immediately
+        cmbCounter.addActionListener(e->{
+            CounterMode mode = (CounterMode) cmbCounter.getSelectedItem();
+            for(simulation.VehicleTask task : tasks) task.setCounterMode(mode);
         });
 
         //Add everything to the top panel
@@ -86,30 +134,34 @@ public class FleetSimulatorGUI extends JFrame{
         topPanel.add(btnResume);
         topPanel.add(btnStop);
         topPanel.add(btnRestart);
-        topPanel.add(chkSync);
+        topPanel.add(btnRefuel);
+        topPanel.add(new JLabel("Counter:"));
+        topPanel.add(cmbCounter);
         add(topPanel, BorderLayout.NORTH);
 
         // --- Center Panel for Vehicle List ---
-        pnlVehicles = new JPanel();
-        // Using GridLayout to stack the vehicles vertically with a small gap
-        pnlVehicles.setLayout(new GridLayout(0,1,5,5));
-        pnlVehicles.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
+        // A JTable only paints the rows that are on screen, so it stays fast with thousands of vehicles
+        // (one JPanel with three components per vehicle made every layout pass touch the whole fleet)
+        tblVehicles = new JTable();
+        tblVehicles.setFillsViewportHeight(true);
+        tblVehicles.setRowHeight(24);
 
         // ScrollPane is needed in case we add too many vehicles for the window size
-        JScrollPane scrollPane = new JScrollPane(pnlVehicles);
+        JScrollPane scrollPane = new JScrollPane(tblVehicles);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
         add(scrollPane, BorderLayout.CENTER);
 
         //Bottom Panel for Stats
-        JPanel bottomPanel = new JPanel();
-        lblTotalDistance = new JLabel("Total Highway Distance: 0 km");
+        JPanel bottomPanel = new JPanel(new GridLayout(2,1));
+        lblTotalDistance = new JLabel("Total Highway Distance: 0 km", SwingConstants.CENTER);
         lblTotalDistance.setFont(new Font("Arial",Font.BOLD,18));
+        lblMetrics = new JLabel(" ", SwingConstants.CENTER);
         bottomPanel.add(lblTotalDistance);
+        bottomPanel.add(lblMetrics);
         add(bottomPanel, BorderLayout.SOUTH);
 
-        //Timer to refresh the total distance label every 100ms so it looks real-time
-        guiUpdateTimer = new Timer(100, e->{
-            lblTotalDistance.setText("Total Highway Distance: "+Highway.getDistance()+" km");
-        });
+        //One timer reads the state of every task once per frame, the tasks themselves never post to the EDT
+        guiUpdateTimer = new Timer(FRAME_MILLIS, e->refreshView());
 
         //Load the initial data
         performRestart();
@@ -122,20 +174,25 @@ public class FleetSimulatorGUI extends JFrame{
         Highway.reset(); //Reset the static counter
 
         fleetManager = new FleetManager();
-        tasks.clear();
-        pnlVehicles.removeAll(); //Clear the UI rows
+        tasks = new ArrayList<>();
 
         try {
-            //Adding a few hardcoded vehicles for the assignment demo
-            fleetManager.addVehicle(new Car("HR26","Honda City",120));
-            fleetManager.addVehicle(new Truck("HR20","Tata Safari",80,10));
-            fleetManager.addVehicle(new Bus("HR16","Volvo XC90",100,6));
-            fleetManager.addVehicle(new Car("HR56","Maruti 800",140));
-
-            //Give them a tiny bit of fuel to start (20L) so they don't die immediately
-            for(Vehicle v:fleetManager.searchByType(Vehicle.class)){
-                if(v instanceof FuelConsumable){
-                    ((FuelConsumable)v).refuel(20);
+            if(fleetSize>0){
+                //A big generated fleet to see how the GUI copes with load, the same one on every restart
+                new FleetGenerator(fleetSize,new FleetGenerator.Profile()).addTo(fleetManager);
+            }
+            else{
+                //Adding a few hardcoded vehicles for the assignment demo
+                fleetManager.addVehicle(new Car("HR26","Honda City",120));
+                fleetManager.addVehicle(new Truck("HR20","Tata Safari",80,10));
+                fleetManager.addVehicle(new Bus("HR16","Volvo XC90",100,6));
+                fleetManager.addVehicle(new Car("HR56","Maruti 800",140));
+
+                //Give them a tiny bit of fuel to start (20L) so they don't die immediately
+                for(Vehicle v:fleetManager.getVehicles()){
+                    if(v instanceof FuelConsumable){
+                        ((FuelConsumable)v).refuel(20);
+                    }
                 }
             }
         }
@@ -143,58 +200,68 @@ public class FleetSimulatorGUI extends JFrame{
             e.printStackTrace();
         }
 
-        //Create the UI row for each vehicle
-        for(Vehicle v:fleetManager.searchByType(Vehicle.class)){
-            JPanel row = new JPanel(new BorderLayout(10, 0));
-            row.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
-            row.setPreferredSize(new Dimension(750, 40));
-
-            //Label for ID and Name
-            JLabel lblName = new JLabel("  [" + v.getId() + "] " + v.getClass().getSimpleName());
-            lblName.setPreferredSize(new Dimension(150, 40));
-
-            //This status label is passed to the thread so it can update it directly
-            JLabel lblStatus = new JLabel("Status: Ready | Mileage: 0.0 km");
-
-            //Button to add fuel if the vehicle gets stuck
-            JButton btnRefuel = new JButton("Refuel (+10L)");
-            btnRefuel.addActionListener(e->{
-                if (v instanceof FuelConsumable){
-                    try{
-                        ((FuelConsumable)v).refuel(10);
-                        // If it was paused due to empty tank, unpause it now
-                        for(simulation.VehicleTask task:tasks) {
-                            if(task.getVehicle() == v){
-                                task.setPaused(false);
-                            }
-                        }
-                    }
-                    catch(Exception ex){
-                        /* ignore errors during refuel */
-                    }
-                }
-            });
-
-            //Disable button if vehicle (like a bicycle/sail) doesn't use fuel
-            if(!(v instanceof FuelConsumable)){
-                btnRefuel.setEnabled(false);
-            }
+        //Create the logical task for each vehicle, the table shows one row per task
+        for(Vehicle v:fleetManager.getVehicles()){
+            tasks.add(new simulation.VehicleTask(v));
+        }
+        tableModel = new VehicleTableModel(tasks);
+        tblVehicles.setModel(tableModel);
+        lblTotalDistance.setText("Total Highway Distance: 0 km");
+        lblMetrics.setText(" ");
+        stepLatency.reset();
+        edtLag.reset();
+        runStartNanos = 0;
+        previousMetrics = null;
+    }
 
-            //Assemble the row
-            row.add(lblName,BorderLayout.WEST);
-            row.add(lblStatus,BorderLayout.CENTER);
-            row.add(btnRefuel,BorderLayout.EAST);
+    //Called by the timer on the EDT: one snapshot of all the tasks, and a repaint of the visible rows that changed
+    private void refreshView(){
+        long now = System.nanoTime();
+        //how much later than planned this frame runs, a busy EDT shows up here first
+        if(lastFrameNanos!=0){
+            edtLag.record(now-lastFrameNanos-FRAME_MILLIS*1_000_000L);
+        }
+        lastFrameNanos = now;
+        lblTotalDistance.setText("Total Highway Distance: "+Highway.getDistance()+" km");
+        if(++frames%METRICS_EVERY_FRAMES==0){
+            updateMetrics(now);
+        }
+        Rectangle visible = tblVehicles.getVisibleRect();
+        int first = tblVehicles.rowAtPoint(visible.getLocation());
+        int last = tblVehicles.rowAtPoint(new Point(visible.x, visible.y+visible.height-1));
+        if(first<0) first = 0;
+        if(last<0) last = tableModel.getRowCount()-1;
+        tableModel.refresh(first,last);
+    }
 
-            pnlVehicles.add(row);
+    //Every successful step adds 1 km, so the expected Highway distance is also the number of vehicle steps
+    private void updateMetrics(long now){
+        long expected = Highway.getExpectedDistance();
+        SimulationMetrics m = new SimulationMetrics(now, runStartNanos==0 ? 0 : now-runStartNanos, 0, expected,
+                expected, Highway.getDistance(), stepLatency.summarize(), null, edtLag.summarize());
+        double rate = previousMetrics==null ? m.getStepsPerSecond() : m.getStepsPerSecondSince(previousMetrics);
+        previousMetrics = m;
+        lblMetrics.setText(String.format("Expected: %d km | Lost updates: %d | %.0f steps/s | Step p99: %.2f ms | EDT lag p99: %.1f ms (max %.1f)",
+                m.expectedDistance, m.getLostUpdates(), rate, m.stepLatency.p99/1e6, m.edtLag.p99/1e6, m.edtLag.max/1e6));
+    }
 
-            //Create the logical task for this vehicle
-            tasks.add(new simulation.VehicleTask(v,lblStatus));
+    //Adds fuel to the selected vehicles and wakes them up if they stopped because the tank was empty
+    private void refuelSelected(){
+        for(int row:tblVehicles.getSelectedRows()){
+            simulation.VehicleTask task = tableModel.getTask(tblVehicles.convertRowIndexToModel(row));
+            Vehicle v = task.getVehicle();
+            if(v instanceof FuelConsumable){
+                try{
+                    ((FuelConsumable)v).refuel(10);
+                    // If it was paused due to empty tank, unpause it now
+                    task.setPaused(false);
+                }
+                catch(Exception ex){
+                    /* ignore errors during refuel (like a sailing ship) */
+                }
+            }
         }
-
-        //Refresh the panel to show new components
-        pnlVehicles.revalidate();
-        pnlVehicles.repaint();
-        lblTotalDistance.setText("Total Highway Distance: 0 km");
+        refreshView();
     }
 
     private void startSimulation(){
@@ -205,16 +272,20 @@ public class FleetSimulatorGUI extends JFrame{
         threads.clear();
         simulationRunning=true;
         guiUpdateTimer.start();//Start updating the total distance label
+        lastFrameNanos = 0;
+        if(runStartNanos==0){
+            runStartNanos = System.nanoTime();
+        }
 
-        boolean sync=chkSync.isSelected();
+        CounterMode mode=(CounterMode)cmbCounter.getSelectedItem();
 
         //Spin up a new thread for every vehicle task
         for(simulation.VehicleTask task:tasks){
             task.setRunning(true);
-            task.setUseSync(sync);
-            Thread t = new Thread(task);
+            task.setCounterMode(mode);
+            task.setStepLatency(stepLatency);
+            Thread t = threadMode.start(task);
             threads.add(t);
-            t.start();
         }
     }
 
@@ -234,14 +305,36 @@ public class FleetSimulatorGUI extends JFrame{
         }
         guiUpdateTimer.stop();
 
-        //Force one last update to make sure the label matches the internal counter exactly
-        lblTotalDistance.setText("Total Highway Distance: "+Highway.getDistance()+" km");
+        //Force one last update to make sure the label and the table match the internal state exactly
+        if(tableModel!=null){
+            refreshView();
+            updateMetrics(System.nanoTime());
+        }
     }
 
+    //Start with "virtual" as the first argument (or -Dsimulation.threads=virtual) to run the tasks on virtual threads
+    //and a vehicle count as the second one (or -Dsimulation.vehicles=N) to load test the GUI with a generated fleet.
+    //A generated fleet bigger than MAX_PLATFORM_VEHICLES always runs on virtual threads, without them it is refused
     public static void main(String[] args){
+        String mode = args.length > 0 ? args[0] : System.getProperty("simulation.threads");
+        ThreadMode requested = ThreadMode.parse(mode);
+        int fleetSize = Integer.parseInt(args.length > 1 ? args[1] : System.getProperty("simulation.vehicles", "0"));
+        ThreadMode threadMode = requested;
+        if(requested==ThreadMode.PLATFORM && fleetSize>MAX_PLATFORM_VEHICLES){
+            if(!ThreadMode.isVirtualSupported()){
+                System.out.println("A fleet of "+fleetSize+" vehicles needs virtual threads (Java 21 or newer), "
+                        +"platform threads are limited to "+MAX_PLATFORM_VEHICLES+" vehicles.");
+                System.exit(2);
+            }
+            System.out.println("Running "+fleetSize+" vehicles on virtual threads, platform threads are limited to "
+                    +MAX_PLATFORM_VEHICLES+" vehicles.");
+            threadMode = ThreadMode.VIRTUAL;
+        }
+        ThreadMode chosen = threadMode;
+
         //Launch the GUI on the Event Dispatch Thread
         SwingUtilities.invokeLater(()->{
-            new FleetSimulatorGUI().setVisible(true);
+            new FleetSimulatorGUI(chosen, fleetSize).setVisible(true);
         });
     }
 }
\ No newline at end of file
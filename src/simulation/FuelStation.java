@@ -0,0 +1,191 @@
+package simulation;
+
+import Vehicles.Vehicle;
+import Vehicles.VehicleSpec;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+//This is a fuel station with a fixed number of pumps for the SimulationEngine (time is counted in ticks)
+//A vehicle that arrives gets a pump straight away if one is free, otherwise it waits in a first come first
+//served queue and is handed the next pump that is released. The station keeps the numbers for capacity studies:
+//how long vehicles waited, how long the queue was and how busy the pumps were
+//Queue length and busy pumps only change on arrive/release, so their time averages are added up at those
+//moments (length x ticks since the last change) instead of sampling on every tick
+public class FuelStation {
+
+    private final String name;
+    private final int pumps;
+    //litres a car pump delivers per tick, and the ticks it takes to pull in, pay and leave
+    //the bigger types are filled faster by the nozzle or dispenser made for them, see pumpFactor()
+    private final double litresPerTick;
+    private final int setupTicks;
+
+    private final ArrayDeque<Vehicle> queue;
+    private final Map<Vehicle, Long> arrivedAt;
+    private int busyPumps;
+
+    private final long startTick;
+    private long lastChangeTick;
+    private long queueArea;
+    private long busyArea;
+    private int maxQueueLength;
+    private long arrivals;
+    private long served;
+    //vehicles that got a pump, their waits are in totalWaitTicks
+    private long started;
+    private long totalWaitTicks;
+    private long maxWaitTicks;
+
+    //A read-only copy of the numbers of one station
+    public static class Stats {
+        public final String name;
+        public final int pumps;
+        public final long arrivals;
+        public final long served;
+        public final int queueLength;
+        public final int maxQueueLength;
+        public final double averageQueueLength;
+        public final double averageWaitTicks;
+        public final long maxWaitTicks;
+        //fraction of the pump time that was used, between 0 and 1
+        public final double utilization;
+
+        Stats(String name, int pumps, long arrivals, long served, int queueLength, int maxQueueLength,
+              double averageQueueLength, double averageWaitTicks, long maxWaitTicks, double utilization) {
+            this.name = name;
+            this.pumps = pumps;
+            this.arrivals = arrivals;
+            this.served = served;
+            this.queueLength = queueLength;
+            this.maxQueueLength = maxQueueLength;
+            this.averageQueueLength = averageQueueLength;
+            this.averageWaitTicks = averageWaitTicks;
+            this.maxWaitTicks = maxWaitTicks;
+            this.utilization = utilization;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d pumps, %d arrived, %d served, queue %d (max %d, avg %.1f), "
+                            + "wait avg %.1f ticks (max %d), utilization %.1f%%",
+                    name, pumps, arrivals, served, queueLength, maxQueueLength, averageQueueLength,
+                    averageWaitTicks, maxWaitTicks, utilization * 100);
+        }
+    }
+
+    public FuelStation(String name, int pumps, double litresPerTick, int setupTicks, long startTick) {
+        if (pumps < 1) {
+            throw new IllegalArgumentException("A fuel station needs at least one pump.");
+        }
+        if (litresPerTick <= 0 || setupTicks < 0) {
+            throw new IllegalArgumentException("Pump rate must be positive and setup time cant be negative.");
+        }
+        this.name = name;
+        this.pumps = pumps;
+        this.litresPerTick = litresPerTick;
+        this.setupTicks = setupTicks;
+        this.queue = new ArrayDeque<>();
+        this.arrivedAt = new IdentityHashMap<>();
+        this.startTick = startTick;
+        this.lastChangeTick = startTick;
+    }
+
+    //A vehicle arrives. Returns true if it got a pump now, false if it has to wait in the queue
+    //(it will be returned by release() when its turn comes)
+    public synchronized boolean arrive(Vehicle v, long tick) {
+        advance(tick);
+        arrivals++;
+        if (busyPumps < pumps && queue.isEmpty()) {
+            busyPumps++;
+            recordWait(0);
+            return true;
+        }
+        queue.addLast(v);
+        arrivedAt.put(v, tick);
+        maxQueueLength = Math.max(maxQueueLength, queue.size());
+        return false;
+    }
+
+    //A vehicle is done and frees its pump. Returns the vehicle that gets the pump next, or null if nobody waits
+    public synchronized Vehicle release(long tick) {
+        advance(tick);
+        served++;
+        Vehicle next = queue.pollFirst();
+        if (next == null) {
+            busyPumps--;
+            return null;
+        }
+        //the pump goes straight to the next vehicle, so busyPumps stays the same
+        recordWait(tick - arrivedAt.remove(next));
+        return next;
+    }
+
+    //how many ticks a pump is busy filling the given amount of fuel into a vehicle of the given type
+    public long serviceTicks(VehicleSpec spec, double litres) {
+        return setupTicks + Math.max(1, (long) Math.ceil(litres / (litresPerTick * pumpFactor(spec))));
+    }
+
+    //how much faster than a car pump a vehicle type is filled: a truck or bus at a high flow diesel pump,
+    //an airplane from a hydrant dispenser and a ship from a bunker line. With one rate for all, an airplane
+    //would hold a pump for days and a study would only show the queue behind it
+    static double pumpFactor(VehicleSpec spec) {
+        if (spec == VehicleSpec.TRUCK || spec == VehicleSpec.BUS) {
+            return 4;
+        }
+        if (spec == VehicleSpec.AIRPLANE) {
+            return 50;
+        }
+        if (spec == VehicleSpec.CARGO_SHIP) {
+            return 200;
+        }
+        return 1;
+    }
+
+    //vehicles waiting plus vehicles at a pump, used to send a vehicle to the least busy station
+    public synchronized int getLoad() {
+        return queue.size() + busyPumps;
+    }
+
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    public synchronized int getBusyPumps() {
+        return busyPumps;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPumps() {
+        return pumps;
+    }
+
+    public synchronized Stats getStats(long tick) {
+        advance(tick);
+        long elapsed = Math.max(1, tick - startTick);
+        return new Stats(name, pumps, arrivals, served, queue.size(), maxQueueLength,
+                (double) queueArea / elapsed,
+                started > 0 ? (double) totalWaitTicks / started : 0,
+                maxWaitTicks, (double) busyArea / ((double) elapsed * pumps));
+    }
+
+    //adds the time since the last change to the queue and busy pump totals
+    private void advance(long tick) {
+        if (tick > lastChangeTick) {
+            long dt = tick - lastChangeTick;
+            queueArea += (long) queue.size() * dt;
+            busyArea += (long) busyPumps * dt;
+            lastChangeTick = tick;
+        }
+    }
+
+    private void recordWait(long waitTicks) {
+        started++;
+        totalWaitTicks += waitTicks;
+        maxWaitTicks = Math.max(maxWaitTicks, waitTicks);
+    }
+}
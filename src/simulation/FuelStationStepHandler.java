@@ -0,0 +1,150 @@
+package simulation;
+
+import Interfaces.FuelConsumable;
+import Vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//This is HighwayStepHandler with fuel stations: a vehicle that runs out of fuel is not parked for good,
+//it drives to the least busy station, waits for a pump and fills its tank, then goes back on the highway
+//A vehicle waiting in a queue is parked in the engine and costs nothing, the station hands the freed pump to the
+//next vehicle and the handler wakes it up through the engine
+public class FuelStationStepHandler implements VehicleStepHandler {
+
+    private enum Phase { DRIVING, QUEUED, FUELLING }
+
+    //per vehicle state, only its own steps touch it (a queued vehicle is parked until it is woken)
+    private static class State {
+        Phase phase = Phase.DRIVING;
+        FuelStation station;
+    }
+
+    private final List<FuelStation> stations;
+    private final Map<Vehicle, State> states;
+    private volatile CounterMode counterMode;
+    private volatile SimulationEngine engine;
+
+    public FuelStationStepHandler(List<Vehicle> vehicles, List<FuelStation> stations, CounterMode counterMode) {
+        if (stations.isEmpty()) {
+            throw new IllegalArgumentException("At least one fuel station is needed.");
+        }
+        this.stations = new ArrayList<>(stations);
+        this.counterMode = counterMode;
+        this.states = new IdentityHashMap<>();
+        for (Vehicle v : vehicles) {
+            states.put(v, new State());
+        }
+    }
+
+    //the engine is created with this handler, so it is passed in afterwards to let stations wake vehicles up
+    public void setEngine(SimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    public void setCounterMode(CounterMode counterMode) {
+        this.counterMode = counterMode;
+    }
+
+    @Override
+    public long onStep(Vehicle vehicle, long tick) {
+        State state = states.get(vehicle);
+        if (state == null) {
+            return PARK;
+        }
+        switch (state.phase) {
+            case FUELLING:
+                return finishFuelling(vehicle, state, tick);
+            case QUEUED:
+                //woken up by release(), a pump is ours now
+                return startFuelling(vehicle, state);
+            default:
+                return drive(vehicle, state, tick);
+        }
+    }
+
+    private long drive(Vehicle vehicle, State state, long tick) {
+        //Same fuel check as VehicleTask, vehicles that dont burn fuel (a sailing ship) just keep going
+        if (vehicle instanceof FuelConsumable fc && vehicle.getFuelEfficiency() > 0) {
+            double fuel = fc.getFuelLevel();
+            double fuelNeeded = 1.0 / vehicle.getFuelEfficiency();
+            if (fuel <= 0.0001 || fuel < fuelNeeded) {
+                return goToStation(vehicle, state, tick);
+            }
+        }
+
+        try {
+            vehicle.move(1);
+        } catch (Exception e) {
+            return goToStation(vehicle, state, tick);
+        }
+
+        Highway.addDistance(counterMode, 1);
+        return 1;
+    }
+
+    //join the station with the fewest vehicles waiting or fuelling
+    private long goToStation(Vehicle vehicle, State state, long tick) {
+        FuelStation best = stations.get(0);
+        int bestLoad = best.getLoad();
+        for (int i = 1; i < stations.size() && bestLoad > 0; i++) {
+            int load = stations.get(i).getLoad();
+            if (load < bestLoad) {
+                best = stations.get(i);
+                bestLoad = load;
+            }
+        }
+        state.station = best;
+        if (best.arrive(vehicle, tick)) {
+            return startFuelling(vehicle, state);
+        }
+        state.phase = Phase.QUEUED;
+        return PARK;
+    }
+
+    private long startFuelling(Vehicle vehicle, State state) {
+        state.phase = Phase.FUELLING;
+        return state.station.serviceTicks(vehicle.getSpec(), litresToFill(vehicle));
+    }
+
+    //the pump time is over: fill the tank, hand the pump to the next vehicle and drive on from the next tick
+    private long finishFuelling(Vehicle vehicle, State state, long tick) {
+        double litres = litresToFill(vehicle);
+        if (litres > 0) {
+            try {
+                ((FuelConsumable) vehicle).refuel(litres);
+            } catch (Exception e) {
+                //cant be refuelled (it will come back to the station the next time it is empty)
+            }
+        }
+        Vehicle next = state.station.release(tick);
+        state.phase = Phase.DRIVING;
+        state.station = null;
+        if (next != null) {
+            SimulationEngine e = engine;
+            if (e == null) {
+                throw new IllegalStateException("setEngine() was not called, a queued vehicle cant be woken up.");
+            }
+            e.wake(next);
+        }
+        return 1;
+    }
+
+    private static double litresToFill(Vehicle vehicle) {
+        if (!(vehicle instanceof FuelConsumable fc)) {
+            return 0;
+        }
+        return Math.max(0, vehicle.getSpec().getFuelTankCapacity() - fc.getFuelLevel());
+    }
+
+    public List<FuelStation> getStations() {
+        return this.stations;
+    }
+
+    @Override
+    public void afterBatch() {
+        Highway.publishThreadLocal();
+    }
+}
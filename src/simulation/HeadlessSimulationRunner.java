@@ -0,0 +1,349 @@
+package simulation;
+
+import Interfaces.FuelConsumable;
+import Management.FleetGenerator;
+import Management.FleetManager;
+import Vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+//This runs the highway simulation from the command line without Swing, for load tests on a headless machine
+//It loads a fleet file (or generates a fleet) into a FleetManager, runs it on the SimulationEngine for a number of simulated seconds
+//(1 tick = 1 simulated second = 1 km per vehicle, like VehicleTask) and prints the throughput,
+//the updates the Highway counter lost and the fleet statistics at the end
+//Usage: java -cp ../bin simulation.HeadlessSimulationRunner <fleet.csv> [--seconds N] [--accel X|max]
+//           [--generate N [--seed S] [--mix car=40,truck=25,...]] instead of the file
+//           [--counter unsafe|locked|atomic|striped|per_thread] [--threads N] [--report]
+//           [--stations N] [--pumps N] [--pump-rate litres/tick] [--pump-setup ticks] [--json]
+//           [--segments N [--lanes L] [--per-lane K] [--segment-km X]]
+//With --stations, vehicles that run out of fuel queue at fuel stations and the station statistics are printed too
+//With --segments, the vehicles drive around a circular SegmentedHighway instead of adding to the Highway counter.
+//The occupancy and throughput of the segments are printed and checked: no segment over its capacity, its
+//occupancy equal to the vehicles that came in minus the ones that left, all of them together equal to the
+//vehicles that hold a lane, and the km the road let them drive equal to the mileage the fleet gained
+//With --json the progress lines are SimulationMetrics JSON objects and the last line is the final one
+public class HeadlessSimulationRunner {
+
+    //what to run, filled from the command line
+    public static class Options {
+        public long seconds = 60;
+        //simulated seconds per real second, 0 means as fast as possible
+        public double accel = 0;
+        public CounterMode counter = CounterMode.ATOMIC;
+        public int threads = Runtime.getRuntime().availableProcessors();
+        public boolean report = false;
+        //0 means no stations, empty vehicles are parked for good like in the GUI
+        public int stations = 0;
+        public int pumps = 4;
+        //The pumps run on the same clock as the road, where a tick is 1 km of driving (about 36 s at 100 km/h).
+        //A car pump delivers about 0.6 litres a second, so 20 litres a tick (the other types are filled faster,
+        //see FuelStation.pumpFactor), and pulling in, paying at the pump and pulling out takes about one tick
+        public double pumpRate = 20;
+        public int pumpSetupTicks = 1;
+        public boolean json = false;
+        //0 means the single Highway counter
+        public int segments = 0;
+        public int lanes = 2;
+        public int vehiclesPerLane = 20;
+        public double segmentKm = 1;
+    }
+
+    public static void main(String[] args) {
+        String file = null;
+        long generate = -1;
+        FleetGenerator.Profile profile = new FleetGenerator.Profile();
+        Options options = new Options();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--generate":
+                        generate = Long.parseLong(args[++i]);
+                        break;
+                    case "--seed":
+                        profile.seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--mix":
+                        profile.typeMix = FleetGenerator.parseMix(args[++i]);
+                        break;
+                    case "--seconds":
+                        options.seconds = Long.parseLong(args[++i]);
+                        break;
+                    case "--accel":
+                        String value = args[++i];
+                        options.accel = value.equalsIgnoreCase("max") ? 0 : Double.parseDouble(value);
+                        break;
+                    case "--counter":
+                        options.counter = CounterMode.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--threads":
+                        options.threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--report":
+                        options.report = true;
+                        break;
+                    case "--stations":
+                        options.stations = Integer.parseInt(args[++i]);
+                        break;
+                    case "--pumps":
+                        options.pumps = Integer.parseInt(args[++i]);
+                        break;
+                    case "--pump-rate":
+                        options.pumpRate = Double.parseDouble(args[++i]);
+                        break;
+                    case "--pump-setup":
+                        options.pumpSetupTicks = Integer.parseInt(args[++i]);
+                        break;
+                    case "--json":
+                        options.json = true;
+                        break;
+                    case "--segments":
+                        options.segments = Integer.parseInt(args[++i]);
+                        break;
+                    case "--lanes":
+                        options.lanes = Integer.parseInt(args[++i]);
+                        break;
+                    case "--per-lane":
+                        options.vehiclesPerLane = Integer.parseInt(args[++i]);
+                        break;
+                    case "--segment-km":
+                        options.segmentKm = Double.parseDouble(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || file != null) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        file = args[i];
+                }
+            }
+        } catch (RuntimeException e) {
+            //covers a missing value after an option, a bad number and an unknown counter mode
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.exit(2);
+        }
+
+        if ((file == null) == (generate < 0)) {
+            System.out.println("Usage: HeadlessSimulationRunner <fleet.csv> | --generate N [--seed S] [--mix car=40,...] "
+                    + "[--seconds N] [--accel X|max] [--counter unsafe|locked|atomic|striped|per_thread] [--threads N] "
+                    + "[--report] [--stations N] [--pumps N] [--pump-rate litres/tick] [--pump-setup ticks] [--json] "
+                    + "[--segments N [--lanes L] [--per-lane K] [--segment-km X]]");
+            System.exit(2);
+        }
+        if (options.segments > 0 && options.stations > 0) {
+            System.out.println("Invalid arguments: --segments cannot be combined with --stations");
+            System.exit(2);
+        }
+
+        FleetManager manager = new FleetManager();
+        try {
+            if (file != null) {
+                manager.loadFromFile(file);
+            } else {
+                new FleetGenerator(generate, profile).addTo(manager);
+            }
+        } catch (Exception e) {
+            System.out.println("Could not load the fleet: " + e.getMessage());
+            System.exit(1);
+        }
+
+        int exitCode = run(manager, options);
+        System.exit(exitCode);
+    }
+
+    //runs the simulation and prints the results, returns 0 when nothing went wrong
+    public static int run(FleetManager manager, Options options) {
+        long seconds = options.seconds;
+        double accel = options.accel;
+        CounterMode counter = options.counter;
+        int threads = options.threads;
+        List<Vehicle> vehicles = manager.getVehicles();
+        Vehicle.setMoveLogging(false);
+        Highway.reset();
+        double mileageBefore = totalMileage(vehicles);
+
+        System.out.printf("Simulating %d vehicles for %d s of simulated time, %s, %s, %d threads%n",
+                vehicles.size(), seconds, accel > 0 ? accel + "x real time" : "as fast as possible",
+                options.segments > 0 ? String.format("road: %d segments of %.1f km, %d lanes, %d vehicles per lane",
+                        options.segments, options.segmentKm, options.lanes, options.vehiclesPerLane)
+                        : "counter: " + counter.getLabel(), threads);
+
+        //small fleets are split so every worker gets a share, otherwise the whole tick would run on one thread
+        //and the unsafe counter would never show its race
+        int batchSize = (int) Math.max(1, Math.min(4096, ((long) vehicles.size() + threads - 1) / threads));
+        List<FuelStation> stations = new ArrayList<>();
+        for (int i = 0; i < options.stations; i++) {
+            stations.add(new FuelStation("Station " + (i + 1), options.pumps, options.pumpRate, options.pumpSetupTicks, 0));
+        }
+        VehicleStepHandler handler;
+        FuelStationStepHandler stationHandler = null;
+        SegmentedHighwayStepHandler roadHandler = null;
+        if (options.segments > 0) {
+            SegmentedHighway road = new SegmentedHighway(options.segments, options.segmentKm, options.lanes,
+                    options.vehiclesPerLane, true);
+            roadHandler = new SegmentedHighwayStepHandler(road, vehicles, 1);
+            handler = roadHandler;
+        } else if (stations.isEmpty()) {
+            handler = new HighwayStepHandler(counter);
+        } else {
+            stationHandler = new FuelStationStepHandler(vehicles, stations, counter);
+            handler = stationHandler;
+        }
+        SimulationEngine engine = new SimulationEngine(vehicles, handler, threads, batchSize);
+        if (stationHandler != null) {
+            stationHandler.setEngine(engine);
+        }
+        long tickNanos = accel > 0 ? (long) (1e9 / accel) : 0;
+        long progressEvery = Math.max(1, seconds / 10);
+        long begin = System.nanoTime();
+        long deadline = begin;
+        try {
+            for (long t = 0; t < seconds; t++) {
+                engine.runTicks(1);
+                if (tickNanos > 0) {
+                    //fixed rate from the start time, so slow ticks dont make the simulated clock drift
+                    deadline += tickNanos;
+                    long sleep;
+                    while ((sleep = deadline - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(sleep);
+                    }
+                }
+                if ((t + 1) % progressEvery == 0) {
+                    if (options.json) {
+                        System.out.println(engine.getMetrics().toJson());
+                    } else {
+                        System.out.printf("  %d/%d s simulated, %d vehicles parked%n",
+                                t + 1, seconds, engine.getParkedCount());
+                    }
+                }
+            }
+        } finally {
+            engine.stop();
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+
+        //every successful step adds exactly 1 km to the vehicle (mileage is updated with CAS),
+        //so the mileage the fleet gained is what the Highway counter should show
+        long expected = Math.round(totalMileage(vehicles) - mileageBefore);
+        long counted = Highway.getDistance();
+        long steps = engine.getTotalSteps();
+
+        System.out.println();
+        System.out.println("--- Throughput ---");
+        System.out.printf("Real time: %.3f s%n", elapsed);
+        System.out.printf("Vehicle steps: %d (%.0f steps/s)%n", steps, steps / elapsed);
+        System.out.printf("Simulated seconds per real second: %.1f%n", seconds / elapsed);
+        System.out.println();
+        boolean roadConsistent = true;
+        if (roadHandler != null) {
+            roadConsistent = printRoad(roadHandler, totalMileage(vehicles) - mileageBefore, elapsed);
+        } else {
+            System.out.println("--- Highway counter (" + counter.getLabel() + ") ---");
+            System.out.printf("Expected distance: %d km%n", expected);
+            System.out.printf("Counted distance:  %d km%n", counted);
+            System.out.printf("Lost updates:      %d (%.2f%%)%n", expected - counted,
+                    expected > 0 ? 100.0 * (expected - counted) / expected : 0.0);
+        }
+        if (engine.getHandlerErrors() > 0) {
+            System.out.println("Handler errors: " + engine.getHandlerErrors());
+        }
+        System.out.println();
+        printFleetStats(manager, vehicles, engine.getParkedCount());
+        if (!stations.isEmpty()) {
+            System.out.println();
+            System.out.println("--- Fuel stations (1 tick = 1 km of driving) ---");
+            for (FuelStation station : stations) {
+                System.out.println(station.getStats(engine.getTick()));
+            }
+        }
+        SimulationMetrics metrics = engine.getMetrics();
+        System.out.println();
+        System.out.println("--- Latency ---");
+        System.out.println("Vehicle step (1 in 8 sampled): " + metrics.stepLatency);
+        System.out.println("Whole tick: " + metrics.tickLatency);
+        if (options.report) {
+            System.out.println(manager.generateReport());
+        }
+        if (options.json) {
+            System.out.println(metrics.toJson());
+        }
+        return engine.getHandlerErrors() > 0 || !roadConsistent ? 1 : 0;
+    }
+
+    //prints the segments (the busiest ones when there are many) and checks the road's counters against each other,
+    //returns false when they do not add up
+    private static boolean printRoad(SegmentedHighwayStepHandler handler, double mileageGained, double elapsed) {
+        SegmentedHighway road = handler.getRoad();
+        List<SegmentedHighway.SegmentStats> stats = road.getAllStats();
+        System.out.println("--- Segmented road ---");
+        List<String> problems = new ArrayList<>();
+        int occupancy = 0;
+        long exited = 0;
+        long blocked = 0;
+        for (SegmentedHighway.SegmentStats s : stats) {
+            occupancy += s.occupancy;
+            exited += s.exited;
+            blocked += s.blocked;
+            if (s.occupancy > s.capacity) {
+                problems.add("segment " + s.index + " holds " + s.occupancy + " vehicles, its capacity is " + s.capacity);
+            }
+            if (s.entered - s.exited != s.occupancy) {
+                problems.add("segment " + s.index + ": " + s.entered + " entered and " + s.exited + " exited but "
+                        + s.occupancy + " are in it");
+            }
+        }
+        int onRoad = handler.countOnRoad();
+        if (occupancy != onRoad) {
+            problems.add("the segments hold " + occupancy + " vehicles but " + onRoad + " have a lane");
+        }
+        double driven = handler.getDrivenKm();
+        if (Math.abs(driven - mileageGained) > 1e-6 * Math.max(1, mileageGained)) {
+            problems.add(String.format("the road let the vehicles drive %.1f km but their mileage grew by %.1f km",
+                    driven, mileageGained));
+        }
+        List<SegmentedHighway.SegmentStats> busiest = new ArrayList<>(stats);
+        busiest.sort((a, b) -> Long.compare(b.exited, a.exited));
+        for (SegmentedHighway.SegmentStats s : busiest.subList(0, Math.min(10, busiest.size()))) {
+            System.out.printf("%s (%.1f vehicles/s)%n", s, s.exited / elapsed);
+        }
+        if (busiest.size() > 10) {
+            System.out.println("... " + (busiest.size() - 10) + " more segments");
+        }
+        System.out.printf("On the road: %d of %d places, %d segment exits, %d times a full segment held a vehicle back%n",
+                occupancy, road.getSegmentCount() * road.getSegmentCapacity(), exited, blocked);
+        System.out.printf("Distance driven: %.1f km%n", driven);
+        if (problems.isEmpty()) {
+            System.out.println("Road counters are consistent");
+            return true;
+        }
+        for (String problem : problems) {
+            System.out.println("INCONSISTENT: " + problem);
+        }
+        return false;
+    }
+
+    private static void printFleetStats(FleetManager manager, List<Vehicle> vehicles, int outOfFuel) {
+        double fuelLeft = 0;
+        for (Vehicle v : vehicles) {
+            if (v instanceof FuelConsumable fc) {
+                fuelLeft += fc.getFuelLevel();
+            }
+        }
+        System.out.println("--- Fleet ---");
+        System.out.println("Vehicles: " + vehicles.size());
+        System.out.println("Parked at the end (out of fuel or waiting for a pump): " + outOfFuel);
+        System.out.printf("Total fleet mileage: %.1f km%n", totalMileage(vehicles));
+        System.out.printf("Fuel left in the fleet: %.1f L%n", fuelLeft);
+        System.out.println("Vehicles that can still cover 100 km: " + manager.countVehiclesAbleToCover(100));
+        System.out.println("Vehicles needing maintenance: " + manager.getVehiclesNeedingMaintenance().size());
+    }
+
+    private static double totalMileage(List<Vehicle> vehicles) {
+        double total = 0;
+        for (Vehicle v : vehicles) {
+            total += v.getCurrentMileage();
+        }
+        return total;
+    }
+}
@@ -1,20 +1,130 @@
 package simulation;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
 public class Highway{
 
     //This is the shared resource (the counter) that all the vehicle threads
     //will try to update at the same time. Because it is static, there is only
     //one highway for all vehicles.
-    private static int highwayDistance=0;
+    //It is a long so that very long runs don't overflow it. This one is used by the unsafe and the locked mode,
+    //the other modes have their own storage below and getDistance() adds everything together
+    private static volatile long highwayDistance=0;
+
+    //The lock used by the safe method. It is a ReentrantLock and not 'synchronized' because a virtual thread
+    //that waits on a synchronized lock keeps its carrier thread blocked, while waiting on a ReentrantLock releases it
+    private static final ReentrantLock lock=new ReentrantLock();
+
+    //Storage for the ATOMIC and STRIPED modes
+    private static final AtomicLong atomicDistance=new AtomicLong();
+    private static final LongAdder stripedDistance=new LongAdder();
+
+    //Storage for the PER_THREAD mode. Every thread gets its own cell that only it writes to,
+    //and it publishes its count every MERGE_INTERVAL updates. Threads that finish call flushThreadLocal()
+    //which moves their count into mergedDistance and drops the cell.
+    //The move is guarded by a sequence number like a seqlock: it is odd while a flush is between adding the cell
+    //to mergedDistance and zeroing it, and getDistance() reads again when the number changed under it, so the km
+    //of a flushed thread are never counted twice or not at all. Flushes are rare (once per thread), they take
+    //flushLock so only one of them changes the sequence at a time
+    private static final int MERGE_INTERVAL=64;
+    private static final AtomicLong mergedDistance=new AtomicLong();
+    private static final ConcurrentLinkedQueue<ThreadCell> cells=new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<ThreadCell> threadCell=new ThreadLocal<>();
+    private static final ReentrantLock flushLock=new ReentrantLock();
+    private static volatile long flushSequence=0;
+
+    //Every km handed to addDistance(), whatever the mode does with it. This is what the counter should show,
+    //so expected minus getDistance() is the number of updates the mode lost (or, for PER_THREAD, has not published yet)
+    private static final LongAdder expectedDistance=new LongAdder();
+
+    //Reset generation, so a cell that was counting before reset() starts again from zero
+    private static final AtomicInteger generation=new AtomicInteger();
+
+    private static final class ThreadCell{
+        long local;
+        int sinceMerge;
+        int generation;
+        //what the other threads can see of this cell
+        volatile long published;
+    }
 
     //Resets the counter to zero so we can start a fresh simulation
+    //Only call it while no thread is adding distance: a PER_THREAD writer that read the old generation just before
+    //the reset could still publish its old count after it
     public static void reset(){
-        highwayDistance=0;
+        lock.lock();
+        try{
+            highwayDistance=0;
+        }
+        finally{
+            lock.unlock();
+        }
+        atomicDistance.set(0);
+        stripedDistance.reset();
+        mergedDistance.set(0);
+        expectedDistance.reset();
+        generation.incrementAndGet();
+        for(ThreadCell cell:cells){
+            cell.published=0;
+        }
+    }
+
+    // Getter to let the GUI know the current total distance.
+    // Consistency: this is NOT an atomic snapshot. It adds up the storage of every mode one after another
+    // while other threads keep writing. Apart from the UNSAFE mode every part only grows, so the result lies
+    // between the counter at the start and at the end of the call: it never goes down from one read to the next
+    // and never shows more than was added (for ATOMIC and LOCKED alone it is exact at the moment of the read).
+    // - UNSAFE: whatever survived the race, lost updates never show up
+    // - STRIPED: LongAdder.sum() is not atomic, updates made during the sum may or may not be counted
+    // - PER_THREAD: each running thread may have up to MERGE_INTERVAL-1 km it has not published yet,
+    //   they become visible on the next merge or when the thread calls flushThreadLocal(). A flush that runs
+    //   during the read makes it read again
+    public static long getDistance(){
+        while(true){
+            long sequence=flushSequence;
+            if((sequence&1)!=0){
+                Thread.onSpinWait();
+                continue;
+            }
+            long total=highwayDistance+atomicDistance.get()+stripedDistance.sum()+mergedDistance.get();
+            for(ThreadCell cell:cells){
+                total+=cell.published;
+            }
+            if(flushSequence==sequence){
+                return total;
+            }
+        }
     }
 
-    // Simple getter to let the GUI know the current total distance
-    public static int getDistance(){
-        return highwayDistance;
+    //The distance that was added through addDistance() in total, counted exactly in every mode
+    public static long getExpectedDistance(){
+        return expectedDistance.sum();
+    }
+
+    //Adds the distance using the chosen strategy
+    public static void addDistance(CounterMode mode,int amount){
+        expectedDistance.add(amount);
+        switch(mode){
+            case UNSAFE:
+                addDistanceUnsafe(amount);
+                break;
+            case LOCKED:
+                addDistanceSafe(amount);
+                break;
+            case ATOMIC:
+                addDistanceAtomic(amount);
+                break;
+            case STRIPED:
+                addDistanceStriped(amount);
+                break;
+            case PER_THREAD:
+                addDistancePerThread(amount);
+                break;
+        }
     }
 
     // THIS IS THE BUGGY METHOD
@@ -25,7 +135,7 @@ public class Highway{
     // 4. When it wakes up, it overwrites the new value with its old 'temp' calculation,
     //    causing those other updates to be lost forever.
     public static void addDistanceUnsafe(int amount){
-        int temp=highwayDistance;
+        long temp=highwayDistance;
         try{
             Thread.sleep(1);
         }
@@ -36,10 +146,82 @@ public class Highway{
     }
 
     // THIS IS THE FIXED METHOD
-    // The 'synchronized' keyword acts like a lock. It ensures that only one
-    // thread can enter this method at a time. Other threads have to wait their turn,
-    // preventing them from overwriting each other's work.
-    public static synchronized void addDistanceSafe(int amount){
-        highwayDistance+=amount;
+    // The lock ensures that only one thread can do the read-modify-write at a time.
+    // Other threads have to wait their turn, preventing them from overwriting each other's work.
+    public static void addDistanceSafe(int amount){
+        lock.lock();
+        try{
+            highwayDistance+=amount;
+        }
+        finally{
+            lock.unlock();
+        }
+    }
+
+    // Lock-free: retries a compare-and-set until no other thread changed the value in between
+    public static void addDistanceAtomic(int amount){
+        atomicDistance.addAndGet(amount);
+    }
+
+    // Striped: under contention different threads end up on different cells, so they stop fighting
+    public static void addDistanceStriped(int amount){
+        stripedDistance.add(amount);
+    }
+
+    // Per-thread: a plain add on this thread's own cell, published to the others every MERGE_INTERVAL updates
+    public static void addDistancePerThread(int amount){
+        ThreadCell cell=threadCell.get();
+        if(cell==null){
+            cell=new ThreadCell();
+            cell.generation=generation.get();
+            cells.add(cell);
+            threadCell.set(cell);
+        }
+        int current=generation.get();
+        if(cell.generation!=current){
+            cell.generation=current;
+            cell.local=0;
+            cell.sinceMerge=0;
+        }
+        cell.local+=amount;
+        if(++cell.sinceMerge>=MERGE_INTERVAL){
+            cell.sinceMerge=0;
+            cell.published=cell.local;
+        }
+    }
+
+    // Makes everything this thread counted in PER_THREAD mode visible now, without waiting for the next merge.
+    // The simulation engine calls this at the end of each batch since its worker threads never finish
+    public static void publishThreadLocal(){
+        ThreadCell cell=threadCell.get();
+        if(cell!=null && cell.generation==generation.get()){
+            cell.sinceMerge=0;
+            cell.published=cell.local;
+        }
+    }
+
+    // Publishes whatever this thread counted in PER_THREAD mode and forgets its cell.
+    // A vehicle thread calls this before it ends so nothing stays unpublished
+    public static void flushThreadLocal(){
+        ThreadCell cell=threadCell.get();
+        if(cell==null){
+            return;
+        }
+        //a read that overlaps the two writes below sees the sequence change and reads again, so it never sees
+        //the km in both mergedDistance and the cell, or in neither
+        flushLock.lock();
+        try{
+            flushSequence++;
+            if(cell.generation==generation.get()){
+                mergedDistance.addAndGet(cell.local);
+            }
+            cell.published=0;
+            flushSequence++;
+        }
+        finally{
+            flushLock.unlock();
+        }
+        cells.remove(cell);
+        threadCell.remove();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package simulation;
+
+import Interfaces.FuelConsumable;
+import Vehicles.Vehicle;
+
+//This is the same behaviour as VehicleTask.run() written as a handler for the SimulationEngine:
+//every step the vehicle moves 1 km and adds it to the Highway counter, and if it is out of fuel it is parked
+public class HighwayStepHandler implements VehicleStepHandler {
+
+    //Volatile so the GUI/runner can switch the counter while the engine is running
+    private volatile CounterMode counterMode;
+
+    public HighwayStepHandler(CounterMode counterMode) {
+        this.counterMode = counterMode;
+    }
+
+    public void setCounterMode(CounterMode counterMode) {
+        this.counterMode = counterMode;
+    }
+
+    public CounterMode getCounterMode() {
+        return this.counterMode;
+    }
+
+    @Override
+    public long onStep(Vehicle vehicle, long tick) {
+        //Same fuel check as VehicleTask, we need enough fuel for 1 km
+        if (vehicle instanceof FuelConsumable fc) {
+            double fuel = fc.getFuelLevel();
+            double efficiency = vehicle.getFuelEfficiency();
+            double fuelNeeded = (efficiency > 0) ? (1.0 / efficiency) : 0;
+            if (fuel <= 0.0001 || (fuelNeeded > 0 && fuel < fuelNeeded)) {
+                return PARK;
+            }
+        }
+
+        try {
+            vehicle.move(1);
+        } catch (Exception e) {
+            return PARK;
+        }
+
+        Highway.addDistance(counterMode, 1);
+        return 1;
+    }
+
+    //the pool threads live for the whole run, so publish their per-thread highway counts after every batch
+    @Override
+    public void afterBatch() {
+        Highway.publishThreadLocal();
+    }
+}
@@ -0,0 +1,255 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//This is a road model made of segments instead of the single global counter in Highway
+//Every segment has a length, a number of lanes and a capacity per lane. A vehicle drives through a segment
+//and at its end it can only move on if a lane in the next segment has room, otherwise it waits at the end
+//of its segment, so queues (congestion) build up behind full segments on their own.
+//Each segment keeps its own counters and each lane its own occupancy, updated with compare-and-set,
+//so vehicles on different segments never touch the same lock or counter
+public class SegmentedHighway{
+
+    //Where one vehicle is on the road. The engine steps a vehicle on one thread at a time,
+    //so a position is never used by two threads at once
+    public static class Position{
+        private int segment=-1;
+        private int lane=-1;
+        private double progress;
+        private boolean finished;
+
+        public int getSegment(){return segment;}
+        public int getLane(){return lane;}
+        //km driven inside the current segment
+        public double getProgress(){return progress;}
+        //true once the vehicle left the end of a road that is not circular
+        public boolean isFinished(){return finished;}
+        //true while the vehicle holds a place in a lane, a vehicle that pulled over keeps its segment but not its lane
+        public boolean isOnRoad(){return lane>=0 && !finished;}
+    }
+
+    //A read-only copy of the counters of one segment, taken while the simulation keeps running
+    public static class SegmentStats{
+        public final int index;
+        public final int lanes;
+        public final int capacity;
+        public final int occupancy;
+        public final long entered;
+        public final long exited;
+        public final long blocked;
+
+        SegmentStats(int index,int lanes,int capacity,int occupancy,long entered,long exited,long blocked){
+            this.index=index;
+            this.lanes=lanes;
+            this.capacity=capacity;
+            this.occupancy=occupancy;
+            this.entered=entered;
+            this.exited=exited;
+            this.blocked=blocked;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("Segment %d: %d/%d vehicles, entered %d, exited %d, blocked %d",
+                    index,occupancy,capacity,entered,exited,blocked);
+        }
+    }
+
+    private static class Segment{
+        final AtomicIntegerArray laneOccupancy;
+        //vehicles that came into the segment, left it, and attempts to come in that found it full
+        final LongAdder entered=new LongAdder();
+        final LongAdder exited=new LongAdder();
+        final LongAdder blocked=new LongAdder();
+
+        Segment(int lanes){
+            this.laneOccupancy=new AtomicIntegerArray(lanes);
+        }
+    }
+
+    private final Segment[] segments;
+    private final double segmentLength;
+    private final int lanes;
+    private final int vehiclesPerLane;
+    //a circular road sends vehicles from the last segment back to the first one
+    private final boolean circular;
+
+    public SegmentedHighway(int segmentCount,double segmentLength,int lanes,int vehiclesPerLane,boolean circular){
+        if(segmentCount<1 || lanes<1 || vehiclesPerLane<2){
+            throw new IllegalArgumentException("A highway needs at least one segment, one lane and room for two vehicles per lane.");
+        }
+        if(segmentLength<=0){
+            throw new IllegalArgumentException("Segment length must be positive.");
+        }
+        this.segments=new Segment[segmentCount];
+        for(int i=0;i<segmentCount;i++){
+            segments[i]=new Segment(lanes);
+        }
+        this.segmentLength=segmentLength;
+        this.lanes=lanes;
+        this.vehiclesPerLane=vehiclesPerLane;
+        this.circular=circular;
+    }
+
+    //Drives the vehicle up to km kilometres and returns how far it really got
+    //It returns less (or 0) when the next segment is full and the vehicle has to wait at the end of its segment
+    public double drive(Position p,double km){
+        if(p.finished){
+            return 0;
+        }
+        if(p.lane<0){
+            //not on the road yet (it starts at the first segment) or it pulled over and comes back where it stopped.
+            //Like an on-ramp this leaves one place per lane free for the vehicles already on the road, otherwise a
+            //full circular road would lock up for good
+            int segment=Math.max(0,p.segment);
+            int lane=tryEnter(segment,-1,vehiclesPerLane-1);
+            if(lane<0){
+                return 0;
+            }
+            if(p.segment<0){
+                p.progress=0;
+            }
+            p.segment=segment;
+            p.lane=lane;
+        }
+
+        double driven=0;
+        double remaining=km;
+        while(remaining>0){
+            double room=segmentLength-p.progress;
+            if(remaining<room){
+                p.progress+=remaining;
+                driven+=remaining;
+                break;
+            }
+            p.progress=segmentLength;
+            driven+=room;
+            remaining-=room;
+
+            //end of the segment, try to move on to the next one
+            int next=p.segment+1;
+            if(next==segments.length){
+                if(!circular){
+                    leave(p.segment,p.lane);
+                    p.finished=true;
+                    break;
+                }
+                next=0;
+            }
+            int lane=tryEnter(next,p.lane,vehiclesPerLane);
+            if(lane<0){
+                break;
+            }
+            leave(p.segment,p.lane);
+            p.segment=next;
+            p.lane=lane;
+            p.progress=0;
+        }
+        return driven;
+    }
+
+    //Takes the vehicle off the road wherever it is (for example when the simulation removes it)
+    public void remove(Position p){
+        if(p.isOnRoad()){
+            leave(p.segment,p.lane);
+        }
+        p.finished=true;
+    }
+
+    //Takes the vehicle out of its lane but keeps where it is, so it does not hold a place while it cannot drive
+    //(out of fuel). The next drive() brings it back onto the road at the same spot when there is room
+    public void pullOver(Position p){
+        pullOver(p,p.segment,p.progress);
+    }
+
+    //Pulls the vehicle over at an earlier spot: the handler uses this to take back a drive() the vehicle could
+    //not make after all. The entered and exited counters of the segments it went through are not taken back
+    void pullOver(Position p,int segment,double progress){
+        if(p.isOnRoad()){
+            leave(p.segment,p.lane);
+        }
+        p.segment=segment;
+        p.lane=-1;
+        p.progress=segment<0 ? 0 : progress;
+        p.finished=false;
+    }
+
+    //Finds a lane with room in the segment, the vehicle's current lane is tried first so it doesnt change lanes
+    //for nothing. Returns the lane or -1 if every lane already holds limit vehicles
+    private int tryEnter(int index,int preferredLane,int limit){
+        Segment s=segments[index];
+        for(int i=-1;i<lanes;i++){
+            int lane=(i<0)?preferredLane:i;
+            if(lane<0 || (i>=0 && lane==preferredLane)){
+                continue;
+            }
+            int current;
+            while((current=s.laneOccupancy.get(lane))<limit){
+                if(s.laneOccupancy.compareAndSet(lane,current,current+1)){
+                    s.entered.increment();
+                    return lane;
+                }
+            }
+        }
+        s.blocked.increment();
+        return -1;
+    }
+
+    private void leave(int index,int lane){
+        Segment s=segments[index];
+        s.laneOccupancy.decrementAndGet(lane);
+        s.exited.increment();
+    }
+
+    public int getSegmentCount(){
+        return segments.length;
+    }
+
+    public double getSegmentLength(){
+        return segmentLength;
+    }
+
+    public int getLanes(){
+        return lanes;
+    }
+
+    public int getSegmentCapacity(){
+        return lanes*vehiclesPerLane;
+    }
+
+    //vehicles in the segment right now
+    public int getOccupancy(int index){
+        AtomicIntegerArray lanesOfSegment=segments[index].laneOccupancy;
+        int total=0;
+        for(int i=0;i<lanesOfSegment.length();i++){
+            total+=lanesOfSegment.get(i);
+        }
+        return total;
+    }
+
+    public int getLaneOccupancy(int index,int lane){
+        return segments[index].laneOccupancy.get(lane);
+    }
+
+    //vehicles that have left the segment so far, sample it twice to get vehicles per second
+    public long getThroughput(int index){
+        return segments[index].exited.sum();
+    }
+
+    public SegmentStats getStats(int index){
+        Segment s=segments[index];
+        return new SegmentStats(index,lanes,getSegmentCapacity(),getOccupancy(index),
+                s.entered.sum(),s.exited.sum(),s.blocked.sum());
+    }
+
+    public List<SegmentStats> getAllStats(){
+        List<SegmentStats> stats=new ArrayList<>(segments.length);
+        for(int i=0;i<segments.length;i++){
+            stats.add(getStats(i));
+        }
+        return stats;
+    }
+}
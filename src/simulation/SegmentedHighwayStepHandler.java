@@ -0,0 +1,93 @@
+package simulation;
+
+import Interfaces.FuelConsumable;
+import Vehicles.Vehicle;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+
+//This drives the vehicles of a SimulationEngine over a SegmentedHighway instead of the single Highway counter
+//Every step a vehicle tries to drive kmPerStep, it only moves (and only burns fuel) as far as the road lets it,
+//so a vehicle stuck behind a full segment just tries again on the next tick.
+//A vehicle that gets parked (out of fuel) pulls over first, so it does not hold a place in a lane while it waits
+public class SegmentedHighwayStepHandler implements VehicleStepHandler {
+
+    private final SegmentedHighway road;
+    private final double kmPerStep;
+    //one position per vehicle, filled in the constructor and only read after that
+    private final Map<Vehicle, SegmentedHighway.Position> positions;
+    //km the road let the vehicles drive and they really drove, it has to match the mileage they gained
+    private final DoubleAdder driven = new DoubleAdder();
+
+    public SegmentedHighwayStepHandler(SegmentedHighway road, List<Vehicle> vehicles, double kmPerStep) {
+        if (kmPerStep <= 0) {
+            throw new IllegalArgumentException("Distance per step must be positive.");
+        }
+        this.road = road;
+        this.kmPerStep = kmPerStep;
+        this.positions = new IdentityHashMap<>();
+        for (Vehicle v : vehicles) {
+            positions.put(v, new SegmentedHighway.Position());
+        }
+    }
+
+    @Override
+    public long onStep(Vehicle vehicle, long tick) {
+        SegmentedHighway.Position p = positions.get(vehicle);
+        if (p == null || p.isFinished()) {
+            return PARK;
+        }
+
+        //Same fuel check as HighwayStepHandler, but for a whole step
+        if (vehicle instanceof FuelConsumable fc) {
+            double fuel = fc.getFuelLevel();
+            double efficiency = vehicle.getFuelEfficiency();
+            double fuelNeeded = (efficiency > 0) ? (kmPerStep / efficiency) : 0;
+            if (fuel <= 0.0001 || (fuelNeeded > 0 && fuel < fuelNeeded)) {
+                road.pullOver(p);
+                return PARK;
+            }
+        }
+
+        int segment = p.getSegment();
+        double progress = p.getProgress();
+        double km = road.drive(p, kmPerStep);
+        if (km > 0) {
+            try {
+                vehicle.move(km);
+            } catch (Exception e) {
+                //the vehicle did not get anywhere, so neither did its place on the road
+                road.pullOver(p, segment, progress);
+                return PARK;
+            }
+            driven.add(km);
+        }
+        //a vehicle that drove off the end of the road is done
+        return p.isFinished() ? PARK : 1;
+    }
+
+    public SegmentedHighway.Position getPosition(Vehicle vehicle) {
+        return positions.get(vehicle);
+    }
+
+    public SegmentedHighway getRoad() {
+        return this.road;
+    }
+
+    public double getDrivenKm() {
+        return driven.sum();
+    }
+
+    //vehicles that hold a place in a lane right now, the occupancy of all segments has to add up to this
+    public int countOnRoad() {
+        int onRoad = 0;
+        for (SegmentedHighway.Position p : positions.values()) {
+            if (p.isOnRoad()) {
+                onRoad++;
+            }
+        }
+        return onRoad;
+    }
+}
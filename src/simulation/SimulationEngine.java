@@ -0,0 +1,373 @@
+package simulation;
+
+import Events.SimulationTickEvent;
+import Management.LatencyHistogram;
+import Vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//This is a headless simulation engine that replaces the one-thread-per-vehicle design of VehicleTask
+//Simulated time moves in ticks (1 tick = 1 second of the old VehicleTask loop). A timing wheel remembers
+//which vehicles are due on which tick, and on every tick the due vehicles are stepped in batches on a
+//small fixed thread pool. Vehicles that are out of fuel are parked and cost nothing until wake() is called
+public class SimulationEngine {
+
+    //number of slots in the timing wheel, must be a power of two
+    private static final int WHEEL_SIZE = 256;
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+    //one step in (mask + 1) is timed for the step latency histogram, timing every step would cost about as much
+    //as the step itself
+    private static final int LATENCY_SAMPLE_MASK = 7;
+
+    private final Vehicle[] vehicles;
+    private final Map<Vehicle, Integer> indexOf;
+    private final VehicleStepHandler handler;
+    private final ExecutorService pool;
+    private final int threads;
+    private final int batchSize;
+
+    //timing wheel, slot (tick % WHEEL_SIZE) holds the indices of the vehicles scheduled for that slot
+    private final int[][] wheel;
+    private final int[] wheelSizes;
+    //the tick each vehicle is due on, -1 when it is parked
+    private final long[] nextTick;
+    //what the handler returned for each vehicle on its last step
+    private final long[] lastDelay;
+    //the vehicles that are due on the current tick
+    private final int[] due;
+
+    //wake() can be called from any thread, the engine thread picks these up at the start of a tick
+    private final ConcurrentLinkedQueue<Integer> pendingWakeups;
+
+    private volatile long tick;
+    private final AtomicLong totalSteps;
+    private final AtomicLong handlerErrors;
+    private volatile int parkedCount;
+
+    //live metrics, see getMetrics()
+    private final LatencyHistogram stepLatency;
+    private final LatencyHistogram tickLatency;
+    private final long createdNanos;
+
+    //Volatile flags for the background driver thread, the same idea as in VehicleTask
+    private volatile boolean running;
+    private volatile boolean paused;
+    private Thread driver;
+
+    public SimulationEngine(List<Vehicle> vehicles, VehicleStepHandler handler, int threads) {
+        this(vehicles, handler, threads, DEFAULT_BATCH_SIZE);
+    }
+
+    public SimulationEngine(List<Vehicle> vehicles, VehicleStepHandler handler, int threads, int batchSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The engine needs at least one thread.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.vehicles = vehicles.toArray(new Vehicle[0]);
+        this.indexOf = new IdentityHashMap<>();
+        this.handler = handler;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.pool = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "simulation-worker");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+
+        int n = this.vehicles.length;
+        this.wheel = new int[WHEEL_SIZE][];
+        this.wheelSizes = new int[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            this.wheel[i] = new int[Math.max(16, n / WHEEL_SIZE)];
+        }
+        this.nextTick = new long[n];
+        this.lastDelay = new long[n];
+        this.due = new int[n];
+        this.pendingWakeups = new ConcurrentLinkedQueue<>();
+        this.totalSteps = new AtomicLong();
+        this.handlerErrors = new AtomicLong();
+        this.stepLatency = new LatencyHistogram();
+        this.tickLatency = new LatencyHistogram();
+        this.createdNanos = System.nanoTime();
+        this.tick = 0;
+
+        //every vehicle takes its first step on tick 0
+        for (int i = 0; i < n; i++) {
+            indexOf.put(this.vehicles[i], i);
+            schedule(i, 0);
+        }
+    }
+
+    //runs the given number of ticks on the calling thread, as fast as possible
+    //this is what a headless run or a test uses, it must not be mixed with start()
+    public void runTicks(long ticks) {
+        if (driver != null && driver.isAlive()) {
+            throw new IllegalStateException("The engine is already running in the background.");
+        }
+        for (long i = 0; i < ticks; i++) {
+            runTick();
+        }
+    }
+
+    //starts a background thread that runs one tick every tickMillis of real time (0 means as fast as possible)
+    //ticks are scheduled at a fixed rate from the start time, so a slow tick doesnt make the clock drift
+    public synchronized void start(long tickMillis) {
+        if (running) {
+            return;
+        }
+        running = true;
+        paused = false;
+        driver = new Thread(() -> {
+            long tickNanos = tickMillis * 1_000_000L;
+            long deadline = System.nanoTime();
+            while (running) {
+                if (paused) {
+                    waitWhilePaused();
+                    deadline = System.nanoTime();
+                    continue;
+                }
+                runTick();
+                if (tickNanos > 0) {
+                    deadline += tickNanos;
+                    long sleep;
+                    while (running && !paused && (sleep = deadline - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(this, sleep);
+                    }
+                }
+            }
+        }, "simulation-engine");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    //a tick that is already running is finished first, then the engine waits until resume() or stop()
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    public synchronized void resume() {
+        paused = false;
+        notifyAll();
+        if (driver != null) {
+            LockSupport.unpark(driver);
+        }
+    }
+
+    //stops the background thread (if any) and shuts the worker pool down, the engine cant be used after this
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            paused = false;
+            notifyAll();
+            t = driver;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private synchronized void waitWhilePaused() {
+        while (paused && running) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    //puts a parked vehicle (for example after a refuel) back on the schedule for the next tick
+    public void wake(Vehicle v) {
+        Integer index = indexOf.get(v);
+        if (index != null) {
+            pendingWakeups.add(index);
+        }
+    }
+
+    //one tick: wake the vehicles that asked for it, step every vehicle that is due and reschedule them
+    private void runTick() {
+        long tickStart = System.nanoTime();
+        SimulationTickEvent event = new SimulationTickEvent();
+        event.begin();
+        Integer woken;
+        while ((woken = pendingWakeups.poll()) != null) {
+            if (nextTick[woken] < 0) {
+                parkedCount--;
+                schedule(woken, tick);
+            }
+        }
+
+        int slot = (int) (tick & (WHEEL_SIZE - 1));
+        int[] items = wheel[slot];
+        int size = wheelSizes[slot];
+        int dueCount = 0;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int index = items[i];
+            if (nextTick[index] == tick) {
+                due[dueCount++] = index;
+            } else if (nextTick[index] > tick) {
+                //due on a later turn of the wheel
+                items[kept++] = index;
+            }
+        }
+        wheelSizes[slot] = kept;
+
+        stepDue(dueCount);
+
+        for (int i = 0; i < dueCount; i++) {
+            int index = due[i];
+            long delay = lastDelay[index];
+            if (delay < 0) {
+                nextTick[index] = -1;
+                parkedCount++;
+            } else {
+                schedule(index, tick + Math.max(1, delay));
+            }
+        }
+        totalSteps.addAndGet(dueCount);
+        tickLatency.record(System.nanoTime() - tickStart);
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.stepped = dueCount;
+            event.parked = parkedCount;
+            event.commit();
+        }
+        tick++;
+    }
+
+    //steps the due vehicles, small ticks run on the engine thread and big ones are split into batches
+    private void stepDue(int dueCount) {
+        if (pool == null || dueCount <= batchSize) {
+            stepRange(0, dueCount);
+            return;
+        }
+        List<Callable<Void>> batches = new ArrayList<>((dueCount + batchSize - 1) / batchSize);
+        for (int from = 0; from < dueCount; from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, dueCount);
+            batches.add(() -> {
+                stepRange(start, end);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : pool.invokeAll(batches)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation batch failed", e.getCause());
+        }
+    }
+
+    private void stepRange(int from, int to) {
+        long currentTick = tick;
+        for (int i = from; i < to; i++) {
+            int index = due[i];
+            long delay;
+            boolean timed = (i & LATENCY_SAMPLE_MASK) == 0;
+            long start = timed ? System.nanoTime() : 0;
+            try {
+                delay = handler.onStep(vehicles[index], currentTick);
+                if (timed) {
+                    stepLatency.record(System.nanoTime() - start);
+                }
+            } catch (RuntimeException e) {
+                //a broken handler parks its vehicle instead of killing the whole tick
+                handlerErrors.incrementAndGet();
+                delay = VehicleStepHandler.PARK;
+            }
+            lastDelay[index] = delay;
+        }
+        handler.afterBatch();
+    }
+
+    private void schedule(int index, long atTick) {
+        nextTick[index] = atTick;
+        int slot = (int) (atTick & (WHEEL_SIZE - 1));
+        int size = wheelSizes[slot];
+        if (size == wheel[slot].length) {
+            wheel[slot] = Arrays.copyOf(wheel[slot], size * 2);
+        }
+        wheel[slot][size] = index;
+        wheelSizes[slot] = size + 1;
+    }
+
+    //the current simulated time in ticks
+    public long getTick() {
+        return this.tick;
+    }
+
+    public long getTotalSteps() {
+        return this.totalSteps.get();
+    }
+
+    //Steps, Highway distance (expected and counted) and latency histograms in one snapshot,
+    //toJson() on the result gives the machine-readable form
+    public SimulationMetrics getMetrics() {
+        long now = System.nanoTime();
+        return new SimulationMetrics(now, now - createdNanos, tick, totalSteps.get(),
+                Highway.getExpectedDistance(), Highway.getDistance(),
+                stepLatency.summarize(), tickLatency.summarize(), null);
+    }
+
+    public LatencyHistogram getStepLatency() {
+        return this.stepLatency;
+    }
+
+    public LatencyHistogram getTickLatency() {
+        return this.tickLatency;
+    }
+
+    public long getHandlerErrors() {
+        return this.handlerErrors.get();
+    }
+
+    public int getParkedCount() {
+        return this.parkedCount;
+    }
+
+    public int getVehicleCount() {
+        return this.vehicles.length;
+    }
+
+    public int getThreadCount() {
+        return this.threads;
+    }
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    public boolean isPaused() {
+        return this.paused;
+    }
+}
@@ -0,0 +1,70 @@
+package simulation;
+
+import Management.LatencyHistogram;
+
+import java.util.Locale;
+
+//A snapshot of how a simulation run is doing: how much work was done, how much of it the Highway counter lost,
+//and how long steps (and, in the GUI, screen updates) take. The engine and the GUI make one whenever they are asked,
+//toJson() is the machine-readable form for scripts and CI
+public class SimulationMetrics {
+
+    public final long timestampNanos;
+    //time since the run started
+    public final long elapsedNanos;
+    public final long tick;
+    public final long totalSteps;
+    //km handed to the Highway counter, and what the counter shows
+    public final long expectedDistance;
+    public final long countedDistance;
+    public final LatencyHistogram.Summary stepLatency;
+    //null when there is nothing to report (no engine ticks in the GUI, no EDT in the headless engine)
+    public final LatencyHistogram.Summary tickLatency;
+    public final LatencyHistogram.Summary edtLag;
+
+    SimulationMetrics(long timestampNanos, long elapsedNanos, long tick, long totalSteps, long expectedDistance,
+                      long countedDistance, LatencyHistogram.Summary stepLatency, LatencyHistogram.Summary tickLatency,
+                      LatencyHistogram.Summary edtLag) {
+        this.timestampNanos = timestampNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.tick = tick;
+        this.totalSteps = totalSteps;
+        this.expectedDistance = expectedDistance;
+        this.countedDistance = countedDistance;
+        this.stepLatency = stepLatency;
+        this.tickLatency = tickLatency;
+        this.edtLag = edtLag;
+    }
+
+    //updates the Highway counter lost (or has not published yet)
+    public long getLostUpdates() {
+        return expectedDistance - countedDistance;
+    }
+
+    //average since the start of the run
+    public double getStepsPerSecond() {
+        return elapsedNanos > 0 ? totalSteps * 1e9 / elapsedNanos : 0;
+    }
+
+    //the current rate, between an earlier snapshot and this one
+    public double getStepsPerSecondSince(SimulationMetrics previous) {
+        long dt = timestampNanos - previous.timestampNanos;
+        return dt > 0 ? (totalSteps - previous.totalSteps) * 1e9 / dt : 0;
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"elapsedMillis\":").append(elapsedNanos / 1_000_000)
+                .append(",\"tick\":").append(tick)
+                .append(",\"totalSteps\":").append(totalSteps)
+                .append(",\"stepsPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getStepsPerSecond()))
+                .append(",\"expectedDistance\":").append(expectedDistance)
+                .append(",\"countedDistance\":").append(countedDistance)
+                .append(",\"lostUpdates\":").append(getLostUpdates())
+                .append(",\"stepLatencyNanos\":").append(stepLatency == null ? "null" : stepLatency.toJson())
+                .append(",\"tickLatencyNanos\":").append(tickLatency == null ? "null" : tickLatency.toJson())
+                .append(",\"edtLagNanos\":").append(edtLag == null ? "null" : edtLag.toJson())
+                .append('}');
+        return sb.toString();
+    }
+}
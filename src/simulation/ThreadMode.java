@@ -0,0 +1,65 @@
+package simulation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+//This decides what kind of thread runs each VehicleTask
+//PLATFORM is the classic new Thread(task), VIRTUAL uses the JDK's virtual threads (Java 21+) so that
+//tens of thousands of sleeping VehicleTasks only need a few carrier threads
+//A VehicleTask never waits on a synchronized monitor, which would pin its carrier thread on Java 21: the Highway
+//counter and the pause condition use a ReentrantLock, and move() only marks the vehicle for the fleet's range index
+//(the index is updated under its monitor by the thread that queries it, see RangeIndex)
+public enum ThreadMode {
+    PLATFORM,
+    VIRTUAL;
+
+    //Thread.startVirtualThread is looked up at runtime so the project still compiles on older JDKs
+    private static final MethodHandle START_VIRTUAL = findStartVirtual();
+
+    private static MethodHandle findStartVirtual() {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle handle = lookup.findStatic(Thread.class, "startVirtualThread",
+                    MethodType.methodType(Thread.class, Runnable.class));
+            //on JDK 19/20 it exists but throws unless preview features are on. Thread.ofVirtual() throws the same
+            //way and only makes a builder, so it is called to check without starting a thread
+            Class<?> builder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(builder)).invoke();
+            return handle;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    public static boolean isVirtualSupported() {
+        return START_VIRTUAL != null;
+    }
+
+    //reads "platform" or "virtual" (any case), and falls back to PLATFORM if virtual threads are not available
+    public static ThreadMode parse(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("virtual")) {
+            if (isVirtualSupported()) {
+                return VIRTUAL;
+            }
+            System.out.println("Virtual threads need Java 21 or newer, using platform threads instead.");
+        }
+        return PLATFORM;
+    }
+
+    //starts the task on a new thread of this kind
+    public Thread start(Runnable task) {
+        if (this == VIRTUAL) {
+            try {
+                return (Thread) START_VIRTUAL.invoke(task);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not start a virtual thread", e);
+            }
+        }
+        Thread t = new Thread(task);
+        t.start();
+        return t;
+    }
+}
@@ -0,0 +1,117 @@
+package simulation;
+
+import Vehicles.Car;
+import Vehicles.Vehicle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//This compares platform and virtual threads for running VehicleTasks without the GUI
+//With no arguments it runs every mode at 1k, 10k and 100k vehicles, each one in a fresh JVM so the
+//numbers dont affect each other. With "<mode> <vehicles>" it runs a single measurement and prints one line
+//Usage: java -cp ../bin simulation.ThreadModeBenchmark [platform|virtual] [vehicles]
+public class ThreadModeBenchmark {
+
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final long CHILD_TIMEOUT_SECONDS = 120;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2) {
+            measure(ThreadMode.parse(args[0]), Integer.parseInt(args[1]));
+            return;
+        }
+
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String classpath = System.getProperty("java.class.path");
+        System.out.printf("%-9s %9s %12s %12s %10s %10s %8s%n",
+                "mode", "vehicles", "startup ms", "shutdown ms", "heap MB", "rss MB", "threads");
+        for (ThreadMode mode : ThreadMode.values()) {
+            if (mode == ThreadMode.VIRTUAL && !ThreadMode.isVirtualSupported()) {
+                System.out.println("virtual   (not supported on this JDK, needs Java 21+)");
+                continue;
+            }
+            for (int size : SIZES) {
+                Process p = new ProcessBuilder(java, "-cp", classpath, ThreadModeBenchmark.class.getName(),
+                        mode.name(), String.valueOf(size)).inheritIO().start();
+                if (!p.waitFor(CHILD_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    p.destroyForcibly().waitFor();
+                    System.out.printf("%-9s %9d   gave up after %d s%n", mode.name().toLowerCase(), size, CHILD_TIMEOUT_SECONDS);
+                }
+            }
+        }
+    }
+
+    //starts the tasks, lets them run for a few simulated seconds and then stops them
+    private static void measure(ThreadMode mode, int count) throws Exception {
+        Vehicle.setMoveLogging(false);
+        List<VehicleTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Car car = new Car("C" + i, "Bench", 100);
+            car.refuel(50);
+            tasks.add(new VehicleTask(car));
+        }
+
+        List<Thread> threads = new ArrayList<>(count);
+        long startNanos = System.nanoTime();
+        try {
+            for (VehicleTask task : tasks) {
+                task.setRunning(true);
+                task.setUseSync(true);
+                threads.add(mode.start(task));
+            }
+        } catch (OutOfMemoryError e) {
+            //platform threads can run out of native memory or hit the OS thread limit
+            System.out.printf("%-9s %9d   failed after %d threads: %s%n",
+                    mode.name().toLowerCase(), count, threads.size(), e.getMessage());
+            stopAll(tasks, threads);
+            return;
+        }
+        long startupNanos = System.nanoTime() - startNanos;
+
+        //let every task go through a couple of sleep/move cycles
+        Thread.sleep(2500);
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        long heap = rt.totalMemory() - rt.freeMemory();
+        long rss = readRssBytes();
+        int liveThreads = Thread.activeCount();
+
+        long stopNanos = System.nanoTime();
+        stopAll(tasks, threads);
+        long shutdownNanos = System.nanoTime() - stopNanos;
+
+        System.out.printf("%-9s %9d %12.1f %12.1f %10.1f %10s %8d%n",
+                mode.name().toLowerCase(), count, startupNanos / 1e6, shutdownNanos / 1e6,
+                heap / 1048576.0, rss < 0 ? "n/a" : String.format("%.1f", rss / 1048576.0), liveThreads);
+    }
+
+    private static void stopAll(List<VehicleTask> tasks, List<Thread> threads) throws InterruptedException {
+        for (VehicleTask task : tasks) {
+            task.stop();
+        }
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
+    //resident memory of this process on Linux (it includes the native stacks of platform threads), -1 elsewhere
+    private static long readRssBytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            //not on Linux
+        }
+        return -1;
+    }
+}
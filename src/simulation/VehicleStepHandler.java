@@ -0,0 +1,18 @@
+package simulation;
+
+import Vehicles.Vehicle;
+
+//This is the per-vehicle behaviour for the SimulationEngine (what VehicleTask does inside its loop)
+//The engine calls onStep when the vehicle is due and the return value says when to call it again
+public interface VehicleStepHandler {
+
+    //return this from onStep to park the vehicle until SimulationEngine.wake() is called for it
+    long PARK = -1;
+
+    //called on a pool thread, returns the number of ticks until the next step or PARK
+    long onStep(Vehicle vehicle, long tick);
+
+    //called on the same pool thread after it finished a batch of steps
+    default void afterBatch() {
+    }
+}
@@ -0,0 +1,119 @@
+package simulation;
+
+import Interfaces.FuelConsumable;
+import Vehicles.Vehicle;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+//This is the table behind the vehicle list of FleetSimulatorGUI
+//The tasks never touch Swing, instead the GUI timer calls refresh() once per frame on the EDT. refresh() copies
+//the status, mileage and fuel of every vehicle into plain arrays (the snapshot the table paints from) and only
+//tells the table about rows that changed and are on screen. JTable only creates cells for the visible rows,
+//so 50k vehicles cost 50k array reads per frame and a repaint of the rows you can actually see
+public class VehicleTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"ID", "Type", "Status", "Mileage (km)", "Fuel (L)"};
+
+    private final List<VehicleTask> tasks;
+    private final String[] types;
+    private final boolean[] usesFuel;
+
+    //the snapshot the table is painted from
+    private final VehicleTask.Status[] status;
+    private final double[] mileage;
+    private final double[] fuel;
+
+    public VehicleTableModel(List<VehicleTask> tasks) {
+        this.tasks = tasks;
+        int n = tasks.size();
+        this.types = new String[n];
+        this.usesFuel = new boolean[n];
+        this.status = new VehicleTask.Status[n];
+        this.mileage = new double[n];
+        this.fuel = new double[n];
+        for (int i = 0; i < n; i++) {
+            Vehicle v = tasks.get(i).getVehicle();
+            types[i] = v.getClass().getSimpleName();
+            usesFuel[i] = v instanceof FuelConsumable;
+            copyRow(i);
+        }
+    }
+
+    //Copies the live state into the snapshot and repaints the changed rows between firstVisible and lastVisible
+    //Rows off screen are still copied, so they are up to date when they are scrolled into view
+    //Returns the number of rows that changed
+    public int refresh(int firstVisible, int lastVisible) {
+        int changed = 0;
+        int runStart = -1;
+        for (int i = 0; i < tasks.size(); i++) {
+            boolean rowChanged = copyRow(i);
+            if (rowChanged) {
+                changed++;
+            }
+            boolean repaint = rowChanged && i >= firstVisible && i <= lastVisible;
+            //neighbouring changed rows are sent as one event
+            if (repaint && runStart < 0) {
+                runStart = i;
+            } else if (!repaint && runStart >= 0) {
+                fireTableRowsUpdated(runStart, i - 1);
+                runStart = -1;
+            }
+        }
+        if (runStart >= 0) {
+            fireTableRowsUpdated(runStart, tasks.size() - 1);
+        }
+        return changed;
+    }
+
+    private boolean copyRow(int i) {
+        VehicleTask task = tasks.get(i);
+        Vehicle v = task.getVehicle();
+        VehicleTask.Status s = task.getStatus();
+        double m = v.getCurrentMileage();
+        double f = usesFuel[i] ? ((FuelConsumable) v).getFuelLevel() : 0;
+        if (s == status[i] && m == mileage[i] && f == fuel[i]) {
+            return false;
+        }
+        status[i] = s;
+        mileage[i] = m;
+        fuel[i] = f;
+        return true;
+    }
+
+    public VehicleTask getTask(int row) {
+        return tasks.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return tasks.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    //only called for the cells that are being painted
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case 0:
+                return tasks.get(row).getVehicle().getId();
+            case 1:
+                return types[row];
+            case 2:
+                return status[row];
+            case 3:
+                return String.format("%.1f", mileage[row]);
+            default:
+                return usesFuel[row] ? String.format("%.1f", fuel[row]) : "-";
+        }
+    }
+}
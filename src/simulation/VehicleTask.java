@@ -2,91 +2,134 @@ package simulation;
 
 import Vehicles.Vehicle;
 import Interfaces.FuelConsumable;
-import javax.swing.SwingUtilities;
-import javax.swing.JLabel;
+import Management.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class VehicleTask implements Runnable{
 
+    //What the task is doing right now, the GUI reads it on its own timer instead of being told every step
+    public enum Status{
+        READY("Ready"),
+        RUNNING("Running"),
+        PAUSED("Paused"),
+        OUT_OF_FUEL("Out of Fuel");
+
+        private final String label;
+
+        Status(String label){
+            this.label=label;
+        }
+
+        @Override
+        public String toString(){
+            return label;
+        }
+    }
+
     private Vehicle vehicle;
 
     //Volatile is used here so that changes to these flags are immediately visible to the thread
     private volatile boolean running=true;
     private volatile boolean paused=false;
-    private volatile boolean useSync=false;
+    private volatile CounterMode counterMode=CounterMode.UNSAFE;
+    //Where the time of every move + counter update goes, null when nobody is measuring
+    private volatile LatencyHistogram stepLatency;
+
+    //Published for the GUI, which takes a snapshot of every task once per frame
+    private volatile Status status=Status.READY;
+
+    //1 second of simulated time per step
+    private static final long STEP_NANOS=TimeUnit.SECONDS.toNanos(1);
 
-    //The label on the GUI that we need to update
-    private JLabel statusLabel;
+    //A paused or empty task blocks on this condition instead of waking up every second to check again
+    //setPaused, setRunning and stop signal it, so resume, refuel and stop reach the task straight away.
+    //A ReentrantLock (not synchronized) so a waiting virtual thread doesnt hold on to its carrier thread
+    private final ReentrantLock lock=new ReentrantLock();
+    private final Condition changed=lock.newCondition();
 
-    public VehicleTask(Vehicle vehicle, JLabel statusLabel){
+    public VehicleTask(Vehicle vehicle){
         this.vehicle = vehicle;
-        this.statusLabel = statusLabel;
     }
 
-    public void setUseSync(boolean useSync){this.useSync=useSync;}
-    public void setPaused(boolean paused){this.paused=paused;}
-    public void setRunning(boolean running){this.running=running;}
-    public void stop(){this.running=false;}
+    public void setUseSync(boolean useSync){this.counterMode=useSync?CounterMode.LOCKED:CounterMode.UNSAFE;}
+    public void setCounterMode(CounterMode counterMode){this.counterMode=counterMode;}
+    public void setStepLatency(LatencyHistogram stepLatency){this.stepLatency=stepLatency;}
+    public void setPaused(boolean paused){
+        lock.lock();
+        try{
+            this.paused=paused;
+            changed.signalAll();
+        }
+        finally{
+            lock.unlock();
+        }
+    }
+
+    public void setRunning(boolean running){
+        lock.lock();
+        try{
+            this.running=running;
+            changed.signalAll();
+        }
+        finally{
+            lock.unlock();
+        }
+    }
+
+    public void stop(){setRunning(false);}
     public Vehicle getVehicle(){return this.vehicle;}
+    public Status getStatus(){return this.status;}
 
     @Override
     public void run(){
         while(running){
             try{
-                //Simulate time passing (1 second per step)
-                Thread.sleep(1000);
-
-                //1. Check Fuel Level First
-                //We need to check if the vehicle has enough fuel to actually move the next step.
-                //If we don't check this here, the status might briefly show "Paused" before switching to "Out of Fuel".
-                boolean isOutOfFuel=false;
-                if(vehicle instanceof FuelConsumable){
-                    double fuel=((FuelConsumable)vehicle).getFuelLevel();
-                    double efficiency=vehicle.calculateFuelEfficiency();
-
-                    //Calculate exactly how much fuel is needed for 1 km
-                    double fuelNeeded=(efficiency>0)?(1.0/efficiency):0;
-
-                    //If fuel is basically zero or less than what we need, stop the car
-                    if(fuel<=0.0001 || (fuelNeeded>0 && fuel<fuelNeeded)){
-                        isOutOfFuel=true;
-                        this.paused=true; //Force the pause state
+                //Simulate time passing (1 second per step), a pause or stop ends the wait early
+                waitForNextStep();
+
+                //1. Check Fuel Level First, 2. Handle Paused State
+                //A paused or empty vehicle blocks here until it is resumed, refuelled or stopped,
+                //and then moves straight away instead of waiting for the next second
+                while(running){
+                    //We need to check if the vehicle has enough fuel to actually move the next step.
+                    //If we don't check this here, the status might briefly show "Paused" before switching to "Out of Fuel".
+                    boolean isOutOfFuel=pauseIfOutOfFuel();
+                    if(!paused){
+                        break;
                     }
-                }
-
-                //2.Handle Paused State
-                if(paused){
-                    //This is the fix for the status issue:
                     //If we are paused because the tank is empty, show "Out of Fuel"
                     //If we are paused because the user clicked Pause, show "Paused"
-                    if(isOutOfFuel){
-                        updateGUI("Out of Fuel");
-                    }
-                    else{
-                        updateGUI("Paused");
-                    }
-                    continue; // Skip the rest of the loop so we don't add distance
+                    publish(isOutOfFuel?Status.OUT_OF_FUEL:Status.PAUSED);
+                    waitWhilePaused();
+                }
+                if(!running){
+                    break;
                 }
 
                 //3. Move the Vehicle
                 try{
+                    long stepStart=System.nanoTime();
                     vehicle.move(1);// Try to move 1 km
 
                     //This is where the assignment requirements happen:
-                    //If sync is on, we use the safe method. If off, we use the buggy one.
-                    if(useSync){
-                        Highway.addDistanceSafe(1);
-                    }
-                    else{
-                        Highway.addDistanceUnsafe(1);
+                    //The counter mode picks the buggy method, the locked one or one of the lock-free ones
+                    Highway.addDistance(counterMode,1);
+
+                    LatencyHistogram latency=stepLatency;
+                    if(latency!=null){
+                        latency.record(System.nanoTime()-stepStart);
                     }
 
-                    updateGUI("Running");
+                    publish(Status.RUNNING);
 
                 }
                 catch(Exception e){
                     //If the move fails (like an exception from the Vehicle class), assume we are out of fuel
-                    updateGUI("Out of Fuel");
-                    this.paused=true;
+                    publish(Status.OUT_OF_FUEL);
+                    setPaused(true);
                 }
 
             }
@@ -96,28 +139,65 @@ public class VehicleTask implements Runnable{
                 break;
             }
         }
+        //Publish anything this thread still has in its per-thread highway counter before the thread ends
+        Highway.flushThreadLocal();
     }
 
-    //Helper method to update the Swing UI from this background thread
-    private void updateGUI(String status){
-        String fuelInfo = "";
+    //Calculate exactly how much fuel is needed for 1 km, and force the pause state if the tank cant cover it
+    //The check runs under the lock, so a refuel followed by setPaused(false) cant slip in between the check
+    //and the wait (it would either be seen by the check or wake the wait up)
+    private boolean pauseIfOutOfFuel(){
+        if(!(vehicle instanceof FuelConsumable)){
+            return false;
+        }
+        lock.lock();
+        try{
+            double fuel=((FuelConsumable)vehicle).getFuelLevel();
+            double efficiency=vehicle.getFuelEfficiency();
+            double fuelNeeded=(efficiency>0)?(1.0/efficiency):0;
+
+            //If fuel is basically zero or less than what we need, stop the car
+            if(fuel<=0.0001 || (fuelNeeded>0 && fuel<fuelNeeded)){
+                this.paused=true;
+                return true;
+            }
+            return false;
+        }
+        finally{
+            lock.unlock();
+        }
+    }
 
-        //Only show fuel stats if the vehicle actually consumes fuel
-        if(vehicle instanceof FuelConsumable){
-            double fuel=((FuelConsumable) vehicle).getFuelLevel();
-            fuelInfo=String.format(" | Fuel: %.1f L", fuel);
+    //Blocks (without using any CPU) until the task is resumed or stopped
+    private void waitWhilePaused() throws InterruptedException{
+        lock.lock();
+        try{
+            while(running && paused){
+                changed.await();
+            }
+        }
+        finally{
+            lock.unlock();
         }
+    }
+
+    //Waits one step of simulated time, or less if the task is paused or stopped in the meantime
+    private void waitForNextStep() throws InterruptedException{
+        lock.lock();
+        try{
+            long nanos=STEP_NANOS;
+            while(running && !paused && nanos>0){
+                nanos=changed.awaitNanos(nanos);
+            }
+        }
+        finally{
+            lock.unlock();
+        }
+    }
 
-        //Format the final string to display on the screen
-        String textToDisplay=String.format("Status: %s | Mileage: %.1f km%s",
-                status,
-                vehicle.getCurrentMileage(),
-                fuelInfo
-        );
-
-        //Use invokeLater because Swing components aren't thread-safe
-        SwingUtilities.invokeLater(()->{
-            statusLabel.setText(textToDisplay);
-        });
+    //Only a volatile write, the mileage and fuel are read straight from the vehicle when the GUI takes its snapshot
+    //(this used to format two strings and post an invokeLater for every vehicle on every step)
+    private void publish(Status status){
+        this.status=status;
     }
-}
\ No newline at end of file
+}
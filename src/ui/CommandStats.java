@@ -0,0 +1,151 @@
+package ui;
+
+import Management.Allocation;
+import Management.FleetFootprint;
+import Management.FleetManager;
+import Management.LatencyHistogram;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+
+//Times every CLI command and counts the bytes it allocates, per menu option
+//The time a command spends waiting for the operator to type its arguments is not counted (they are read through
+//nextLine()), so a command that is slow is slow because of the work it does. "stats" shows p50/p99 per command
+//and a command that takes longer than -Dfleet.slowlog.millis (500 by default) is appended to
+//-Dfleet.slowlog.file (slow_commands.log by default) with its arguments and the fleet size, to see later
+//what was going on when the menu froze (-1 turns the log off). Only the menu thread uses this
+class CommandStats {
+
+    //the menu options, index = option number
+    private static final String[] NAMES = {null, "add vehicle", "remove vehicle", "estimate fleet fuel",
+            "refuel all", "start all journeys", "list needing maintenance", "maintain all", "schedule maintenance",
+            "board passengers", "disembark passengers", "load cargo", "unload cargo", "vehicle status",
+            "fleet report", "save fleet", "load fleet", "search by type", "sort by efficiency", "sort by model",
+            "sort by speed", "fastest vehicle", "slowest vehicle", "distinct models", "exit", "memory footprint",
+            "command stats"};
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[NAMES.length];
+    private final long[] allocated = new long[NAMES.length];
+    private final long[] failures = new long[NAMES.length];
+    private final String slowLogFile;
+    private final long slowNanos;
+
+    //the command that is running
+    private int current = -1;
+    private long startNanos;
+    private long startAllocated;
+    private long inputNanos;
+    private boolean failed;
+    private final List<String> arguments = new ArrayList<>();
+
+    CommandStats(String slowLogFile, long slowMillis) {
+        this.slowLogFile = slowLogFile;
+        this.slowNanos = slowMillis * 1_000_000;
+        for (int i = 1; i < NAMES.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    static CommandStats fromSystemProperties() {
+        return new CommandStats(System.getProperty("fleet.slowlog.file", "slow_commands.log"),
+                Long.getLong("fleet.slowlog.millis", 500));
+    }
+
+    //"stats" is a name for option 26, anything that is not a menu option is not measured
+    static String normalize(String choice) {
+        return choice.trim().equalsIgnoreCase("stats") ? "26" : choice;
+    }
+
+    private static int option(String choice) {
+        try {
+            int option = Integer.parseInt(choice);
+            return option >= 1 && option < NAMES.length ? option : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    void begin(String choice) {
+        current = option(choice);
+        arguments.clear();
+        inputNanos = 0;
+        failed = false;
+        startAllocated = Allocation.currentThreadAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    //reads an argument of the running command, the time spent waiting for it does not count
+    String nextLine(Scanner scanner) {
+        long start = System.nanoTime();
+        String line = scanner.nextLine();
+        inputNanos += System.nanoTime() - start;
+        arguments.add(line);
+        return line;
+    }
+
+    void failed() {
+        failed = true;
+    }
+
+    void end(FleetManager fleetManager) {
+        if (current < 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos - inputNanos;
+        long bytes = Allocation.currentThreadAllocatedBytes() - startAllocated;
+        latency[current].record(nanos);
+        allocated[current] += bytes;
+        if (failed) {
+            failures[current]++;
+        }
+        if (slowNanos >= 0 && nanos > slowNanos) {
+            logSlow(nanos, bytes, fleetManager.getVehicles().size());
+        }
+        current = -1;
+    }
+
+    //one line per slow command: when, which, how long, how much it allocated, the fleet size and the arguments
+    private void logSlow(long nanos, long bytes, int fleetSize) {
+        StringBuilder args = new StringBuilder("[");
+        for (int i = 0; i < arguments.size(); i++) {
+            args.append(i > 0 ? ", " : "").append('"')
+                    .append(arguments.get(i).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        args.append(']');
+        String line = String.format(Locale.ROOT, "%s command=%d name=\"%s\" millis=%.1f allocatedBytes=%d fleetSize=%d result=%s args=%s",
+                Instant.now(), current, NAMES[current], nanos / 1e6, bytes, fleetSize, failed ? "error" : "ok", args);
+        try (PrintWriter out = new PrintWriter(new FileWriter(slowLogFile, true))) {
+            out.println(line);
+        } catch (IOException e) {
+            System.out.println("Could not write the slow command log " + slowLogFile + ": " + e.getMessage());
+        }
+    }
+
+    //p50/p99/max per command that has run, in milliseconds
+    String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-26s %7s %7s %10s %10s %10s %12s%n", "command", "calls", "errors",
+                "p50 ms", "p99 ms", "max ms", "alloc/call"));
+        for (int i = 1; i < NAMES.length; i++) {
+            LatencyHistogram.Summary s = latency[i].summarize();
+            if (s.count == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.ROOT, "%-26s %7d %7d %10.2f %10.2f %10.2f %12s%n", i + ". " + NAMES[i],
+                    s.count, failures[i], s.p50 / 1e6, s.p99 / 1e6, s.max / 1e6,
+                    Allocation.isSupported() ? FleetFootprint.formatBytes(allocated[i] / s.count) : "n/a"));
+        }
+        if (slowNanos < 0) {
+            sb.append(String.format("The slow command log is off%n"));
+        } else {
+            sb.append(String.format(Locale.ROOT, "Commands over %d ms are logged to %s%n", slowNanos / 1_000_000, slowLogFile));
+        }
+        return sb.toString();
+    }
+}
@@ -1,94 +1,109 @@
 package ui;
 
+import Management.FleetGenerator;
 import Management.FleetManager;
+import Management.FleetMetrics;
 import Vehicles.*;
 import Interfaces.FuelConsumable;
 import Interfaces.CargoCarrier;
 import Interfaces.Maintainable;
 import Interfaces.PassengerCarrier;
 
+import java.io.File;
 import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
 public class Main {
+    //the file options 15 and 16 save to and load from, and the snapshot that is restored at startup
+    private static final String SNAPSHOT = "my_fleet.csv";
+
     public static void main(String[] args) {
         FleetManager fleetManager = new FleetManager();
         Scanner scanner = new Scanner(System.in);
+        if (FleetMetrics.ENABLED) {
+            startMetrics(fleetManager);
+        }
 
-        //Demo is started from here and here we are adding 5 vehicles into the fleet and
-        //providing them enough fuel to start the journey for 100km
-        System.out.println("Running Initial Demo:\n");
-        try {
-            Car car = new Car("HR26", "Honda Amaze", 160.0);
-            Truck truck = new Truck("UP14", "Tata Truck", 100.0, 10);
-            Bus bus = new Bus("DL02", "Volvo Bus", 120.0, 6);
-            Airplane airplane = new Airplane("ULT", "Air India Boeing 747", 900.0, 26000);
-            CargoShip ship = new CargoShip("B16", "Britannic", 40.0, false);
-
-            fleetManager.addVehicle(car);
-            fleetManager.addVehicle(truck);
-            fleetManager.addVehicle(bus);
-            fleetManager.addVehicle(airplane);
-            fleetManager.addVehicle(ship);
-
-            car.refuel(50);
-            truck.refuel(200);
-            bus.refuel(150);
-            airplane.refuel(10000);
-            ship.refuel(20000);
-
-            fleetManager.startAllJourneys(100);
-
-            System.out.println("\nInitial Fleet Report after Demo");
-            System.out.println(fleetManager.generateReport());
-
-        } catch (Exception e) {
-            System.err.println("Error during the demo setup: " + e.getMessage());
+        //"--generate N [--seed S]" starts with a generated fleet of N vehicles instead of the demo,
+        //"--restore FILE" restores another snapshot and "--no-restore" always starts with the demo
+        long generate = -1;
+        FleetGenerator.Profile profile = new FleetGenerator.Profile();
+        String snapshot = SNAPSHOT;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--generate": generate = Long.parseLong(args[++i]); break;
+                case "--seed": profile.seed = Long.parseLong(args[++i]); break;
+                case "--restore": snapshot = args[++i]; break;
+                case "--no-restore": snapshot = null; break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
         }
-        System.out.println("**** Demo is Finished ****\n");
-        //Demo ends here
 
+        //the last saved fleet is restored in the background while the menu is already up, without one the demo runs
+        WarmStart warmStart;
+        if (generate >= 0) {
+            warmStart = new WarmStart(fleetManager, null);
+            try {
+                new FleetGenerator(generate, profile).addTo(fleetManager);
+            } catch (Exception e) {
+                System.err.println("Could not generate the fleet: " + e.getMessage());
+            }
+        } else if (snapshot != null && new File(snapshot).isFile()) {
+            System.out.println("Restoring the fleet from " + snapshot + " in the background...\n");
+            warmStart = new WarmStart(fleetManager, snapshot);
+            warmStart.start();
+        } else {
+            warmStart = new WarmStart(fleetManager, null);
+            runDemo(fleetManager);
+        }
 
+        CommandStats stats = CommandStats.fromSystemProperties();
         while (true) {
             //Prints the menu and asks for the function to be performed on the fleet or any vehicle
             printMenu();
+            warmStart.menuShown();
             System.out.print("Enter your choice: ");
-            String choice = scanner.nextLine();
+            String choice = CommandStats.normalize(scanner.nextLine());
+            //every command is timed, including a wait for the restore, but not the time its arguments are typed
+            stats.begin(choice);
+            warmStart.beforeCommand(usesFleet(choice));
 
             try {
                 switch (choice) {
                     case "1": //This will add a new vehicle to the fleet
                         System.out.print("Enter vehicle type (Car, Truck, Bus, Airplane, CargoShip)(Enter 0 if selected wrong): ");
-                        String type = scanner.nextLine();
+                        String type = stats.nextLine(scanner);
                         if (type.equals("0")) {
                             System.out.println("*Returning to menu*\n");
                             break;
                         }
                         System.out.print("Enter ID: ");
-                        String id = scanner.nextLine();
+                        String id = stats.nextLine(scanner);
                         System.out.print("Enter Model: ");
-                        String model = scanner.nextLine();
+                        String model = stats.nextLine(scanner);
                         System.out.print("Enter Max Speed: ");
-                        double maxSpeed = Double.parseDouble(scanner.nextLine());
+                        double maxSpeed = Double.parseDouble(stats.nextLine(scanner));
 
                         if (type.equalsIgnoreCase("Car")) {
                             fleetManager.addVehicle(new Car(id, model, maxSpeed));
                         } else if (type.equalsIgnoreCase("Truck")) {
                             System.out.print("Enter no. of wheels: ");
-                            int wheels = Integer.parseInt(scanner.nextLine());
+                            int wheels = Integer.parseInt(stats.nextLine(scanner));
                             fleetManager.addVehicle(new Truck(id, model, maxSpeed, wheels));
                         } else if (type.equalsIgnoreCase("Bus")) {
                             System.out.print("Enter no. of wheels: ");
-                            int wheels = Integer.parseInt(scanner.nextLine());
+                            int wheels = Integer.parseInt(stats.nextLine(scanner));
                             fleetManager.addVehicle(new Bus(id, model, maxSpeed, wheels));
                         } else if (type.equalsIgnoreCase("Airplane")) {
                             System.out.print("Enter max altitude: ");
-                            double altitude = Double.parseDouble(scanner.nextLine());
+                            double altitude = Double.parseDouble(stats.nextLine(scanner));
                             fleetManager.addVehicle(new Airplane(id, model, maxSpeed, altitude));
                         } else if (type.equalsIgnoreCase("CargoShip")) {
                             System.out.print("Does it have a sail? (true/false): ");
-                            boolean hasSail = Boolean.parseBoolean(scanner.nextLine());
+                            boolean hasSail = Boolean.parseBoolean(stats.nextLine(scanner));
                             fleetManager.addVehicle(new CargoShip(id, model, maxSpeed, hasSail));
                         } else {
                             System.out.println("Wrong input, Change vehicle type");
@@ -98,7 +113,7 @@ public class Main {
 
                     case "2"://This will remove the vehicle by ID if present
                         System.out.print("Enter vehicle ID to remove(Enter 0 if selected wrong): ");
-                        String removeId = scanner.nextLine();
+                        String removeId = stats.nextLine(scanner);
                         if (removeId.equals("0")) {
                             System.out.println("*Returning to menu*\n");
                             break;
@@ -109,7 +124,7 @@ public class Main {
 
                     case "3"://This will estimate the fuel consumption for the entire fleet when we enter the distance
                         System.out.print("Enter distance to estimate total fuel (Enter 0 to cancel)(Enter 0 if selected wrong): ");
-                        String estDistStr = scanner.nextLine();
+                        String estDistStr = stats.nextLine(scanner);
                         if (estDistStr.equals("0")) {
                             System.out.println("*Returning to menu*\n");
                             break;
@@ -123,7 +138,7 @@ public class Main {
 
                     case "4"://This will refuel all the vehicles in the fleet
                         System.out.print("Amount to refuel(Enter 0 if selected wrong): ");
-                        String amountStr = scanner.nextLine();
+                        String amountStr = stats.nextLine(scanner);
                         if (amountStr.equals("0")) {
                             System.out.println("*Returning to menu*\n");
                             ;
@@ -146,7 +161,7 @@ public class Main {
 
                     case "5"://This will start the journey for all the vehicles if there is enough fuel in vehicle
                         System.out.print("Distance for the journey(Enter 0 if selected wrong): ");
-                        String distanceStr = scanner.nextLine();
+                        String distanceStr = stats.nextLine(scanner);
                         if (distanceStr.equals("0")) {
                             System.out.println("*Returning to menu*\n");
                             ;
@@ -171,7 +186,7 @@ public class Main {
 
                     case "8":{//This will schedule maintenance for a specific vehicle by ID
                         System.out.print("Enter ID of vehicle to schedule maintenance(Enter 0 if selected wrong): ");
-                        String vehicleId = scanner.nextLine();
+                        String vehicleId = stats.nextLine(scanner);
                         if (vehicleId.equals("0")) {
                             System.out.println("*Returning to menu*\n");
                             break;
@@ -189,12 +204,12 @@ public class Main {
 
                     case "9": {//Boards passengers on the vehicles
                         System.out.print("Enter ID of vehicle to board(Enter 0 if selected wrong): ");
-                        String vehicleId = scanner.nextLine();
+                        String vehicleId = stats.nextLine(scanner);
                         if (vehicleId.equals("0")) { System.out.println("*Returning to menu*\n"); break; }
                         Vehicle v = fleetManager.getVehicleById(vehicleId);
                         if (v instanceof PassengerCarrier) {
                             System.out.print("Enter number of passengers to board: ");
-                            int count = Integer.parseInt(scanner.nextLine());
+                            int count = Integer.parseInt(stats.nextLine(scanner));
                             ((PassengerCarrier) v).boardPassengers(count);
                             System.out.println("Passengers boarded successfully.\n");
                         } else {
@@ -205,12 +220,12 @@ public class Main {
 
                     case "10": {//Disembark passengers from the vehicles
                         System.out.print("Enter ID of vehicle to disembark(Enter 0 if selected wrong): ");
-                        String vehicleId = scanner.nextLine();
+                        String vehicleId = stats.nextLine(scanner);
                         if (vehicleId.equals("0")) { System.out.println("*Returning to menu*\n"); break; }
                         Vehicle v = fleetManager.getVehicleById(vehicleId);
                         if (v instanceof PassengerCarrier) {
                             System.out.print("Enter number of passengers to disembark: ");
-                            int count = Integer.parseInt(scanner.nextLine());
+                            int count = Integer.parseInt(stats.nextLine(scanner));
                             ((PassengerCarrier) v).disembarkPassengers(count);
                             System.out.println("Passengers disembarked successfully.\n");
                         } else {
@@ -221,12 +236,12 @@ public class Main {
 
                     case "11": {//Loads cargo on the vehicles
                         System.out.print("Enter ID of vehicle to load cargo(Enter 0 if selected wrong): ");
-                        String vehicleId = scanner.nextLine();
+                        String vehicleId = stats.nextLine(scanner);
                         if (vehicleId.equals("0")) { System.out.println("*Returning to menu*\n"); break; }
                         Vehicle v = fleetManager.getVehicleById(vehicleId);
                         if (v instanceof CargoCarrier) {
                             System.out.print("Enter weight of cargo to load (kg): ");
-                            double weight = Double.parseDouble(scanner.nextLine());
+                            double weight = Double.parseDouble(stats.nextLine(scanner));
                             ((CargoCarrier) v).loadCargo(weight);
                             System.out.println("Cargo loaded successfully.\n");
                         } else {
@@ -237,12 +252,12 @@ public class Main {
 
                     case "12": {//Unloads cargo from the vehicles
                         System.out.print("Enter ID of vehicle to unload cargo(Enter 0 if selected wrong): ");
-                        String vehicleId = scanner.nextLine();
+                        String vehicleId = stats.nextLine(scanner);
                         if (vehicleId.equals("0")) { System.out.println("*Returning to menu*\n"); break; }
                         Vehicle v = fleetManager.getVehicleById(vehicleId);
                         if (v instanceof CargoCarrier) {
                             System.out.print("Enter weight of cargo to unload (kg): ");
-                            double weight = Double.parseDouble(scanner.nextLine());
+                            double weight = Double.parseDouble(stats.nextLine(scanner));
                             ((CargoCarrier) v).unloadCargo(weight);
                             System.out.println("Cargo unloaded successfully.\n");
                         } else {
@@ -253,7 +268,7 @@ public class Main {
 
                     case "13": {//This will display a detailed report for a single vehicle by ID
                         System.out.print("Enter ID of vehicle to check(Enter 0 if selected wrong): ");
-                        String vehicleId = scanner.nextLine();
+                        String vehicleId = stats.nextLine(scanner);
                         if (vehicleId.equals("0")) { System.out.println("*Returning to menu*\n"); break; }
                         Vehicle v = fleetManager.getVehicleById(vehicleId);
 
@@ -294,16 +309,16 @@ public class Main {
                         break;
 
                     case "15"://Saves all the necessary information of the vehicles in the csv file
-                        fleetManager.saveToFile("my_fleet.csv");
+                        fleetManager.saveToFile(SNAPSHOT);
                         break;
 
                     case "16"://This will load all the data replacing current data from the csv file
-                        fleetManager.loadFromFile("my_fleet.csv");
+                        fleetManager.loadFromFile(SNAPSHOT);
                         break;
 
                     case "17"://This will search and display vehicles by their type
                         System.out.print("Enter type to search (e.g., Car, Truck, FuelConsumable)(Enter 0 if selected wrong): ");
-                        String searchType = scanner.nextLine();
+                        String searchType = stats.nextLine(scanner);
                         if (searchType.equals("0")) { System.out.println("*Returning to menu*\n"); break; }
                         Class<?> neededClass = null;
                         if (searchType.equalsIgnoreCase("Car")) neededClass = Car.class;
@@ -377,8 +392,19 @@ public class Main {
                         break;
                     }
 
+                    case "25"://Estimated heap footprint of the fleet by vehicle type and of its indices
+                        System.out.println(fleetManager.estimateFootprint());
+                        break;
+
+                    case "26"://p50/p99 latency and allocations of every command run so far (also "stats")
+                        System.out.println(stats.format());
+                        break;
+
                     case "24"://Terminates the program
                         System.out.println("Exit... BBye!");
+                        if (FleetMetrics.ENABLED && System.getProperty("fleet.metrics.file") != null) {
+                            fleetManager.getMetrics().writePrometheusFile(System.getProperty("fleet.metrics.file"));
+                        }
                         scanner.close();
                         return;
 
@@ -387,11 +413,75 @@ public class Main {
                         break;
                 }
             } catch (Exception e) {//this throws the error when we enter any invalid input in the choice(like string)
+                stats.failed();
                 System.out.println("Error occurred: " + e.getMessage());
+            } finally {
+                stats.end(fleetManager);
             }
         }
     }
 
+    //every menu option works on the fleet except exit, so only exit and invalid choices dont wait for a restore
+    private static boolean usesFleet(String choice) {
+        switch (choice) {
+            case "1": case "2": case "3": case "4": case "5": case "6": case "7": case "8": case "9": case "10":
+            case "11": case "12": case "13": case "14": case "15": case "16": case "17": case "18": case "19":
+            case "20": case "21": case "22": case "23": case "25":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    //Demo is started from here and here we are adding 5 vehicles into the fleet and
+    //providing them enough fuel to start the journey for 100km
+    private static void runDemo(FleetManager fleetManager) {
+        System.out.println("Running Initial Demo:\n");
+        try {
+            Car car = new Car("HR26", "Honda Amaze", 160.0);
+            Truck truck = new Truck("UP14", "Tata Truck", 100.0, 10);
+            Bus bus = new Bus("DL02", "Volvo Bus", 120.0, 6);
+            Airplane airplane = new Airplane("ULT", "Air India Boeing 747", 900.0, 26000);
+            CargoShip ship = new CargoShip("B16", "Britannic", 40.0, false);
+
+            fleetManager.addVehicle(car);
+            fleetManager.addVehicle(truck);
+            fleetManager.addVehicle(bus);
+            fleetManager.addVehicle(airplane);
+            fleetManager.addVehicle(ship);
+
+            car.refuel(50);
+            truck.refuel(200);
+            bus.refuel(150);
+            airplane.refuel(10000);
+            ship.refuel(20000);
+
+            fleetManager.startAllJourneys(100);
+
+            System.out.println("\nInitial Fleet Report after Demo");
+            System.out.println(fleetManager.generateReport());
+
+        } catch (Exception e) {
+            System.err.println("Error during the demo setup: " + e.getMessage());
+        }
+        System.out.println("**** Demo is Finished ****\n");
+    }
+
+    //With -Dfleet.metrics=true the operation metrics can be seen over JMX (jconsole) as fleet:type=FleetManager,name=cli
+    //and with -Dfleet.metrics.file=<path> they are also written there in Prometheus text format
+    //every -Dfleet.metrics.interval seconds (15 by default)
+    private static void startMetrics(FleetManager fleetManager) {
+        try {
+            fleetManager.getMetrics().register("cli");
+        } catch (Exception e) {
+            System.err.println("Could not register the fleet metrics with JMX: " + e.getMessage());
+        }
+        String file = System.getProperty("fleet.metrics.file");
+        if (file != null) {
+            fleetManager.getMetrics().startFileExport(file, Long.getLong("fleet.metrics.interval", 15));
+        }
+    }
+
     //Menu
     private static void printMenu() {
         System.out.println("=================================");
@@ -442,6 +532,11 @@ public class Main {
         System.out.println("23. List Distinct Vehicle Models");
         System.out.println();
 
+        System.out.println("Memory & Performance:");
+        System.out.println("25. Estimate Memory Footprint");
+        System.out.println("26. Command Statistics (or type stats)");
+        System.out.println();
+
         System.out.println("Terminate:");
         System.out.println("24. Exit");
         System.out.println("=================================");
@@ -0,0 +1,107 @@
+package ui;
+
+import Events.StartupEvent;
+import Management.FleetManager;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+//Restores the last saved fleet on a background thread so the menu can be shown right away
+//Until the restore is done the loader is the only thread that touches the FleetManager. A command that uses the
+//fleet calls beforeCommand(true) first, which waits for the loader, and the FutureTask makes everything the loader
+//wrote visible to the menu thread. Commands that dont use the fleet (exit) never wait.
+//It also reports the startup, without the time the operator takes to pick a command: when the menu was shown
+//(from the start of the JVM), when the restore finished, and how long a command was blocked waiting for it.
+//The numbers are recorded as a fleet.Startup JFR event when they are all known
+class WarmStart {
+
+    private final String file;
+    private final FleetManager fleetManager;
+    private final FutureTask<Integer> restore;
+    private volatile long restoreMillis = -1;
+    private long menuMillis = -1;
+    private boolean restoreAwaited;
+
+    //file is null when there is nothing to restore, then only the startup is measured
+    WarmStart(FleetManager fleetManager, String file) {
+        this.fleetManager = fleetManager;
+        this.file = file;
+        this.restore = file == null ? null : new FutureTask<>(() -> {
+            long start = System.nanoTime();
+            fleetManager.loadFromFile(file);
+            restoreMillis = uptimeMillis();
+            int vehicles = fleetManager.getVehicles().size();
+            System.out.printf("%n[Restored %d vehicles from %s in %d ms, finished %d ms after the JVM started]%n",
+                    vehicles, file, (System.nanoTime() - start) / 1_000_000, restoreMillis);
+            return vehicles;
+        });
+    }
+
+    void start() {
+        if (restore == null) {
+            return;
+        }
+        Thread loader = new Thread(restore, "fleet-restore");
+        //exiting the CLI must not wait for a big file to finish loading
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    void menuShown() {
+        if (menuMillis >= 0) {
+            return;
+        }
+        menuMillis = uptimeMillis();
+        System.out.printf("[Startup: menu after %d ms]%n", menuMillis);
+        if (restore == null) {
+            recordStartup(0);
+        }
+    }
+
+    //called before every command, the first one that uses the fleet waits for the restore
+    void beforeCommand(boolean usesFleet) {
+        if (!usesFleet || restore == null || restoreAwaited) {
+            return;
+        }
+        restoreAwaited = true;
+        if (restore.isDone()) {
+            awaitRestore();
+            recordStartup(0);
+            return;
+        }
+        System.out.println("Waiting for the fleet from " + file + " to finish loading...");
+        long start = System.nanoTime();
+        awaitRestore();
+        long blocked = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("[The command was blocked %d ms by the restore]%n", blocked);
+        recordStartup(blocked);
+    }
+
+    //a failed restore leaves the fleet empty, loadFromFile only replaces it when the whole file was read
+    private void awaitRestore() {
+        try {
+            restore.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Could not restore the fleet from " + file + ": " + e.getCause().getMessage());
+        }
+    }
+
+    private void recordStartup(long blocked) {
+        StartupEvent event = new StartupEvent();
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.vehicles = restore != null ? fleetManager.getVehicles().size() : 0;
+            event.menuMillis = menuMillis;
+            event.restoreMillis = restoreMillis;
+            event.blockedMillis = blocked;
+            event.commit();
+        }
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}